@@ -0,0 +1,132 @@
+package main.java.com.network.benchmark;
+
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.network.impl.HTTP2Transport;
+import main.java.com.network.impl.PooledHTTPTransport;
+import main.java.com.network.impl.VirtualThreads;
+import main.java.com.references.AutomationReferences;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Comparison of HTTP2Transport, multiplexing the requests over a shared
+ * HTTP/2 connection, with PooledHTTPTransport, holding an HTTP/1.1
+ * connection per request in flight.
+ * A fixed number of workers send the same GETs through each transport in
+ * turn, and the throughput and latencies of each are reported, along with
+ * the connections the pooled transport opened.
+ * The server has to speak both protocols on the same HTTPS URL, such as
+ * nginx with http2 on, or a Node.js http2 secure server allowing HTTP/1,
+ * so that HTTP/2 is negotiated via ALPN by one transport only. For a
+ * self-signed certificate, point javax.net.ssl.trustStore at a store holding
+ * it. After building with the modern-jdk profile:
+ * java -cp target/classes:conf:&lt;dependencies&gt; main.java.com.network.benchmark.HTTP2Benchmark url [requests] [workers]
+ */
+public final class HTTP2Benchmark {
+
+    private static final int DEFAULT_REQUESTS = 5000;
+
+    private static final int DEFAULT_WORKERS = 64;
+
+    /**
+     * Rounds run before the measured one, to warm the JIT and the connections up.
+     */
+    private static final int WARMUP_ROUNDS = 2;
+
+    private HTTP2Benchmark() {
+    }
+
+    /**
+     * @param args URL to request, then the number of requests and of concurrent workers, both optional.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: HTTP2Benchmark url [requests] [workers]");
+            System.exit(2);
+        }
+        String url = args[0];
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WORKERS;
+        //Every call is logged at INFO, and the appenders would serialise the calls being compared.
+        LogManager.getLogger(AutomationReferences.LOGGER_DEFAULT).setLevel(Level.WARN);
+        if (!url.regionMatches(true, 0, "https:", 0, 6))
+            System.out.println("Cleartext URL: HTTP/2 is only used if the server accepts the upgrade from HTTP/1.1.");
+
+        System.out.println("JDK " + System.getProperty("java.version") + ", " + requests + " requests, " + workers
+                + " workers, " + url);
+        run("HTTP/1.1 pooled", url, requests, workers, new TransportFactory() {
+            @Override
+            public IHTTPTransport create() {
+                return new PooledHTTPTransport();
+            }
+        });
+        run("HTTP/2", url, requests, workers, new TransportFactory() {
+            @Override
+            public IHTTPTransport create() {
+                return new HTTP2Transport();
+            }
+        });
+        System.exit(0);
+    }
+
+    /**
+     * Runs the warm-up rounds and the measured round of one transport and prints its results.
+     */
+    private static void run(String name, final String url, final int requests, int workers,
+                            TransportFactory transports) throws Exception {
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            final IHTTPTransport transport = transports.create();
+            final LatencyStats stats = new LatencyStats(requests);
+            final AtomicInteger next = new AtomicInteger();
+            final AtomicInteger failed = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(workers,
+                    VirtualThreads.newDaemonThreadFactory("bench-worker-"));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < workers; i++)
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (next.getAndIncrement() < requests) {
+                            long begin = System.nanoTime();
+                            try {
+                                IHTTPResponse response = transport.execute(new HTTPRequestSpec("GET", url));
+                                response.getBodyBytes();
+                                response.close();
+                                stats.add(System.nanoTime() - begin);
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+            long elapsed = System.nanoTime() - start;
+
+            String connections = transport instanceof PooledHTTPTransport ? ", connections opened "
+                    + ((PooledHTTPTransport) transport).getConnectionPool().getConnectionsCreated() : "";
+            transport.shutdown();
+            if (round < WARMUP_ROUNDS)
+                continue;
+            System.out.println(String.format("%-16s %6d ms, %8.0f requests/s, %s, failed %d%s", name,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), stats.throughput(elapsed), stats.summary(), failed.get(),
+                    connections));
+        }
+    }
+
+    /**
+     * Creates a fresh transport for every round, so each starts without connections.
+     */
+    private interface TransportFactory {
+        IHTTPTransport create();
+    }
+
+}
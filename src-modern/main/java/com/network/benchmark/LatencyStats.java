@@ -0,0 +1,87 @@
+package main.java.com.network.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency samples of one benchmark round, recorded from any thread and
+ * summarised once the round is over.
+ */
+final class LatencyStats {
+
+    private final long[] samples;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param capacity Maximum number of samples, further ones are dropped.
+     */
+    LatencyStats(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * @param nanos Latency of one call, in nanoseconds.
+     */
+    void add(long nanos) {
+        int index = this.count.getAndIncrement();
+        if (index < this.samples.length)
+            this.samples[index] = nanos;
+    }
+
+    /**
+     * @return Number of samples recorded.
+     */
+    int size() {
+        return Math.min(this.count.get(), this.samples.length);
+    }
+
+    /**
+     * @param percentile Percentile, from 0 to 100.
+     * @return Latency at the percentile, in milliseconds.
+     */
+    double percentileMillis(double percentile) {
+        int size = size();
+        if (size == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(this.samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(size - 1, Math.ceil(size * percentile / 100) - 1);
+        return toMillis(sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * @return Mean latency, in milliseconds.
+     */
+    double meanMillis() {
+        int size = size();
+        if (size == 0)
+            return 0;
+        long total = 0;
+        for (int i = 0; i < size; i++)
+            total += this.samples[i];
+        return toMillis(total / size);
+    }
+
+    /**
+     * @return Mean, median, 99th percentile and maximum latencies.
+     */
+    String summary() {
+        return String.format("mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms", meanMillis(),
+                percentileMillis(50), percentileMillis(99), percentileMillis(100));
+    }
+
+    /**
+     * @param elapsedNanos Wall time of the round, in nanoseconds.
+     * @return Calls completed per second.
+     */
+    double throughput(long elapsedNanos) {
+        return size() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
@@ -0,0 +1,183 @@
+package main.java.com.network.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.IHTTPCallActions;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.impl.ConnectionPool;
+import main.java.com.network.impl.PooledHTTPTransport;
+import main.java.com.network.impl.VirtualThreads;
+import main.java.com.references.AutomationReferences;
+import main.java.com.references.NetworkReferences;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Load comparison of the executors of asynchronous calls: the fixed pool of
+ * platform threads used without virtual threads, a platform thread per call,
+ * and a virtual thread per call.
+ * Each mode sends the same burst of concurrent GETs through the pooled
+ * transport to a local server answering after a fixed delay, standing for
+ * the latency of a remote service, and reports the wall time, the
+ * throughput, the latencies including the time queued, and the peak number
+ * of live platform threads of the JVM.
+ * Virtual threads are only compared on JDK 21 and later. After building with
+ * the modern-jdk profile:
+ * java -cp target/classes:conf:&lt;dependencies&gt; main.java.com.network.benchmark.ThreadModelBenchmark [calls] [delayMillis]
+ */
+public final class ThreadModelBenchmark {
+
+    private static final int DEFAULT_CALLS = 2000;
+
+    private static final long DEFAULT_DELAY = 50;
+
+    /**
+     * Rounds run before the measured one, to warm the JIT and the connections up.
+     */
+    private static final int WARMUP_ROUNDS = 2;
+
+    private ThreadModelBenchmark() {
+    }
+
+    /**
+     * @param args Number of concurrent calls and delay of the server in milliseconds, both optional.
+     */
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CALLS;
+        long delay = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_DELAY;
+        //Every call is logged at INFO, and the appenders would serialise the calls being compared.
+        LogManager.getLogger(AutomationReferences.LOGGER_DEFAULT).setLevel(Level.WARN);
+
+        //The server answers on virtual threads where it can, so that it does not
+        //weigh on the platform threads counted for the client.
+        HttpServer server = startServer(delay, calls);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/delay";
+        System.out.println("JDK " + System.getProperty("java.version") + ", " + calls + " concurrent calls, server delay "
+                + delay + " ms, virtual threads " + (VirtualThreads.isSupported() ? "supported" : "not supported"));
+        try {
+            run("platform pool (" + NetworkReferences.DEFAULT_ASYNC_THREADS + ")", url, calls, new ExecutorFactory() {
+                @Override
+                public ExecutorService create() {
+                    return Executors.newFixedThreadPool(NetworkReferences.DEFAULT_ASYNC_THREADS,
+                            VirtualThreads.newDaemonThreadFactory("bench-pool-"));
+                }
+            });
+            run("platform per call", url, calls, new ExecutorFactory() {
+                @Override
+                public ExecutorService create() {
+                    return Executors.newCachedThreadPool(VirtualThreads.newDaemonThreadFactory("bench-call-"));
+                }
+            });
+            if (VirtualThreads.isSupported())
+                run("virtual per call", url, calls, new ExecutorFactory() {
+                    @Override
+                    public ExecutorService create() {
+                        return VirtualThreads.newPerTaskExecutor("bench-virtual-");
+                    }
+                });
+        } finally {
+            server.stop(0);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the warm-up rounds and the measured round of one mode and prints its results.
+     */
+    private static void run(String mode, String url, int calls, ExecutorFactory executors) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            ExecutorService executor = executors.create();
+            PooledHTTPTransport transport = new PooledHTTPTransport(new ConnectionPool(calls,
+                    NetworkReferences.DEFAULT_IDLE_CONNECTION_TIMEOUT, TimeUnit.MINUTES.toMillis(1)));
+            IHTTPCallActions actions = HTTPFactory.getHTTPCallActionsInstance(transport, executor);
+            LatencyStats stats = new LatencyStats(calls);
+            int before = threads.getThreadCount();
+            threads.resetPeakThreadCount();
+
+            long start = System.nanoTime();
+            List<CompletableFuture<IHTTPResponse>> futures = new ArrayList<CompletableFuture<IHTTPResponse>>(calls);
+            for (int i = 0; i < calls; i++)
+                futures.add(record(actions.makeGetCallAsync(url), stats));
+            int failed = 0;
+            for (int i = 0; i < calls; i++) {
+                try {
+                    futures.get(i).get().close();
+                } catch (Exception e) {
+                    failed++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            int peak = threads.getPeakThreadCount();
+
+            executor.shutdownNow();
+            transport.shutdown();
+            if (round < WARMUP_ROUNDS)
+                continue;
+            System.out.println(String.format("%-22s %6d ms, %8.0f calls/s, %s, platform threads +%d, failed %d",
+                    mode, TimeUnit.NANOSECONDS.toMillis(elapsed), stats.throughput(elapsed), stats.summary(),
+                    peak - before, failed));
+        }
+    }
+
+    /**
+     * @return The future, recording the latency of the call once it completes.
+     */
+    private static CompletableFuture<IHTTPResponse> record(CompletableFuture<IHTTPResponse> future,
+                                                           final LatencyStats stats) {
+        final long start = System.nanoTime();
+        return future.whenComplete(new BiConsumer<IHTTPResponse, Throwable>() {
+            @Override
+            public void accept(IHTTPResponse response, Throwable failure) {
+                if (failure == null)
+                    stats.add(System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static HttpServer startServer(final long delay, int backlog) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), backlog);
+        server.createContext("/delay", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "ok".getBytes("US-ASCII");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.setExecutor(VirtualThreads.newPerTaskExecutor("bench-server-"));
+        server.start();
+        return server;
+    }
+
+    /**
+     * Creates a fresh executor for every round of a mode.
+     */
+    private interface ExecutorFactory {
+        ExecutorService create();
+    }
+
+}
@@ -0,0 +1,202 @@
+package main.java.com.network.benchmark;
+
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.network.impl.PooledHTTPTransport;
+import main.java.com.network.impl.UnixSocketTransport;
+import main.java.com.references.AutomationReferences;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Timing of UnixSocketTransport against PooledHTTPTransport over loopback
+ * TCP, both talking to the same minimal keep-alive HTTP/1.1 server, which
+ * listens on a Unix domain socket and on a loopback port.
+ * Requests are sent one after the other on a single kept-alive connection,
+ * so the latencies show the cost of the socket and of the transport rather
+ * than of the server. Rounds alternate between both, and each reports its
+ * throughput and latencies.
+ * Needs JDK 16 or later. After building with the modern-jdk profile:
+ * java -cp target/classes:conf:&lt;dependencies&gt; main.java.com.network.benchmark.UnixSocketBenchmark [requests] [bodyBytes]
+ */
+public final class UnixSocketBenchmark {
+
+    private static final int DEFAULT_REQUESTS = 20000;
+
+    private static final int DEFAULT_BODY_BYTES = 2;
+
+    private static final int ROUNDS = 4;
+
+    /**
+     * Requests sent before every measured round, to warm the JIT and the connection up.
+     */
+    private static final int WARMUP_REQUESTS = 5000;
+
+    private UnixSocketBenchmark() {
+    }
+
+    /**
+     * @param args Number of requests per round and size of the response body, both optional.
+     */
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REQUESTS;
+        int bodyBytes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BODY_BYTES;
+        //Every call is logged at INFO, which would dwarf the difference being measured.
+        LogManager.getLogger(AutomationReferences.LOGGER_DEFAULT).setLevel(Level.WARN);
+
+        byte[] response = response(bodyBytes);
+        Path directory = Files.createTempDirectory("uds-bench");
+        Path socket = directory.resolve("bench.sock");
+        ServerSocketChannel unix = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        unix.bind(UnixDomainSocketAddress.of(socket));
+        ServerSocketChannel tcp = ServerSocketChannel.open();
+        tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        serve(unix, response);
+        serve(tcp, response);
+
+        String unixUrl = UnixSocketTransport.SCHEME + "://"
+                + URLEncoder.encode(socket.toString(), StandardCharsets.UTF_8.name()) + "/bench";
+        String tcpUrl = "http://127.0.0.1:" + ((InetSocketAddress) tcp.getLocalAddress()).getPort() + "/bench";
+        IHTTPTransport unixTransport = new UnixSocketTransport();
+        IHTTPTransport tcpTransport = new PooledHTTPTransport();
+        System.out.println("JDK " + System.getProperty("java.version") + ", " + requests + " sequential requests per round, "
+                + bodyBytes + " byte body");
+        try {
+            for (int round = 1; round <= ROUNDS; round++) {
+                print("round " + round + " unix socket", time(unixTransport, unixUrl, requests), requests);
+                print("round " + round + " loopback tcp", time(tcpTransport, tcpUrl, requests), requests);
+            }
+        } finally {
+            unixTransport.shutdown();
+            tcpTransport.shutdown();
+            unix.close();
+            tcp.close();
+            Files.deleteIfExists(socket);
+            Files.deleteIfExists(directory);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * @return Latencies of the requests, in nanoseconds, after the warm-up requests.
+     */
+    private static long[] time(IHTTPTransport transport, String url, int requests) throws IOException {
+        HTTPRequestSpec spec = new HTTPRequestSpec("GET", url);
+        for (int i = 0; i < WARMUP_REQUESTS; i++)
+            transport.execute(spec).getBodyBytes();
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            transport.execute(spec).getBodyBytes();
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static void print(String name, long[] latencies, int requests) {
+        LatencyStats stats = new LatencyStats(requests);
+        long total = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            stats.add(latencies[i]);
+            total += latencies[i];
+        }
+        System.out.println(String.format("%-22s %8.0f requests/s, %s", name, stats.throughput(total),
+                stats.summary()));
+    }
+
+    /**
+     * @param bodyBytes Size of the body.
+     * @return Response sent for every request.
+     */
+    private static byte[] response(int bodyBytes) {
+        byte[] body = new byte[bodyBytes];
+        Arrays.fill(body, (byte) 'x');
+        byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + bodyBytes + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] response = Arrays.copyOf(head, head.length + bodyBytes);
+        System.arraycopy(body, 0, response, head.length, bodyBytes);
+        return response;
+    }
+
+    /**
+     * Accepts connections on a daemon thread, each served on a thread of its own.
+     */
+    private static void serve(final ServerSocketChannel server, final byte[] response) {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (; ; ) {
+                        final SocketChannel channel = server.accept();
+                        if (channel.getLocalAddress() instanceof InetSocketAddress)
+                            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                        Thread connection = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(channel, response);
+                            }
+                        }, "bench-connection");
+                        connection.setDaemon(true);
+                        connection.start();
+                    }
+                } catch (IOException e) {
+                    //The server was closed.
+                }
+            }
+        }, "bench-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Answers every request of a kept-alive connection with the same response.
+     * Request bodies are not expected.
+     */
+    private static void serve(SocketChannel channel, byte[] response) {
+        try {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            OutputStream out = Channels.newOutputStream(channel);
+            for (; ; ) {
+                //Skip the request head, up to the empty line.
+                int newlines = 0;
+                int b;
+                while (newlines < 2 && (b = in.read()) != -1) {
+                    if (b == '\n')
+                        newlines++;
+                    else if (b != '\r')
+                        newlines = 0;
+                }
+                if (newlines < 2)
+                    break;
+                out.write(response);
+            }
+        } catch (IOException e) {
+            //The client went away.
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //Already closed.
+            }
+        }
+    }
+
+}
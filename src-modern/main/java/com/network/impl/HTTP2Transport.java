@@ -0,0 +1,282 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPRequest;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Transport based on java.net.http.HttpClient, speaking HTTP/2 where the
+ * server supports it and HTTP/1.1 otherwise.
+ * Concurrent requests to a host are multiplexed over a shared connection
+ * with HPACK header compression, instead of holding a connection each.
+ * Cleartext URLs are upgraded from HTTP/1.1, HTTPS ones negotiated via ALPN.
+ * One client is kept per TLS profile. The client always verifies host
+ * names, even for profiles which do not. The connect timeout is the one of
+ * the transport, and request bodies are buffered before being sent.
+ * Redirects are followed by the transport, with the rules of Redirect.
+ * Only built by the modern-jdk profile, see HTTPFactory.getHTTP2Transport.
+ */
+public class HTTP2Transport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Headers set by the client itself, which it refuses from the caller.
+     */
+    private static final String[] RESTRICTED_HEADERS = {"connection", "content-length", "expect", "host", "upgrade"};
+
+    /**
+     * Source of the TLS settings for HTTPS connections.
+     */
+    private final TLSContextManager tls;
+
+    /**
+     * Clients by TLS profile.
+     */
+    private final ConcurrentHashMap<String, HttpClient> clients = new ConcurrentHashMap<String, HttpClient>();
+
+    /**
+     * Connect timeout of the clients in milliseconds, 0 for none.
+     */
+    private volatile int connectTimeout = NetworkReferences.DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Default read timeout in milliseconds, 0 for none.
+     */
+    private volatile int readTimeout = NetworkReferences.DEFAULT_READ_TIMEOUT;
+
+    /**
+     * HTTP/2 transport constructor using the shared TLS context manager.
+     */
+    public HTTP2Transport() {
+        this(TLSContextManager.getInstance());
+    }
+
+    /**
+     * HTTP/2 transport constructor.
+     *
+     * @param tls Source of the TLS settings for HTTPS connections.
+     */
+    public HTTP2Transport(TLSContextManager tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * @param connectTimeout Connect timeout in milliseconds, 0 for none. Applies to clients created afterwards.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param readTimeout Default time to wait for the response head in milliseconds, 0 for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && deadline.isExpired())
+            throw new HTTPTimeoutException("Deadline expired before sending " + spec);
+
+        URI uri;
+        try {
+            uri = new URI(spec.getUrl());
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException("Invalid URL: " + spec.getUrl() + ": " + e.getMessage());
+        }
+        String method = spec.getMethod();
+        Map<String, String> headers = spec.getHeaders();
+        boolean hasBody = spec.getBody() != null;
+        HttpRequest.BodyPublisher body = publisher(spec.getBody());
+
+        for (int redirects = 0; ; redirects++) {
+            final CompletableFuture<HttpResponse<InputStream>> future = client(uri.getHost()).sendAsync(
+                    request(uri, method, headers, spec, body), HttpResponse.BodyHandlers.ofInputStream());
+            //Aborts the request, or the body being read once the response is in.
+            Watchdog watchdog = Watchdog.watch(deadline, new Closeable() {
+                @Override
+                public void close() throws IOException {
+                    if (!future.cancel(true) && !future.isCompletedExceptionally())
+                        future.getNow(null).body().close();
+                }
+            });
+            try {
+                HttpResponse<InputStream> response = await(future, spec);
+                Redirect redirect = null;
+                if (spec.isFollowRedirects()) {
+                    //The body is buffered, so it can always be sent again.
+                    try {
+                        redirect = Redirect.follow(uri.toURL(), method, headers, hasBody, true,
+                                response.statusCode(), response.headers().firstValue("Location").orElse(null));
+                    } catch (IOException | RuntimeException e) {
+                        response.body().close();
+                        throw e;
+                    }
+                }
+                if (redirect != null) {
+                    response.body().close();
+                    if (redirects >= NetworkReferences.MAX_REDIRECTS)
+                        throw new ProtocolException("Server redirected too many times (" + redirects + ")");
+                    try {
+                        uri = redirect.getUrl().toURI();
+                    } catch (URISyntaxException e) {
+                        throw new MalformedURLException("Invalid redirect URL: " + redirect.getUrl() + ": "
+                                + e.getMessage());
+                    }
+                    if (redirect.isBodyDropped()) {
+                        hasBody = false;
+                        body = HttpRequest.BodyPublishers.noBody();
+                    }
+                    method = redirect.getMethod();
+                    headers = redirect.getHeaders();
+                    LOGGER.debug("Following redirect to " + uri);
+                    continue;
+                }
+
+                IHTTPRequest request = HTTPFactory.getHTTPRequest(uri.toString(), method, headers, null);
+                return HTTPFactory.getHTTPResponse(request, response.statusCode(), response.headers().map(),
+                        response.body(), spec.isStreamResponse());
+            } catch (IOException | RuntimeException | Error e) {
+                if (Watchdog.cancel(watchdog) && !(e instanceof HTTPTimeoutException))
+                    throw new HTTPTimeoutException("Timed out reading the response of " + spec, e);
+                throw e;
+            } finally {
+                Watchdog.cancel(watchdog);
+            }
+        }
+    }
+
+    /**
+     * Waits for the response head.
+     */
+    private static HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> future,
+                                                   HTTPRequestSpec spec) throws IOException {
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the response of " + spec);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof HttpTimeoutException)
+                throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, cause);
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Request failed: " + spec, cause);
+        }
+    }
+
+    private HttpRequest request(URI uri, String method, Map<String, String> headers, HTTPRequestSpec spec,
+                                HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .method(method, body)
+                .header("Accept-Encoding", NetworkReferences.ACCEPT_ENCODING);
+
+        Deadline deadline = spec.getDeadline();
+        int readTimeout = spec.getReadTimeout() >= 0 ? spec.getReadTimeout() : this.readTimeout;
+        if (deadline != null)
+            readTimeout = deadline.capTimeout(readTimeout);
+        if (readTimeout > 0)
+            builder.timeout(Duration.ofMillis(readTimeout));
+
+        Iterator<Entry<String, String>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            if (isRestricted(entry.getKey()))
+                LOGGER.debug("Header left to the HTTP client: " + entry.getKey());
+            else
+                builder.setHeader(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param body Body of the request, null for none.
+     * @return Publisher of the body, buffered so it can be sent again on redirects.
+     */
+    private static HttpRequest.BodyPublisher publisher(IHTTPRequestBody body) throws IOException {
+        if (body == null)
+            return HttpRequest.BodyPublishers.noBody();
+        long length = body.getContentLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 && length < Integer.MAX_VALUE
+                ? (int) length : 8192);
+        body.writeTo(out);
+        return HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+    }
+
+    /**
+     * @param host Host of the request.
+     * @return Client using the TLS profile of the host.
+     */
+    private HttpClient client(String host) {
+        String profile = this.tls.getProfile(host);
+        HttpClient client = this.clients.get(profile);
+        if (client != null)
+            return client;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .sslContext(this.tls.getContext(profile));
+        if (this.connectTimeout > 0)
+            builder.connectTimeout(Duration.ofMillis(this.connectTimeout));
+        HttpClient created = builder.build();
+        client = this.clients.putIfAbsent(profile, created);
+        return client == null ? created : client;
+    }
+
+    private static boolean isRestricted(String name) {
+        for (String restricted : RESTRICTED_HEADERS)
+            if (restricted.equalsIgnoreCase(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Drops the clients. Their connections close once idle.
+     */
+    @Override
+    public void shutdown() {
+        this.clients.clear();
+    }
+
+}
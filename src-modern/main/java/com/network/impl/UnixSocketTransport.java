@@ -0,0 +1,522 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPRequest;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport sending HTTP/1.1 over Unix domain sockets to services on the
+ * same host, skipping the TCP stack and the loopback ports.
+ * The socket path is the percent encoded authority of a unix URL, such as
+ * unix://%2Fvar%2Frun%2Fsidecar.sock/api/status for /api/status served on
+ * /var/run/sidecar.sock. Other URLs go to the delegate transport.
+ * Connections are kept alive per socket path. Read timeouts, which apply to
+ * every read of the response like a socket timeout, and deadlines, which
+ * last until the body has been read, are enforced by closing the socket.
+ * Redirects are not followed.
+ * Needs JDK 16 or later; only built by the modern-jdk profile, see
+ * HTTPFactory.getUnixSocketTransport.
+ */
+public class UnixSocketTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Scheme of the URLs sent over Unix domain sockets.
+     */
+    public static final String SCHEME = "unix";
+
+    /**
+     * Transport for the URLs of other schemes.
+     */
+    private final IHTTPTransport delegate;
+
+    /**
+     * Idle connections by socket path, most recently used first.
+     */
+    private final ConcurrentHashMap<String, ConcurrentLinkedDeque<Connection>> idle =
+            new ConcurrentHashMap<String, ConcurrentLinkedDeque<Connection>>();
+
+    /**
+     * Default read timeout in milliseconds, 0 for none.
+     */
+    private volatile int readTimeout = NetworkReferences.DEFAULT_READ_TIMEOUT;
+
+    /**
+     * Unix socket transport constructor, sending other URLs through a pooled transport.
+     */
+    public UnixSocketTransport() {
+        this(new PooledHTTPTransport());
+    }
+
+    /**
+     * Unix socket transport constructor.
+     *
+     * @param delegate Transport for the URLs of other schemes.
+     */
+    public UnixSocketTransport(IHTTPTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param readTimeout Default read timeout in milliseconds, 0 for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        if (!spec.getUrl().regionMatches(true, 0, SCHEME + ":", 0, SCHEME.length() + 1))
+            return this.delegate.execute(spec);
+
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && deadline.isExpired())
+            throw new HTTPTimeoutException("Deadline expired before sending " + spec);
+
+        URI uri;
+        try {
+            uri = new URI(spec.getUrl());
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException("Invalid URL: " + spec.getUrl() + ": " + e.getMessage());
+        }
+        String path = uri.getAuthority();
+        if (path == null || path.isEmpty())
+            throw new MalformedURLException("No socket path in " + spec.getUrl());
+        //The request head only needs the target, the host is a placeholder.
+        String target = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null)
+            target = target + "?" + uri.getRawQuery();
+        URL url = new URL("http", "localhost", target);
+
+        int readTimeout = spec.getReadTimeout() >= 0 ? spec.getReadTimeout() : this.readTimeout;
+        IHTTPRequestBody body = spec.getBody();
+        for (; ; ) {
+            Connection connection = acquire(path);
+            connection.timed.setReadTimeout(readTimeout);
+            Watchdog watchdog = Watchdog.watch(deadline, connection.channel);
+            HTTP1Codec.ResponseHead head;
+            boolean sent = false;
+            try {
+                writeRequest(connection.out, spec.getMethod(), url, spec, body);
+                connection.out.flush();
+                sent = true;
+                head = HTTP1Codec.readResponseHead(connection.in);
+            } catch (IOException | RuntimeException | Error e) {
+                connection.close();
+                if (Watchdog.cancel(watchdog) || e instanceof SocketTimeoutException)
+                    throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, e);
+                //Once fully sent, the server may have acted on the request.
+                if (e instanceof IOException && connection.reused && (body == null || body.isReplayable())
+                        && (!sent || HTTPRequestSpec.isIdempotent(spec.getMethod()))) {
+                    LOGGER.debug("Retrying " + spec + " on a new connection: " + e.getMessage());
+                    continue;
+                }
+                throw e;
+            }
+
+            //From here on the body stream owns the connection and the watchdog.
+            InputStream in = responseBody(connection, spec.getMethod(), head, watchdog);
+            try {
+                IHTTPRequest request = HTTPFactory.getHTTPRequest(spec.getUrl(), spec.getMethod(),
+                        spec.getHeaders(), null);
+                return HTTPFactory.getHTTPResponse(request, head.getStatus(), head.getHeaders(), in,
+                        spec.isStreamResponse());
+            } catch (RuntimeException | Error e) {
+                in.close();
+                if (Watchdog.cancel(watchdog) || isTimeout(e))
+                    throw new HTTPTimeoutException("Timed out reading the response of " + spec, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return Idle connection to the socket, or a new one.
+     */
+    private Connection acquire(String path) throws IOException {
+        ConcurrentLinkedDeque<Connection> connections = this.idle.get(path);
+        if (connections != null) {
+            Connection connection;
+            long threshold = System.currentTimeMillis() - NetworkReferences.DEFAULT_IDLE_CONNECTION_TIMEOUT;
+            while ((connection = connections.pollFirst()) != null) {
+                if (connection.channel.isOpen() && connection.lastUsed >= threshold) {
+                    connection.reused = true;
+                    return connection;
+                }
+                connection.close();
+            }
+        }
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new Connection(path, channel);
+    }
+
+    /**
+     * Hands a connection back for reuse, or closes it.
+     */
+    private void release(Connection connection, boolean reusable) {
+        if (!reusable || !connection.channel.isOpen()) {
+            connection.close();
+            return;
+        }
+        ConcurrentLinkedDeque<Connection> connections = this.idle.get(connection.path);
+        if (connections == null) {
+            ConcurrentLinkedDeque<Connection> created = new ConcurrentLinkedDeque<Connection>();
+            connections = this.idle.putIfAbsent(connection.path, created);
+            if (connections == null)
+                connections = created;
+        }
+        if (connections.size() >= NetworkReferences.DEFAULT_MAX_CONNECTIONS_PER_ROUTE) {
+            connection.close();
+            return;
+        }
+        connection.lastUsed = System.currentTimeMillis();
+        connections.offerFirst(connection);
+    }
+
+    private static void writeRequest(OutputStream out, String method, URL url, HTTPRequestSpec spec,
+                                     IHTTPRequestBody body) throws IOException {
+        if (body == null) {
+            HTTP1Codec.writeRequestHead(out, method, url, spec.getHeaders(), -1, false);
+            return;
+        }
+        long length = body.getContentLength();
+        HTTP1Codec.writeRequestHead(out, method, url, spec.getHeaders(), length, length < 0);
+        if (length < 0) {
+            HTTP1Codec.ChunkedOutputStream chunked = new HTTP1Codec.ChunkedOutputStream(out);
+            body.writeTo(chunked);
+            chunked.close();
+        } else
+            body.writeTo(out);
+    }
+
+    /**
+     * The watchdog is cancelled before the connection is handed back.
+     *
+     * @return Body stream of the response, handing the connection back at its end.
+     */
+    private InputStream responseBody(Connection connection, String method, HTTP1Codec.ResponseHead head,
+                                     Watchdog watchdog) {
+        boolean keepAlive = head.isKeepAlive();
+        if (!head.hasBody(method)) {
+            release(connection, !Watchdog.cancel(watchdog) && keepAlive);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        if (head.isChunked())
+            return new BodyStream(connection, new HTTP1Codec.ChunkedInputStream(connection.in), keepAlive,
+                    watchdog);
+        long length = head.getContentLength();
+        if (length >= 0)
+            return new BodyStream(connection, new HTTP1Codec.FixedLengthInputStream(connection.in, length),
+                    keepAlive, watchdog);
+        //Body delimited by the server closing the connection.
+        return new BodyStream(connection, connection.in, false, watchdog);
+    }
+
+    /**
+     * @param e Exception raised by the call, possibly wrapped by the response.
+     * @return Whether it was caused by a read timeout.
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof SocketTimeoutException)
+                return true;
+        return false;
+    }
+
+    /**
+     * Closes the idle connections and shuts the delegate down.
+     */
+    @Override
+    public void shutdown() {
+        Iterator<ConcurrentLinkedDeque<Connection>> iter = this.idle.values().iterator();
+        while (iter.hasNext()) {
+            ConcurrentLinkedDeque<Connection> connections = iter.next();
+            Connection connection;
+            while ((connection = connections.pollFirst()) != null)
+                connection.close();
+        }
+        this.delegate.shutdown();
+    }
+
+    /**
+     * Keep-alive connection to a socket path.
+     */
+    private static final class Connection {
+
+        private final String path;
+
+        private final SocketChannel channel;
+
+        /**
+         * Channel input, timing out every read.
+         */
+        private final TimedInputStream timed;
+
+        private final BufferedInputStream in;
+
+        private final BufferedOutputStream out;
+
+        private volatile long lastUsed;
+
+        /**
+         * Whether the connection has served a request already, so the server may have closed it since.
+         */
+        private boolean reused;
+
+        Connection(String path, SocketChannel channel) {
+            this.path = path;
+            this.channel = channel;
+            this.timed = new TimedInputStream(Channels.newInputStream(channel), channel);
+            this.in = new BufferedInputStream(this.timed, 8192);
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 8192);
+        }
+
+        void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing connection to " + this.path, e);
+            }
+        }
+
+    }
+
+    /**
+     * Channel input stream which closes the channel when a single read
+     * takes longer than the read timeout, as a socket timeout would.
+     * Channels of Unix domain sockets have no timeout of their own.
+     * Rather than arming a timer for every read, a check scheduled on the
+     * watchdog timer looks at the read in progress and schedules itself
+     * again while reads go on, so a busy connection costs one timer task
+     * per read timeout period.
+     */
+    private static final class TimedInputStream extends InputStream {
+
+        private final InputStream in;
+        private final SocketChannel channel;
+
+        /**
+         * Read timeout of the current request in milliseconds, 0 for none.
+         */
+        private volatile int readTimeout;
+
+        /**
+         * System.nanoTime at which the read in progress started, 0 while not reading.
+         */
+        private volatile long readStart;
+
+        /**
+         * Whether a check is scheduled.
+         */
+        private final AtomicBoolean checking = new AtomicBoolean();
+
+        /**
+         * Last check scheduled.
+         */
+        private volatile ScheduledFuture<?> pending;
+
+        /**
+         * Set once a read timed out and the channel was closed.
+         */
+        private volatile boolean timedOut;
+
+        private final Runnable check = new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        };
+
+        TimedInputStream(InputStream in, SocketChannel channel) {
+            this.in = in;
+            this.channel = channel;
+        }
+
+        /**
+         * Called between requests, while no read is in progress.
+         *
+         * @param readTimeout Read timeout of the next request in milliseconds, 0 for none.
+         */
+        void setReadTimeout(int readTimeout) {
+            if (readTimeout == this.readTimeout)
+                return;
+            this.readTimeout = readTimeout;
+            //A check scheduled for a longer timeout would come too late.
+            ScheduledFuture<?> pending = this.pending;
+            if (pending != null && pending.cancel(false))
+                this.checking.set(false);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int timeout = this.readTimeout;
+            if (timeout > 0) {
+                this.readStart = System.nanoTime() | 1;
+                if (this.checking.compareAndSet(false, true))
+                    this.pending = Watchdog.schedule(this.check, timeout);
+            }
+            try {
+                return this.in.read(b, off, len);
+            } catch (IOException e) {
+                if (this.timedOut)
+                    throw new SocketTimeoutException("Read timed out after " + timeout + " ms");
+                throw e;
+            } finally {
+                this.readStart = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+
+        /**
+         * Closes the channel if the read in progress is overdue, otherwise
+         * checks again when it would be, as long as reads go on.
+         */
+        private void check() {
+            int timeout = this.readTimeout;
+            long start = this.readStart;
+            if (start != 0 && timeout > 0 && this.channel.isOpen()) {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsed >= timeout) {
+                    this.timedOut = true;
+                    try {
+                        this.channel.close();
+                    } catch (IOException e) {
+                        LOGGER.debug("Error closing timed out connection.", e);
+                    }
+                } else
+                    this.pending = Watchdog.schedule(this.check, timeout - elapsed);
+                return;
+            }
+            this.checking.set(false);
+            //A read may have started after readStart was looked at.
+            if (this.readStart != 0 && this.channel.isOpen() && this.checking.compareAndSet(false, true))
+                this.pending = Watchdog.schedule(this.check, this.readTimeout);
+        }
+
+    }
+
+    /**
+     * Response body stream which hands the connection back at end of stream.
+     * If the stream is closed before being fully read, the connection is discarded.
+     * The deadline watchdog of the exchange is cancelled before the connection
+     * is handed back, so that it cannot close it once another caller uses it.
+     */
+    private final class BodyStream extends InputStream {
+
+        private final Connection connection;
+        private final InputStream body;
+        private final boolean reusable;
+        private final Watchdog watchdog;
+        private boolean released;
+
+        BodyStream(Connection connection, InputStream body, boolean reusable, Watchdog watchdog) {
+            this.connection = connection;
+            this.body = body;
+            this.reusable = reusable;
+            this.watchdog = watchdog;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.released)
+                return -1;
+            try {
+                int b = this.body.read();
+                if (b == -1)
+                    release(this.reusable);
+                return b;
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.released)
+                return -1;
+            try {
+                int read = this.body.read(b, off, len);
+                if (read == -1)
+                    release(this.reusable);
+                return read;
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.released ? 0 : this.body.available();
+        }
+
+        @Override
+        public void close() {
+            release(false);
+        }
+
+        private void release(boolean reuse) {
+            if (this.released)
+                return;
+            this.released = true;
+            //A watchdog which fired has closed the channel.
+            if (Watchdog.cancel(this.watchdog))
+                reuse = false;
+            UnixSocketTransport.this.release(this.connection, reuse);
+        }
+
+    }
+
+}
@@ -0,0 +1,529 @@
+package main.java.com.network.impl;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.Promise;
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPHeaders;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPRequest;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.channels.ClosedChannelException;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transport running on a Netty event loop, with native epoll on Linux and
+ * NIO elsewhere. A few event loop threads drive every connection, so
+ * thousands of them can be open without as many threads; only the callers
+ * block, waiting for their response.
+ * Connections are pooled per route like ConnectionPool does. Request and
+ * response bodies are held in pooled direct buffers. A streamed response
+ * is handed over in its buffer, released once the body stream is closed;
+ * any other is copied out and its buffer released right away. Responses are
+ * aggregated before being handed over, so a streamed one still has to fit
+ * in memory, and one larger than
+ * {@value NetworkReferences#MAX_AGGREGATED_CONTENT_LENGTH} bytes fails.
+ * Redirects are followed with the rules of Redirect.
+ * A per-call connect timeout bounds the wait for a channel, whether it is
+ * being connected or waited for in the pool; a connection still being
+ * established then is pooled once it is. Connections themselves give up
+ * after {@value NetworkReferences#DEFAULT_CONNECT_TIMEOUT} ms.
+ * Host names are resolved through the DNSCache, as ConnectionPool does.
+ * Only built by the netty profile, see HTTPFactory.getNettyTransport.
+ */
+public class NettyTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Response of the request in flight on a channel.
+     */
+    private static final AttributeKey<CompletableFuture<FullHttpResponse>> RESPONSE =
+            AttributeKey.valueOf("restactions.response");
+
+    /**
+     * Whether a channel already served a request, so it may have been closed by the server since.
+     */
+    private static final AttributeKey<Boolean> REUSED = AttributeKey.valueOf("restactions.reused");
+
+    private final EventLoopGroup group;
+
+    private final AbstractChannelPoolMap<Route, FixedChannelPool> pools;
+
+    /**
+     * Source of the TLS settings for HTTPS routes.
+     */
+    private final TLSContextManager tls;
+
+    /**
+     * Default read timeout in milliseconds, 0 for none.
+     */
+    private volatile int readTimeout = NetworkReferences.DEFAULT_READ_TIMEOUT;
+
+    /**
+     * Netty transport constructor with the default settings.
+     */
+    public NettyTransport() {
+        this(0, NetworkReferences.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, TLSContextManager.getInstance());
+    }
+
+    /**
+     * Netty transport constructor.
+     *
+     * @param threads                Number of event loop threads, 0 for twice the number of cores.
+     * @param maxConnectionsPerRoute Maximum number of connections per route.
+     * @param tls                    Source of the TLS settings for HTTPS routes.
+     */
+    public NettyTransport(int threads, int maxConnectionsPerRoute, TLSContextManager tls) {
+        this(threads, maxConnectionsPerRoute, tls, DNSCache.getInstance());
+    }
+
+    /**
+     * Netty transport constructor.
+     *
+     * @param threads                Number of event loop threads, 0 for twice the number of cores.
+     * @param maxConnectionsPerRoute Maximum number of connections per route.
+     * @param tls                    Source of the TLS settings for HTTPS routes.
+     * @param dns                    Cache of the host name resolutions.
+     */
+    public NettyTransport(int threads, final int maxConnectionsPerRoute, TLSContextManager tls, DNSCache dns) {
+        this.tls = tls;
+        boolean epoll = Epoll.isAvailable();
+        this.group = epoll ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+        LOGGER.info("Netty transport using " + (epoll ? "native epoll" : "NIO") + ".");
+
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(this.group)
+                .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, NetworkReferences.DEFAULT_CONNECT_TIMEOUT)
+                .resolver(new DNSCacheResolverGroup(dns));
+
+        this.pools = new AbstractChannelPoolMap<Route, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(final Route route) {
+                //Left unresolved so the DNSCache is asked again for every new connection.
+                Bootstrap routeBootstrap = bootstrap.clone()
+                        .remoteAddress(InetSocketAddress.createUnresolved(route.host, route.port));
+                return new FixedChannelPool(routeBootstrap, new AbstractChannelPoolHandler() {
+                    @Override
+                    public void channelCreated(Channel channel) {
+                        initChannel(channel, route);
+                    }
+                }, ChannelHealthChecker.ACTIVE, FixedChannelPool.AcquireTimeoutAction.FAIL,
+                        NetworkReferences.DEFAULT_CONNECTION_REQUEST_TIMEOUT, maxConnectionsPerRoute,
+                        Integer.MAX_VALUE);
+            }
+        };
+    }
+
+    /**
+     * @param readTimeout Default read timeout in milliseconds, 0 for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && deadline.isExpired())
+            throw new HTTPTimeoutException("Deadline expired before sending " + spec);
+
+        URL url = new URL(spec.getUrl());
+        String method = spec.getMethod();
+        Map<String, String> headers = spec.getHeaders();
+        ByteBuf body = encodeBody(spec.getBody());
+        try {
+            ByteBuf payload = body;
+            for (int redirects = 0; ; redirects++) {
+                FullHttpResponse response = exchange(url, method, headers, spec, payload);
+                try {
+                    int status = response.status().code();
+                    //The body is held in a buffer, so it can always be sent again.
+                    Redirect redirect = spec.isFollowRedirects() ? Redirect.follow(url, method, headers,
+                            payload != null, true, status, response.headers().get(HttpHeaderNames.LOCATION)) : null;
+                    if (redirect != null) {
+                        if (redirects >= NetworkReferences.MAX_REDIRECTS)
+                            throw new ProtocolException("Server redirected too many times (" + redirects + ")");
+                        if (redirect.isBodyDropped())
+                            payload = null;
+                        method = redirect.getMethod();
+                        headers = redirect.getHeaders();
+                        url = redirect.getUrl();
+                        LOGGER.debug("Following redirect to " + url);
+                        continue;
+                    }
+
+                    IHTTPRequest request = HTTPFactory.getHTTPRequest(url.toString(), method, headers, null);
+                    InputStream in;
+                    if (spec.isStreamResponse())
+                        in = new ByteBufInputStream(response.content().retain(), true);
+                    else
+                        in = new ByteArrayInputStream(ByteBufUtil.getBytes(response.content()));
+                    return HTTPFactory.getHTTPResponse(request, status, headers(response), in,
+                            spec.isStreamResponse());
+                } finally {
+                    response.release();
+                }
+            }
+        } finally {
+            if (body != null)
+                body.release();
+        }
+    }
+
+    /**
+     * Sends the request on a pooled channel and waits for the whole response.
+     * A reused channel may have been closed by the server in the meantime,
+     * in which case the request is retried on another one, provided it had
+     * not been sent or its method is idempotent.
+     */
+    private FullHttpResponse exchange(URL url, String method, Map<String, String> headers, HTTPRequestSpec spec,
+                                      ByteBuf body) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        ChannelPool pool = this.pools.get(new Route(url));
+        int readTimeout = spec.getReadTimeout() >= 0 ? spec.getReadTimeout() : this.readTimeout;
+        long acquireTimeout = spec.getConnectTimeout() > 0 ? spec.getConnectTimeout()
+                : NetworkReferences.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+
+        for (; ; ) {
+            final Channel channel = acquire(pool, deadline, acquireTimeout, url);
+            boolean reused = channel.attr(REUSED).getAndSet(Boolean.TRUE) != null;
+            CompletableFuture<FullHttpResponse> response = new CompletableFuture<FullHttpResponse>();
+            channel.attr(RESPONSE).set(response);
+
+            Watchdog watchdog = Watchdog.watch(deadline, new Closeable() {
+                @Override
+                public void close() {
+                    channel.close();
+                }
+            });
+            ChannelFuture write = null;
+            boolean keepAlive = false;
+            try {
+                write = channel.writeAndFlush(request(url, method, headers, body));
+                FullHttpResponse full = await(response, deadline, readTimeout, "response of " + spec);
+                keepAlive = HttpUtil.isKeepAlive(full);
+                return full;
+            } catch (IOException | RuntimeException e) {
+                if (Watchdog.cancel(watchdog) && !(e instanceof HTTPTimeoutException))
+                    throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, e);
+                //Unless the write is known to have failed, the server may have acted on the request.
+                boolean unsent = write != null && write.isDone() && !write.isSuccess();
+                if (reused && e instanceof ClosedChannelException
+                        && (unsent || HTTPRequestSpec.isIdempotent(method))) {
+                    LOGGER.debug("Retrying " + spec + " on a new connection.");
+                    continue;
+                }
+                throw e;
+            } finally {
+                Watchdog.cancel(watchdog);
+                channel.attr(RESPONSE).set(null);
+                if (!keepAlive)
+                    channel.close();
+                pool.release(channel);
+            }
+        }
+    }
+
+    private static FullHttpRequest request(URL url, String method, Map<String, String> headers, ByteBuf body) {
+        String target = url.getFile().isEmpty() ? "/" : url.getFile();
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                HttpMethod.valueOf(method), target,
+                body == null ? Unpooled.EMPTY_BUFFER : body.retainedDuplicate());
+
+        int port = url.getPort();
+        request.headers().set(HttpHeaderNames.HOST, port == -1 ? url.getHost() : url.getHost() + ":" + port);
+        request.headers().set(HttpHeaderNames.USER_AGENT, NetworkReferences.USER_AGENT);
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, NetworkReferences.ACCEPT_ENCODING);
+        request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        Iterator<Entry<String, String>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            request.headers().set(entry.getKey(), entry.getValue());
+        }
+        if (body != null)
+            HttpUtil.setContentLength(request, body.readableBytes());
+        return request;
+    }
+
+    /**
+     * @param body Body of the request, null for none.
+     * @return Body written to a pooled direct buffer, null for none.
+     */
+    private static ByteBuf encodeBody(IHTTPRequestBody body) throws IOException {
+        if (body == null)
+            return null;
+        long length = body.getContentLength();
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(length > 0 && length < Integer.MAX_VALUE
+                ? (int) length : 8192);
+        try {
+            ByteBufOutputStream out = new ByteBufOutputStream(buffer);
+            body.writeTo(out);
+            out.close();
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a future of the event loop, within the timeout and the deadline.
+     */
+    private static <T> T await(java.util.concurrent.Future<T> future, Deadline deadline, long timeout,
+                               String what) throws IOException {
+        long wait = deadline == null ? timeout : deadline.capTimeout(timeout);
+        try {
+            return wait > 0 ? future.get(wait, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            throw new HTTPTimeoutException("Timed out waiting for the " + what, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the " + what);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Failed waiting for the " + what, cause);
+        }
+    }
+
+    /**
+     * Leases a channel of the pool. One acquired after the caller gave up is handed back.
+     *
+     * @param timeout Time to wait for the channel in milliseconds.
+     */
+    private static Channel acquire(final ChannelPool pool, Deadline deadline, long timeout, URL url)
+            throws IOException {
+        Future<Channel> future = pool.acquire();
+        try {
+            return await(future, deadline, timeout, "connection to " + url.getHost());
+        } catch (IOException | RuntimeException e) {
+            future.addListener(new GenericFutureListener<Future<Channel>>() {
+                @Override
+                public void operationComplete(Future<Channel> acquired) {
+                    if (acquired.isSuccess())
+                        pool.release(acquired.getNow());
+                }
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * @return Headers of the response, as received on the wire.
+     */
+    private static HTTPHeaders headers(FullHttpResponse response) {
+        HTTPHeaders headers = new HTTPHeaders(response.headers().size());
+        Iterator<Entry<String, String>> iter = response.headers().iteratorAsString();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            headers.add(entry.getKey(), entry.getValue());
+        }
+        return headers;
+    }
+
+    private void initChannel(Channel channel, Route route) {
+        if (route.secure) {
+            SSLEngine engine = this.tls.getContext(this.tls.getProfile(route.host))
+                    .createSSLEngine(route.host, route.port);
+            engine.setUseClientMode(true);
+            if (this.tls.getHostnameVerifier(route.host) == null) {
+                SSLParameters parameters = engine.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(parameters);
+            }
+            channel.pipeline().addLast(new SslHandler(engine));
+        }
+        channel.pipeline()
+                .addLast(new HttpClientCodec())
+                .addLast(new HttpObjectAggregator(NetworkReferences.MAX_AGGREGATED_CONTENT_LENGTH))
+                .addLast(new ResponseHandler());
+    }
+
+    /**
+     * Closes all pooled connections and stops the event loop.
+     */
+    @Override
+    public void shutdown() {
+        this.pools.close();
+        this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Completes the response of the request in flight on the channel.
+     */
+    private static final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            CompletableFuture<FullHttpResponse> pending = ctx.channel().attr(RESPONSE).get();
+            if (pending == null || !pending.complete(response.retain()))
+                response.release();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            fail(ctx, new ClosedChannelException());
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            fail(ctx, cause);
+            ctx.close();
+        }
+
+        private static void fail(ChannelHandlerContext ctx, Throwable cause) {
+            CompletableFuture<FullHttpResponse> pending = ctx.channel().attr(RESPONSE).get();
+            if (pending != null)
+                pending.completeExceptionally(cause);
+        }
+
+    }
+
+    /**
+     * Resolves the host names of new connections through the DNSCache, on the
+     * event loop like the default resolver of Netty. Successive connections
+     * to a host rotate through its addresses.
+     */
+    private static final class DNSCacheResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+        private final DNSCache dns;
+
+        DNSCacheResolverGroup(DNSCache dns) {
+            this.dns = dns;
+        }
+
+        @Override
+        protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+            return new InetNameResolver(executor) {
+                @Override
+                protected void doResolve(String host, Promise<InetAddress> promise) {
+                    try {
+                        promise.setSuccess(dns.resolve(host).get(0));
+                    } catch (UnknownHostException e) {
+                        promise.setFailure(e);
+                    }
+                }
+
+                @Override
+                protected void doResolveAll(String host, Promise<List<InetAddress>> promise) {
+                    try {
+                        promise.setSuccess(dns.resolve(host));
+                    } catch (UnknownHostException e) {
+                        promise.setFailure(e);
+                    }
+                }
+            }.asAddressResolver();
+        }
+
+    }
+
+    /**
+     * Protocol, host and port of a pool of connections.
+     */
+    private static final class Route {
+
+        private final boolean secure;
+
+        private final String host;
+
+        private final int port;
+
+        Route(URL url) {
+            this.secure = "https".equalsIgnoreCase(url.getProtocol());
+            this.host = url.getHost().toLowerCase();
+            this.port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Route))
+                return false;
+            Route other = (Route) o;
+            return this.secure == other.secure && this.port == other.port && this.host.equals(other.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.host.hashCode() * 31 + this.port) * 2 + (this.secure ? 1 : 0);
+        }
+
+    }
+
+}
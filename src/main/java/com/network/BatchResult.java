@@ -0,0 +1,122 @@
+package main.java.com.network;
+
+/**
+ * Outcome of one request of a batch.
+ * Either the response or the failure is set, never both.
+ */
+public class BatchResult {
+
+    /**
+     * Position of the request in the batch.
+     */
+    private final int index;
+
+    /**
+     * Description of the request that was made.
+     */
+    private final HTTPRequestSpec spec;
+
+    /**
+     * HTTP response, null if the request failed.
+     */
+    private final IHTTPResponse response;
+
+    /**
+     * Reason the request failed, null if it succeeded.
+     */
+    private final Throwable failure;
+
+    /**
+     * Time spent waiting for a free slot in the batch, in nanoseconds.
+     */
+    private final long queuedNanos;
+
+    /**
+     * Time taken by the request, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Batch result constructor.
+     *
+     * @param index        Position of the request in the batch.
+     * @param spec         Description of the request that was made.
+     * @param response     HTTP response, null if the request failed.
+     * @param failure      Reason the request failed, null if it succeeded.
+     * @param queuedNanos  Time spent waiting for a free slot in the batch, in nanoseconds.
+     * @param elapsedNanos Time taken by the request, in nanoseconds.
+     */
+    public BatchResult(int index, HTTPRequestSpec spec, IHTTPResponse response, Throwable failure,
+                       long queuedNanos, long elapsedNanos) {
+        this.index = index;
+        this.spec = spec;
+        this.response = response;
+        this.failure = failure;
+        this.queuedNanos = queuedNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return Position of the request in the batch.
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @return Description of the request that was made.
+     */
+    public HTTPRequestSpec getSpec() {
+        return this.spec;
+    }
+
+    /**
+     * @return Whether a response was received, whatever its status code.
+     */
+    public boolean isSuccess() {
+        return this.failure == null;
+    }
+
+    /**
+     * @return HTTP response, null if the request failed.
+     */
+    public IHTTPResponse getResponse() {
+        return this.response;
+    }
+
+    /**
+     * @return Reason the request failed, null if it succeeded.
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @return Time spent waiting for a free slot in the batch, in milliseconds.
+     */
+    public long getQueuedMillis() {
+        return this.queuedNanos / 1000000;
+    }
+
+    /**
+     * @return Time taken by the request, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return Time taken by the request, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + this.index + " " + this.spec.getMethod() + " " + this.spec.getUrl()
+                + (isSuccess() ? " -> " + this.response.getStatusCode() : " failed: " + this.failure)
+                + " in " + getElapsedMillis() + " ms";
+    }
+
+}
@@ -0,0 +1,45 @@
+package main.java.com.network;
+
+/**
+ * Thrown without contacting the host when its circuit breaker is open,
+ * or half open with all the probe calls already in flight.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Host whose circuit is open.
+     */
+    private final String host;
+
+    /**
+     * Time until probe calls are let through, in milliseconds.
+     */
+    private final long retryAfterMillis;
+
+    /**
+     * @param host             Host whose circuit is open.
+     * @param retryAfterMillis Time until probe calls are let through, in milliseconds.
+     */
+    public CircuitBreakerOpenException(String host, long retryAfterMillis) {
+        super("Circuit breaker open for " + host + ", retry in " + retryAfterMillis + " ms");
+        this.host = host;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return Host whose circuit is open.
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * @return Time until probe calls are let through, in milliseconds.
+     */
+    public long getRetryAfterMillis() {
+        return this.retryAfterMillis;
+    }
+
+}
@@ -0,0 +1,33 @@
+package main.java.com.network;
+
+/**
+ * Thrown when a call is refused by the adaptive concurrency limiter because
+ * the host already has as many requests in flight as it is allowed, and no
+ * slot freed up within the queueing time.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Limit of the host when the call was refused.
+     */
+    private final int limit;
+
+    /**
+     * @param message Description of the limit.
+     * @param limit   Limit of the host when the call was refused.
+     */
+    public ConcurrencyLimitExceededException(String message, int limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /**
+     * @return Limit of the host when the call was refused.
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+}
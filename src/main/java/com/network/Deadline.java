@@ -0,0 +1,166 @@
+package main.java.com.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a call, including connecting, writing the request
+ * and reading the response, has to be completed.
+ * A deadline is absolute, so the same instance can be handed down through
+ * several calls and each of them only gets the time that is left.
+ * Cancelling a deadline makes it expire right away, aborting the calls
+ * running under it, and cancels the deadlines derived from it.
+ */
+public final class Deadline {
+
+    /**
+     * Expiry far enough in the future to never be reached, in nanoseconds from now.
+     */
+    private static final long NEVER = TimeUnit.DAYS.toNanos(365);
+
+    /**
+     * Expiry, in System.nanoTime units.
+     */
+    private final long expiry;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Callbacks run when the deadline is cancelled.
+     */
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<Runnable>();
+
+    /**
+     * Deadline this one was derived from, null for none.
+     */
+    private final Deadline parent;
+
+    /**
+     * Callback registered on the parent, cancelling this deadline along with it.
+     */
+    private final Runnable parentListener;
+
+    private Deadline(long expiry) {
+        this(expiry, null);
+    }
+
+    private Deadline(long expiry, Deadline parent) {
+        this.expiry = expiry;
+        this.parent = parent;
+        this.parentListener = parent == null ? null : new Runnable() {
+            @Override
+            public void run() {
+                cancel();
+            }
+        };
+    }
+
+    /**
+     * @param timeout Time from now until the deadline.
+     * @param unit    Unit of the timeout.
+     * @return Deadline expiring after the timeout.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @param timeout Time from now until the deadline, in milliseconds.
+     * @return Deadline expiring after the timeout.
+     */
+    public static Deadline afterMillis(long timeout) {
+        return after(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param parent Deadline to expire with, null for none.
+     * @return Deadline expiring with the parent, or practically never if there
+     * is none, which can be cancelled without affecting the parent but is
+     * cancelled along with it until detached.
+     */
+    public static Deadline derive(Deadline parent) {
+        if (parent == null)
+            return new Deadline(System.nanoTime() + NEVER);
+        Deadline deadline = new Deadline(parent.expiry, parent);
+        parent.addCancelListener(deadline.parentListener);
+        return deadline;
+    }
+
+    /**
+     * Stops cancelling the deadline along with the one it was derived from,
+     * once the work running under it is over, so that a long lived parent
+     * does not keep it.
+     */
+    public void detach() {
+        if (this.parent != null)
+            this.parent.removeCancelListener(this.parentListener);
+    }
+
+    /**
+     * Makes the deadline expire right away and aborts the calls running under it.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        for (Runnable listener : this.cancelListeners)
+            listener.run();
+    }
+
+    /**
+     * @return Whether the deadline has been cancelled.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @param listener Callback run when the deadline is cancelled, right away if it already is.
+     */
+    public void addCancelListener(Runnable listener) {
+        this.cancelListeners.add(listener);
+        if (this.cancelled)
+            listener.run();
+    }
+
+    /**
+     * @param listener Callback which is no longer needed.
+     */
+    public void removeCancelListener(Runnable listener) {
+        this.cancelListeners.remove(listener);
+    }
+
+    /**
+     * @return Whether the deadline has passed or has been cancelled.
+     */
+    public boolean isExpired() {
+        return this.cancelled || System.nanoTime() - this.expiry >= 0;
+    }
+
+    /**
+     * @return Time left until the deadline in milliseconds, 0 if it has passed or has been cancelled.
+     */
+    public long remainingMillis() {
+        if (this.cancelled)
+            return 0;
+        long remaining = this.expiry - System.nanoTime();
+        return remaining <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining);
+    }
+
+    /**
+     * Caps a timeout so that it does not go past the deadline.
+     *
+     * @param timeout Timeout in milliseconds, 0 or less for none.
+     * @return Timeout to be used, never 0 since socket APIs treat it as infinite.
+     */
+    public int capTimeout(long timeout) {
+        long remaining = Math.max(1, remainingMillis());
+        long capped = timeout <= 0 ? remaining : Math.min(timeout, remaining);
+        return (int) Math.min(capped, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return this.cancelled ? "Deadline cancelled" : "Deadline in " + remainingMillis() + " ms";
+    }
+
+}
@@ -0,0 +1,82 @@
+package main.java.com.network;
+
+/**
+ * Outcome of downloading a response body to a file.
+ */
+public class DownloadResult {
+
+    /**
+     * HTTP response whose body was downloaded.
+     */
+    private final IHTTPResponse response;
+
+    /**
+     * Number of bytes written to the file.
+     */
+    private final long bytesWritten;
+
+    /**
+     * Time taken to transfer the body, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Download result constructor.
+     *
+     * @param response     HTTP response whose body was downloaded.
+     * @param bytesWritten Number of bytes written to the file.
+     * @param elapsedNanos Time taken to transfer the body, in nanoseconds.
+     */
+    public DownloadResult(IHTTPResponse response, long bytesWritten, long elapsedNanos) {
+        this.response = response;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return HTTP response whose body was downloaded. Its body has already been consumed.
+     */
+    public IHTTPResponse getResponse() {
+        return this.response;
+    }
+
+    /**
+     * @return HTTP status code of the response.
+     */
+    public int getStatusCode() {
+        return this.response.getStatusCode();
+    }
+
+    /**
+     * @return Number of bytes written to the file.
+     * 0 if the response was not successful, in which case nothing is written.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * @return Time taken to transfer the body, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return Transfer throughput in bytes per second.
+     */
+    public double getThroughput() {
+        if (this.elapsedNanos <= 0)
+            return 0;
+        return this.bytesWritten * 1e9 / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Status: " + getStatusCode()
+                + "\nBytes written: " + this.bytesWritten
+                + "\nElapsed: " + getElapsedMillis() + " ms"
+                + "\nThroughput: " + String.format("%.1f", getThroughput() / 1024) + " KB/s\n";
+    }
+
+}
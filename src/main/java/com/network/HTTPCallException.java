@@ -0,0 +1,19 @@
+package main.java.com.network;
+
+/**
+ * Thrown by the blocking calls of IHTTPCallActions when the request could
+ * not be completed, such as when the host cannot be reached.
+ */
+public class HTTPCallException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Description of the failure.
+     * @param cause   Underlying exception.
+     */
+    public HTTPCallException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -1,14 +1,37 @@
 package main.java.com.network;
 
 import main.java.com.network.IHTTPCallActions;
+import main.java.com.network.impl.ByteArrayRequestBody;
+import main.java.com.network.impl.CachingTransport;
+import main.java.com.network.impl.CircuitBreaker;
+import main.java.com.network.impl.CircuitBreakerTransport;
+import main.java.com.network.impl.CoalescingTransport;
+import main.java.com.network.impl.ConcurrencyLimiter;
+import main.java.com.network.impl.ConcurrencyLimitingTransport;
+import main.java.com.network.impl.DiskResponseCache;
+import main.java.com.network.impl.FileRequestBody;
 import main.java.com.network.impl.HTTPCallActions;
+import main.java.com.network.impl.HedgingTransport;
 import main.java.com.network.impl.HTTPRequest;
 import main.java.com.network.impl.HTTPResponse;
+import main.java.com.network.impl.PooledHTTPTransport;
+import main.java.com.network.impl.RateLimiter;
+import main.java.com.network.impl.RateLimitingTransport;
+import main.java.com.network.impl.ResponseCache;
+import main.java.com.network.impl.StreamRequestBody;
+import main.java.com.network.impl.URLConnectionTransport;
+import main.java.com.network.impl.VirtualThreads;
 import org.apache.log4j.Logger;
 import org.openqa.selenium.Platform;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.Map.Entry;
 
 /**
@@ -30,6 +53,210 @@ public class HTTPFactory {
         return HTTPCallActions.getInstance();
     }
 
+    /**
+     * @param transport Transport to be used for the calls.
+     * @return New instance of IHTTPCallActions backed by the transport.
+     */
+    public static IHTTPCallActions getHTTPCallActionsInstance(IHTTPTransport transport) {
+        return new HTTPCallActions(transport);
+    }
+
+    /**
+     * @param transport Transport to be used for the calls.
+     * @param executor  Executor on which the asynchronous calls are run.
+     * @return New instance of IHTTPCallActions backed by the transport.
+     */
+    public static IHTTPCallActions getHTTPCallActionsInstance(IHTTPTransport transport, ExecutorService executor) {
+        return new HTTPCallActions(transport, executor);
+    }
+
+    /**
+     * @param transport Transport to be used for the calls.
+     * @return New instance of IHTTPCallActions running every asynchronous call on a
+     * virtual thread of its own, or a platform thread on a JDK without them.
+     */
+    public static IHTTPCallActions getVirtualThreadCallActionsInstance(IHTTPTransport transport) {
+        return new HTTPCallActions(transport, VirtualThreads.newPerTaskExecutor("http-async-"));
+    }
+
+    /**
+     * @return New keep-alive transport with its own connection pool.
+     */
+    public static IHTTPTransport getPooledTransport() {
+        return new PooledHTTPTransport();
+    }
+
+    /**
+     * @return New transport based on the Java URL API.
+     */
+    public static IHTTPTransport getURLConnectionTransport() {
+        return new URLConnectionTransport();
+    }
+
+    /**
+     * @return New transport multiplexing concurrent requests over HTTP/2 connections.
+     * @throws UnsupportedOperationException If the project was not built with the modern-jdk profile.
+     */
+    public static IHTTPTransport getHTTP2Transport() {
+        return newTransport("main.java.com.network.impl.HTTP2Transport", "the modern-jdk build profile");
+    }
+
+    /**
+     * @return New transport driving its connections from a Netty event loop, native epoll on Linux.
+     * @throws UnsupportedOperationException If the project was not built with the netty profile.
+     */
+    public static IHTTPTransport getNettyTransport() {
+        return newTransport("main.java.com.network.impl.NettyTransport", "the netty build profile");
+    }
+
+    /**
+     * @return New transport sending unix:// URLs over Unix domain sockets, and other URLs
+     * through a pooled transport.
+     * @throws UnsupportedOperationException If the project was not built with the modern-jdk profile.
+     */
+    public static IHTTPTransport getUnixSocketTransport() {
+        return newTransport("main.java.com.network.impl.UnixSocketTransport", "the modern-jdk build profile");
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @return Transport sharing one request between concurrent identical GETs.
+     */
+    public static IHTTPTransport getCoalescingTransport(IHTTPTransport delegate) {
+        return new CoalescingTransport(delegate);
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @return Transport caching GET responses in memory, within the default size.
+     */
+    public static IHTTPTransport getCachingTransport(IHTTPTransport delegate) {
+        return new CachingTransport(delegate);
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @param maxBytes Maximum size of the cached bodies and headers, in bytes.
+     * @return Transport caching GET responses in memory.
+     */
+    public static IHTTPTransport getCachingTransport(IHTTPTransport delegate, long maxBytes) {
+        return new CachingTransport(delegate, new ResponseCache(maxBytes));
+    }
+
+    /**
+     * @param delegate     Transport putting the requests on the wire.
+     * @param maxBytes     Maximum size of the cached bodies and headers kept in memory, in bytes.
+     * @param directory    Directory of the disk tier, which survives restarts.
+     * @param maxDiskBytes Maximum size of the disk tier, in bytes.
+     * @return Transport caching GET responses in memory and on disk.
+     * @throws IOException If the disk tier could not be opened.
+     */
+    public static IHTTPTransport getCachingTransport(IHTTPTransport delegate, long maxBytes, Path directory,
+                                                     long maxDiskBytes) throws IOException {
+        return new CachingTransport(delegate, new ResponseCache(maxBytes,
+                new DiskResponseCache(directory, maxDiskBytes)));
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Rate limiter handing out the permits.
+     * @return Transport waiting for a permit of the rate limiter before every request.
+     */
+    public static IHTTPTransport getRateLimitingTransport(IHTTPTransport delegate, RateLimiter limiter) {
+        return new RateLimitingTransport(delegate, limiter);
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Rate limiter handing out the permits.
+     * @param blocking Whether calls wait for a permit rather than fail.
+     * @return Transport taking a permit of the rate limiter before every request.
+     */
+    public static IHTTPTransport getRateLimitingTransport(IHTTPTransport delegate, RateLimiter limiter,
+                                                          boolean blocking) {
+        return new RateLimitingTransport(delegate, limiter, blocking);
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Limiter handing out the slots.
+     * @return Transport bounding the requests in flight to each host by an adaptive limit.
+     */
+    public static IHTTPTransport getConcurrencyLimitingTransport(IHTTPTransport delegate,
+                                                                 ConcurrencyLimiter limiter) {
+        return new ConcurrencyLimitingTransport(delegate, limiter);
+    }
+
+    /**
+     * @param delegate         Transport putting the requests on the wire.
+     * @param hedgeDelayMillis Time after which an idempotent request is sent again, in milliseconds.
+     * @return Transport hedging slow idempotent requests, within the default budget.
+     */
+    public static IHTTPTransport getHedgingTransport(IHTTPTransport delegate, long hedgeDelayMillis) {
+        return new HedgingTransport(delegate, hedgeDelayMillis);
+    }
+
+    /**
+     * @param delegate Transport putting the requests on the wire.
+     * @param breaker  Breaker keeping the circuit of every host.
+     * @return Transport failing fast on hosts whose circuit is open.
+     */
+    public static IHTTPTransport getCircuitBreakerTransport(IHTTPTransport delegate, CircuitBreaker breaker) {
+        return new CircuitBreakerTransport(delegate, breaker);
+    }
+
+    /**
+     * Instantiates a transport which is only part of some builds.
+     *
+     * @param className   Fully qualified name of the transport class.
+     * @param requirement Build or runtime the transport needs, for the error message.
+     * @return New instance of the transport.
+     * @throws UnsupportedOperationException If the transport is not part of this build.
+     */
+    private static IHTTPTransport newTransport(String className, String requirement) {
+        try {
+            return (IHTTPTransport) Class.forName(className).getConstructor().newInstance();
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            throw new UnsupportedOperationException(className + " needs " + requirement + ".", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create " + className, e);
+        }
+    }
+
+    /**
+     * @param content Pre-encoded request body.
+     * @return IHTTPRequestBody implementation.
+     */
+    public static IHTTPRequestBody getRequestBody(byte[] content) {
+        return new ByteArrayRequestBody(content);
+    }
+
+    /**
+     * @param content Request body, encoded as UTF-8.
+     * @return IHTTPRequestBody implementation.
+     */
+    public static IHTTPRequestBody getRequestBody(String content) {
+        return new ByteArrayRequestBody(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param in     Stream to read the body from while it is being sent.
+     * @param length Number of bytes in the stream, -1 to send it chunked.
+     * @return IHTTPRequestBody implementation.
+     */
+    public static IHTTPRequestBody getRequestBody(InputStream in, long length) {
+        return new StreamRequestBody(in, length);
+    }
+
+    /**
+     * @param file File to stream the body from.
+     * @return IHTTPRequestBody implementation.
+     * @throws IOException If the size of the file could not be read.
+     */
+    public static IHTTPRequestBody getRequestBody(Path file) throws IOException {
+        return new FileRequestBody(file);
+    }
+
     /**
      * @param url     URL of the request.
      * @param method  HTTP method of the request.
@@ -50,6 +277,80 @@ public class HTTPFactory {
         return new HTTPResponse(request, headers, status, rawResponse);
     }
 
+    /**
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of headers as received on the wire.
+     * @param body    Input stream of the response body.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, Map<String, List<String>> headers,
+                                                InputStream body) {
+        return new HTTPResponse(request, status, headers, body);
+    }
+
+    /**
+     * @param request   HTTP request corresponding to the HTTP response.
+     * @param status    Status code of the response.
+     * @param headers   Map of headers as received on the wire.
+     * @param body      Input stream of the response body.
+     * @param streaming Whether the body is left unread for the caller to stream.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, Map<String, List<String>> headers,
+                                                InputStream body, boolean streaming) {
+        return new HTTPResponse(request, status, headers, body, streaming);
+    }
+
+    /**
+     * @param request   HTTP request corresponding to the HTTP response.
+     * @param status    Status code of the response.
+     * @param headers   Headers as received on the wire. They are not copied.
+     * @param body      Input stream of the response body.
+     * @param streaming Whether the body is left unread for the caller to stream.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, HTTPHeaders headers,
+                                                InputStream body, boolean streaming) {
+        return new HTTPResponse(request, status, headers, body, streaming);
+    }
+
+    /**
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of HTTP headers.
+     * @param body    Body bytes, after undoing any Content-Encoding.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, Map<String, String> headers,
+                                                byte[] body) {
+        return new HTTPResponse(request, status, headers, body);
+    }
+
+    /**
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of HTTP headers.
+     * @param body    Body, after undoing any Content-Encoding. It is not copied.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, Map<String, String> headers,
+                                                ByteBuffer body) {
+        return new HTTPResponse(request, status, headers, body);
+    }
+
+    /**
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Headers, repeated ones keeping one entry per value. They are not copied.
+     * @param body    Body, after undoing any Content-Encoding. It is not copied.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(IHTTPRequest request, int status, HTTPHeaders headers,
+                                                ByteBuffer body) {
+        return new HTTPResponse(request, status, headers, body);
+    }
+
     /**
      * @param connection HTTP connection object which can be
      *                   obtained while constructing a network call using the
@@ -60,6 +361,17 @@ public class HTTPFactory {
         return new HTTPResponse(connection);
     }
 
+    /**
+     * @param connection HTTP connection object which can be
+     *                   obtained while constructing a network call using the
+     *                   Java URL API.
+     * @param streaming  Whether the body is left unread for the caller to stream.
+     * @return IHTTPResponse implementation.
+     */
+    public static IHTTPResponse getHTTPResponse(HttpURLConnection connection, boolean streaming) {
+        return new HTTPResponse(connection, streaming);
+    }
+
     /**
      * @return Class reference to implementation of HTTP request.
      */
@@ -0,0 +1,280 @@
+package main.java.com.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Multi-valued HTTP headers kept in wire order.
+ * Names and values are held in two flat arrays, a repeated header such as
+ * Set-Cookie taking one slot per value, so headers are added without
+ * joining and read back without splitting. Names are matched case
+ * insensitively without allocating. Lookups scan the arrays, which is
+ * faster than hashing for the few dozen headers of a message.
+ * Not thread safe: build the headers on one thread, then only read them.
+ */
+public final class HTTPHeaders {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] names;
+
+    private String[] values;
+
+    private int size;
+
+    /**
+     * Empty headers constructor.
+     */
+    public HTTPHeaders() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Empty headers constructor.
+     *
+     * @param capacity Number of values to make room for.
+     */
+    public HTTPHeaders(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.names = new String[capacity];
+        this.values = new String[capacity];
+    }
+
+    /**
+     * @param headers Map of single valued headers, may be null.
+     * @return Headers holding the entries of the map.
+     */
+    public static HTTPHeaders of(Map<String, String> headers) {
+        if (headers == null)
+            return new HTTPHeaders();
+        HTTPHeaders result = new HTTPHeaders(headers.size());
+        Iterator<Entry<String, String>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            result.add(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * A header listed without any value is kept with an empty value.
+     *
+     * @param headers Map of headers as received on the wire, may be null.
+     * @return Headers holding every value of the map.
+     */
+    public static HTTPHeaders ofMultiValued(Map<String, List<String>> headers) {
+        if (headers == null)
+            return new HTTPHeaders();
+        HTTPHeaders result = new HTTPHeaders(headers.size() + 4);
+        Iterator<Entry<String, List<String>>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, List<String>> entry = iter.next();
+            List<String> values = entry.getValue();
+            if (values == null || values.isEmpty()) {
+                result.add(entry.getKey(), "");
+                continue;
+            }
+            int size = values.size();
+            for (int i = 0; i < size; i++)
+                result.add(entry.getKey(), values.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Appends a value, keeping any previous values of the header.
+     *
+     * @param name  Header name. HttpURLConnection reports the status line under a null name.
+     * @param value Header value.
+     */
+    public void add(String name, String value) {
+        if (this.size == this.names.length) {
+            int capacity = this.size * 2;
+            this.names = Arrays.copyOf(this.names, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.names[this.size] = name;
+        this.values[this.size] = value;
+        this.size++;
+    }
+
+    /**
+     * Replaces every value of the header by the given one.
+     *
+     * @param name  Header name.
+     * @param value Header value.
+     */
+    public void set(String name, String value) {
+        remove(name);
+        add(name, value);
+    }
+
+    /**
+     * @param name Header name, matched case insensitively.
+     * @return Whether any value was removed.
+     */
+    public boolean remove(String name) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (matches(name, this.names[i]))
+                continue;
+            this.names[kept] = this.names[i];
+            this.values[kept] = this.values[i];
+            kept++;
+        }
+        boolean removed = kept != this.size;
+        Arrays.fill(this.names, kept, this.size, null);
+        Arrays.fill(this.values, kept, this.size, null);
+        this.size = kept;
+        return removed;
+    }
+
+    /**
+     * @param name Header name, matched case insensitively.
+     * @return Whether the header is present.
+     */
+    public boolean contains(String name) {
+        return indexOf(name, 0) != -1;
+    }
+
+    /**
+     * @param name Header name, matched case insensitively.
+     * @return First value of the header, null if not present.
+     */
+    public String get(String name) {
+        int index = indexOf(name, 0);
+        return index == -1 ? null : this.values[index];
+    }
+
+    /**
+     * @param name Header name, matched case insensitively.
+     * @return Every value of the header in wire order, empty if not present.
+     */
+    public List<String> getAll(String name) {
+        int index = indexOf(name, 0);
+        if (index == -1)
+            return Collections.emptyList();
+        int next = indexOf(name, index + 1);
+        if (next == -1)
+            return Collections.singletonList(this.values[index]);
+        List<String> result = new ArrayList<String>(4);
+        result.add(this.values[index]);
+        for (; next != -1; next = indexOf(name, next + 1))
+            result.add(this.values[next]);
+        return result;
+    }
+
+    /**
+     * @param name      Header name, matched case insensitively.
+     * @param separator Text placed between the values of a repeated header.
+     * @return Values of the header joined in wire order, null if not present.
+     */
+    public String getJoined(String name, String separator) {
+        int index = indexOf(name, 0);
+        if (index == -1)
+            return null;
+        int next = indexOf(name, index + 1);
+        if (next == -1)
+            return this.values[index];
+        StringBuilder joined = new StringBuilder(this.values[index]);
+        for (; next != -1; next = indexOf(name, next + 1))
+            joined.append(separator).append(this.values[next]);
+        return joined.toString();
+    }
+
+    /**
+     * @return Independent copy of the headers, in the same order.
+     */
+    public HTTPHeaders copy() {
+        HTTPHeaders copy = new HTTPHeaders(this.size);
+        System.arraycopy(this.names, 0, copy.names, 0, this.size);
+        System.arraycopy(this.values, 0, copy.values, 0, this.size);
+        copy.size = this.size;
+        return copy;
+    }
+
+    /**
+     * @return Number of values held, a repeated header counting once per value.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index Position of the value, from 0 to size - 1.
+     * @return Header name at the position.
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        return this.names[index];
+    }
+
+    /**
+     * @param index Position of the value, from 0 to size - 1.
+     * @return Header value at the position.
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        return this.values[index];
+    }
+
+    /**
+     * Builds the single valued view used by the map based accessors.
+     * Values of a repeated header are joined under the name it first appeared with.
+     *
+     * @param separator Text placed between the values of a repeated header.
+     * @return Map of the headers in wire order.
+     */
+    public Map<String, String> toMap(String separator) {
+        Map<String, String> map = new LinkedHashMap<String, String>(this.size * 2);
+        for (int i = 0; i < this.size; i++) {
+            String name = this.names[i];
+            if (name == null) {
+                map.put(null, this.values[i]);
+                continue;
+            }
+            if (indexOf(name, 0) == i)
+                map.put(name, getJoined(name, separator));
+        }
+        return map;
+    }
+
+    /**
+     * @param name Header name, matched case insensitively.
+     * @param from Position to start searching at.
+     * @return Position of the next value of the header, -1 if none.
+     */
+    private int indexOf(String name, int from) {
+        for (int i = from; i < this.size; i++)
+            if (matches(name, this.names[i]))
+                return i;
+        return -1;
+    }
+
+    private static boolean matches(String name, String candidate) {
+        if (name == null)
+            return candidate == null;
+        //equalsIgnoreCase compares the lengths first and does not allocate.
+        return name.equalsIgnoreCase(candidate);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.size; i++)
+            sb.append(this.names[i]).append(": ").append(this.values[i]).append("\n");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,238 @@
+package main.java.com.network;
+
+import main.java.com.network.impl.ByteArrayRequestBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes a single HTTP request to be executed by a transport.
+ */
+public class HTTPRequestSpec {
+
+    /**
+     * HTTP method of the request - GET, PUT, POST etc.
+     */
+    private String method;
+
+    /**
+     * Full URL of the request, including the request parameters.
+     */
+    private String url;
+
+    /**
+     * Map of request headers.
+     */
+    private Map<String, String> headers = new LinkedHashMap<>();
+
+    /**
+     * Request body, null if the request does not have one.
+     */
+    private IHTTPRequestBody body;
+
+    /**
+     * Whether redirects should be followed by the transport.
+     */
+    private boolean followRedirects;
+
+    /**
+     * Whether the response body is left unread for the caller to stream.
+     */
+    private boolean streamResponse;
+
+    /**
+     * Connect timeout in milliseconds, -1 to use the transport default.
+     */
+    private int connectTimeout = -1;
+
+    /**
+     * Read timeout in milliseconds, -1 to use the transport default.
+     */
+    private int readTimeout = -1;
+
+    /**
+     * Deadline of the whole call, null for none.
+     */
+    private Deadline deadline;
+
+    /**
+     * HTTP request spec constructor.
+     *
+     * @param method HTTP method of the request.
+     * @param url    Full URL of the request.
+     */
+    public HTTPRequestSpec(String method, String url) {
+        this.method = method;
+        this.url = url;
+        this.followRedirects = "GET".equals(method);
+    }
+
+    /**
+     * @return HTTP method of the request.
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * @param method HTTP method.
+     * @return Whether the method is idempotent, so that a request which may
+     * already have reached the server can be sent again.
+     */
+    public static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                || "TRACE".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+
+    /**
+     * @return Full URL of the request.
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * @return Map of request headers.
+     */
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @param key   HTTP header key.
+     * @param value HTTP header value.
+     */
+    public void setHeader(String key, String value) {
+        this.headers.put(key, value);
+    }
+
+    /**
+     * @param cookieValue Cookie data in a string format. Null or
+     *                    empty values are ignored.
+     */
+    public void setCookie(String cookieValue) {
+        if (cookieValue != null && cookieValue.length() != 0)
+            this.headers.put("Cookie", cookieValue);
+    }
+
+    /**
+     * @return Request body, null if the request does not have one.
+     */
+    public IHTTPRequestBody getBody() {
+        return this.body;
+    }
+
+    /**
+     * @param body Request body.
+     */
+    public void setBody(IHTTPRequestBody body) {
+        this.body = body;
+    }
+
+    /**
+     * @param body Pre-encoded request body.
+     */
+    public void setBody(byte[] body) {
+        this.body = new ByteArrayRequestBody(body);
+    }
+
+    /**
+     * @return Whether redirects should be followed by the transport.
+     */
+    public boolean isFollowRedirects() {
+        return this.followRedirects;
+    }
+
+    /**
+     * @param followRedirects Whether redirects should be followed by the transport.
+     */
+    public void setFollowRedirects(boolean followRedirects) {
+        this.followRedirects = followRedirects;
+    }
+
+    /**
+     * @return Whether the response body is left unread for the caller to stream.
+     */
+    public boolean isStreamResponse() {
+        return this.streamResponse;
+    }
+
+    /**
+     * @param streamResponse Whether the response body is left unread for the caller to stream.
+     */
+    public void setStreamResponse(boolean streamResponse) {
+        this.streamResponse = streamResponse;
+    }
+
+    /**
+     * @return Connect timeout in milliseconds, -1 to use the transport default.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout Connect timeout in milliseconds, 0 for none, -1 to use the transport default.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return Read timeout in milliseconds, -1 to use the transport default.
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * @param readTimeout Read timeout in milliseconds, 0 for none, -1 to use the transport default.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return Deadline of the whole call, null for none.
+     */
+    public Deadline getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @param deadline Deadline covering connect, write and read, null for none.
+     *                 For streamed responses it covers the call up to the response head.
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param url Full URL of the copy.
+     * @return Copy of this request with its own headers, sharing the body.
+     */
+    public HTTPRequestSpec copy(String url) {
+        HTTPRequestSpec copy = new HTTPRequestSpec(this.method, url);
+        copy.headers.putAll(this.headers);
+        copy.body = this.body;
+        copy.followRedirects = this.followRedirects;
+        copy.streamResponse = this.streamResponse;
+        copy.connectTimeout = this.connectTimeout;
+        copy.readTimeout = this.readTimeout;
+        copy.deadline = this.deadline;
+        return copy;
+    }
+
+    /**
+     * @return Copy of this request with its own headers, sharing the body.
+     */
+    public HTTPRequestSpec copy() {
+        return copy(this.url);
+    }
+
+    @Override
+    public String toString() {
+        return this.method + " " + this.url;
+    }
+
+}
@@ -0,0 +1,26 @@
+package main.java.com.network;
+
+/**
+ * Thrown when a call does not complete within its connect timeout,
+ * read timeout or deadline.
+ */
+public class HTTPTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Description of the timeout.
+     */
+    public HTTPTimeoutException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message Description of the timeout.
+     * @param cause   Underlying exception.
+     */
+    public HTTPTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,15 @@
+package main.java.com.network;
+
+/**
+ * Callback receiving the results of a batch as the requests complete.
+ */
+public interface IBatchResultHandler {
+
+    /**
+     * Called on the thread that started the batch, one result at a time.
+     *
+     * @param result Outcome of the request that just completed.
+     */
+    void onResult(BatchResult result);
+
+}
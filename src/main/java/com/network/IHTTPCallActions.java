@@ -1,5 +1,10 @@
 package main.java.com.network;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IHTTPCallActions {
 
@@ -41,6 +46,15 @@ public interface IHTTPCallActions {
      */
     IHTTPResponse makePostCall(String url, String parameters);
 
+    /**
+     * @param url         URL on which the POST request will be made, without the parameters.
+     * @param body        Request body, streamed to the connection.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object.
+     */
+    IHTTPResponse makePostCall(String url, IHTTPRequestBody body, String cookieValue);
+
     /**
      * @param url         URL on which the PUT request will be made, without the parameters.
      * @param parameters  String parameters to be passed on in the request.
@@ -50,6 +64,15 @@ public interface IHTTPCallActions {
      */
     IHTTPResponse makePutCall(String url, String parameters, String cookieValue);
 
+    /**
+     * @param url         URL on which the PUT request will be made, without the parameters.
+     * @param body        Request body, streamed to the connection.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object.
+     */
+    IHTTPResponse makePutCall(String url, IHTTPRequestBody body, String cookieValue);
+
     /**
      * @param url        URL on which the PUT request will be made, without the parameters.
      * @param parameters String parameters to be passed on in the request.
@@ -71,4 +94,123 @@ public interface IHTTPCallActions {
      */
     IHTTPResponse makeDeleteCall(String url);
 
+    /**
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object whose body is left unread, to be consumed
+     * through getBodyStream, getBodyChannel or consumeBody.
+     */
+    IHTTPResponse makeStreamingGetCall(String url, String parameters, String cookieValue);
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     */
+    IHTTPResponse makeCall(HTTPRequestSpec spec);
+
+    /**
+     * Makes a GET call and writes the raw body bytes to a file, without decoding them.
+     * The body is written to a temporary file in the same directory, which
+     * replaces the file only once the status is 2xx and the whole body is in.
+     * Otherwise the file is left untouched.
+     *
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @param target      File to write the body to.
+     * @return Status, bytes written and throughput of the download.
+     * @throws IOException If the file could not be written.
+     */
+    DownloadResult download(String url, String parameters, String cookieValue, Path target) throws IOException;
+
+    /**
+     * Makes a GET call and writes the raw body bytes to a channel, starting
+     * at its current position. Nothing is written if the status is not 2xx.
+     *
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @param target      Channel to write the body to. It is not closed.
+     * @return Status, bytes written and throughput of the download.
+     * @throws IOException If the channel could not be written.
+     */
+    DownloadResult download(String url, String parameters, String cookieValue, FileChannel target)
+            throws IOException;
+
+    /**
+     * Asynchronous variant of makeGetCall.
+     *
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object. Cancelling the future aborts the
+     * call if it has not started yet and interrupts it otherwise.
+     */
+    CompletableFuture<IHTTPResponse> makeGetCallAsync(String url, String parameters, String cookieValue);
+
+    /**
+     * @param url URL on which the GET request will be made, without the parameters.
+     * @return Future HTTP response object.
+     */
+    CompletableFuture<IHTTPResponse> makeGetCallAsync(String url);
+
+    /**
+     * Asynchronous variant of makePostCall.
+     *
+     * @param url         URL on which the POST request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    CompletableFuture<IHTTPResponse> makePostCallAsync(String url, String parameters, String cookieValue);
+
+    /**
+     * Asynchronous variant of makePutCall.
+     *
+     * @param url         URL on which the PUT request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    CompletableFuture<IHTTPResponse> makePutCallAsync(String url, String parameters, String cookieValue);
+
+    /**
+     * Asynchronous variant of makeDeleteCall.
+     *
+     * @param url         URL on which the DELETE request will be made, without the parameters.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    CompletableFuture<IHTTPResponse> makeDeleteCallAsync(String url, String cookieValue);
+
+    /**
+     * Runs a batch of requests, at most maxConcurrency of them at a time.
+     * A failing request does not abort the others, its failure is reported
+     * in its result instead.
+     *
+     * @param specs          Descriptions of the requests to be made.
+     * @param maxConcurrency Maximum number of requests in flight.
+     * @return Results in the same order as the requests.
+     */
+    List<BatchResult> makeBatchCall(List<HTTPRequestSpec> specs, int maxConcurrency);
+
+    /**
+     * Runs a batch of requests, at most maxConcurrency of them at a time,
+     * and hands the results over as they complete.
+     * Returns once every request has completed.
+     *
+     * @param specs          Descriptions of the requests to be made.
+     * @param maxConcurrency Maximum number of requests in flight.
+     * @param handler        Callback receiving the results in completion order.
+     */
+    void makeBatchCall(List<HTTPRequestSpec> specs, int maxConcurrency, IBatchResultHandler handler);
+
 }
@@ -1,5 +1,6 @@
 package main.java.com.network;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,7 +29,12 @@ public interface IHTTPRequest {
     Map<String, String> getAllHeaders();
 
     /**
-     * @param key HTTP header key
+     * @return All the request headers.
+     */
+    HTTPHeaders getHeaders();
+
+    /**
+     * @param key HTTP header key, matched case insensitively.
      * @return HTTP header value of the specified key.
      */
     String getHeaderByKey(String key);
@@ -44,4 +50,10 @@ public interface IHTTPRequest {
      */
     String getRequestParameterByKey(String key);
 
+    /**
+     * @param key Request parameter key.
+     * @return Every value of the parameter in URL order, empty if not present.
+     */
+    List<String> getRequestParameterValues(String key);
+
 }
@@ -0,0 +1,31 @@
+package main.java.com.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface for the body of a POST or PUT request.
+ * Implementations write their content straight to the connection
+ * instead of buffering it on the heap.
+ */
+public interface IHTTPRequestBody {
+
+    /**
+     * @return Length of the body in bytes, -1 if unknown.
+     * A body of unknown length is sent with chunked transfer encoding.
+     */
+    long getContentLength();
+
+    /**
+     * @param out Stream of the connection to write the body to.
+     * @throws IOException If the body could not be read or written.
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * @return Whether the body can be written more than once,
+     * which allows a failed request to be retried.
+     */
+    boolean isReplayable();
+
+}
@@ -1,11 +1,16 @@
 package main.java.com.network;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Interface for HTTP response object.
  */
-public interface IHTTPResponse {
+public interface IHTTPResponse extends Closeable {
 
     /**
      * @return HTTP status code of the HTTP response.
@@ -18,11 +23,23 @@ public interface IHTTPResponse {
     Map<String, String> getAllResponseHeaders();
 
     /**
-     * @param key HTTP response header key.
-     * @return HTTP response header value of the specified key.
+     * @param key HTTP response header key, matched case insensitively.
+     * @return HTTP response header value of the specified key. The values of a
+     * repeated header are joined with AutomationReferences.COOKIE_SEPARATOR.
      */
     String getResponseHeaderByKey(String key);
 
+    /**
+     * @return All the HTTP response headers, repeated headers keeping one entry per value.
+     */
+    HTTPHeaders getResponseHeaders();
+
+    /**
+     * @param key HTTP response header key, matched case insensitively.
+     * @return Every value of the header in wire order, empty if not present.
+     */
+    List<String> getResponseHeaderValues(String key);
+
     /**
      * @return URL to which the request was made.
      */
@@ -39,6 +56,12 @@ public interface IHTTPResponse {
      */
     String getRequestParameterByKey(String key);
 
+    /**
+     * @param key Request parameter key.
+     * @return Every value of the parameter in URL order, empty if not present.
+     */
+    List<String> getRequestParameterValues(String key);
+
     /**
      * @return HTTP method of the call - GET, PUT, POST etc.
      */
@@ -56,14 +79,65 @@ public interface IHTTPResponse {
     Map<String, String> getAllRequestHeaders();
 
     /**
-     * @param key HTTP request header key.
+     * @param key HTTP request header key, matched case insensitively.
      * @return HTTP request header value of the specified key.
      */
     String getRequestHeaderByKey(String key);
 
     /**
      * @return Raw response text of the network call.
+     * The body is decoded on first call, using the charset of the
+     * Content-Type header and UTF-8 if none is declared.
      */
     String getRawResponse();
 
+    /**
+     * @return Body bytes of the network call, without any charset decoding.
+     */
+    byte[] getBodyBytes();
+
+    /**
+     * In streaming mode the body is handed out as is and can be read only once.
+     * Otherwise a view over the raw response is returned.
+     *
+     * @return Input stream of the response body.
+     */
+    InputStream getBodyStream();
+
+    /**
+     * @return Channel over the response body, with the same semantics as getBodyStream.
+     */
+    ReadableByteChannel getBodyChannel();
+
+    /**
+     * Pushes the response body to the handler chunk by chunk and closes it.
+     *
+     * @param handler Callback receiving the body.
+     * @return Number of bytes read.
+     * @throws IOException If the body could not be read or the handler aborted.
+     */
+    long consumeBody(IResponseBodyHandler handler) throws IOException;
+
+    /**
+     * @return Whether the body is streamed rather than read upfront.
+     */
+    boolean isStreaming();
+
+    /**
+     * @return Number of body bytes received on the wire so far, before
+     * undoing any Content-Encoding.
+     */
+    long getBodyBytesOnWire();
+
+    /**
+     * @return Number of body bytes read so far after undoing any Content-Encoding.
+     */
+    long getBodyBytesDecoded();
+
+    /**
+     * Releases the body if it has not been fully read.
+     */
+    @Override
+    void close();
+
 }
@@ -0,0 +1,24 @@
+package main.java.com.network;
+
+import java.io.IOException;
+
+/**
+ * Interface for the transport layer underneath IHTTPCallActions.
+ * A transport is responsible for putting a request on the wire
+ * and building the corresponding HTTP response.
+ */
+public interface IHTTPTransport {
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    IHTTPResponse execute(HTTPRequestSpec spec) throws IOException;
+
+    /**
+     * Releases all the resources held by the transport.
+     */
+    void shutdown();
+
+}
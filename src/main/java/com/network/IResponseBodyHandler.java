@@ -0,0 +1,18 @@
+package main.java.com.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Callback receiving a response body incrementally, chunk by chunk.
+ */
+public interface IResponseBodyHandler {
+
+    /**
+     * @param chunk Next chunk of the body. The buffer is reused between calls,
+     *              so its content has to be copied if it is needed later.
+     * @throws IOException To abort reading the body.
+     */
+    void onChunk(ByteBuffer chunk) throws IOException;
+
+}
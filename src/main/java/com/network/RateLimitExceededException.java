@@ -0,0 +1,33 @@
+package main.java.com.network;
+
+/**
+ * Thrown when a call is refused by the client side rate limiter instead of
+ * waiting for a permit, either because the limiter does not block or because
+ * the permit would only be available after the deadline of the call.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Time until a permit is available, in milliseconds.
+     */
+    private final long retryAfterMillis;
+
+    /**
+     * @param message          Description of the limit.
+     * @param retryAfterMillis Time until a permit is available, in milliseconds.
+     */
+    public RateLimitExceededException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return Time until a permit is available, in milliseconds.
+     */
+    public long getRetryAfterMillis() {
+        return this.retryAfterMillis;
+    }
+
+}
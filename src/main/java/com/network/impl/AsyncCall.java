@@ -0,0 +1,63 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Future of an asynchronous call running under a deadline of its own.
+ * Cancelling it cancels the deadline, which makes the transport abort the
+ * socket of the call, and the task on the executor, interrupting it if running.
+ * The deadline is also cancelled along with the parent one, until the call
+ * fails, or for a successful call for as long as its response is being read.
+ *
+ * @param <T> Result of the call.
+ */
+public final class AsyncCall<T> extends CompletableFuture<T> {
+
+    private final Deadline deadline;
+
+    private volatile Future<?> task;
+
+    /**
+     * @param parent Deadline of the call, null for none.
+     */
+    public AsyncCall(Deadline parent) {
+        this.deadline = Deadline.derive(parent);
+    }
+
+    /**
+     * @return Deadline the call has to run under, cancelled along with the future.
+     */
+    public Deadline getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @param task Task running the call on the executor.
+     */
+    public void setTask(Future<?> task) {
+        this.task = task;
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        this.deadline.detach();
+        return super.completeExceptionally(ex);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (!cancelled)
+            return false;
+        this.deadline.cancel();
+        this.deadline.detach();
+        Future<?> running = this.task;
+        if (running != null)
+            running.cancel(true);
+        return true;
+    }
+
+}
@@ -0,0 +1,37 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.IHTTPRequestBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body backed by pre-encoded bytes.
+ */
+public class ByteArrayRequestBody implements IHTTPRequestBody {
+
+    private final byte[] content;
+
+    /**
+     * @param content Encoded body. The array is used as is, not copied.
+     */
+    public ByteArrayRequestBody(byte[] content) {
+        this.content = content;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.content.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.content);
+    }
+
+    @Override
+    public boolean isReplayable() {
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package main.java.com.network.impl;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining bytes of a buffer.
+ * The buffer position advances as the stream is read.
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer Buffer to be read, not shared with other readers.
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0)
+            return 0;
+        if (!this.buffer.hasRemaining())
+            return -1;
+        int read = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+}
@@ -0,0 +1,359 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPHeaders;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.references.NetworkReferences;
+
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response held by the ResponseCache, along with the freshness information
+ * derived from its Cache-Control, Expires, Date, Age and Last-Modified headers.
+ * Times are wall clock milliseconds, as the HTTP dates they are compared with.
+ * Repeated headers, such as Set-Cookie or Link, keep one entry per value.
+ */
+final class CachedResponse {
+
+    private final int status;
+
+    private final HTTPHeaders headers;
+
+    /**
+     * Decoded body, on the heap or mapped from a disk cache segment.
+     */
+    private final ByteBuffer body;
+
+    /**
+     * Age of the response when it was received, in milliseconds.
+     */
+    private final long initialAge;
+
+    /**
+     * Time the request was sent.
+     */
+    private final long requestTime;
+
+    /**
+     * Time the response was received.
+     */
+    private final long responseTime;
+
+    /**
+     * Time during which the response is fresh, in milliseconds.
+     */
+    private final long freshnessLifetime;
+
+    /**
+     * Time after the response turns stale during which it may still be
+     * served while it is revalidated in the background, in milliseconds.
+     */
+    private final long staleWhileRevalidate;
+
+    /**
+     * Whether the response has to be revalidated before every use.
+     */
+    private final boolean noCache;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    /**
+     * Set while a background revalidation is running.
+     */
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    private CachedResponse(int status, HTTPHeaders headers, ByteBuffer body, long requestTime,
+                           long responseTime) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+
+        long date = parseDate(headers.get("Date"), responseTime);
+        long apparentAge = Math.max(0, responseTime - date);
+        long ageValue = parseSeconds(headers.get("Age"), 0) * 1000;
+        this.initialAge = Math.max(apparentAge, ageValue + responseTime - requestTime);
+
+        String cacheControl = headers.getJoined("Cache-Control", ",");
+        boolean mustRevalidate = directive(cacheControl, "must-revalidate") != null;
+        this.noCache = directive(cacheControl, "no-cache") != null;
+        this.staleWhileRevalidate = mustRevalidate ? 0
+                : parseSeconds(directive(cacheControl, "stale-while-revalidate"), 0) * 1000;
+
+        String maxAge = directive(cacheControl, "max-age");
+        String expires = headers.get("Expires");
+        this.lastModified = headers.get("Last-Modified");
+        if (maxAge != null)
+            this.freshnessLifetime = parseSeconds(maxAge, 0) * 1000;
+        else if (expires != null)
+            this.freshnessLifetime = Math.max(0, parseDate(expires, date) - date);
+        else if (this.lastModified != null)
+            this.freshnessLifetime = Math.min(NetworkReferences.MAX_HEURISTIC_FRESHNESS,
+                    Math.max(0, date - parseDate(this.lastModified, date)) / 10);
+        else
+            this.freshnessLifetime = 0;
+
+        this.etag = headers.get("ETag");
+    }
+
+    /**
+     * @param response    Response received from the network, with its body read.
+     * @param requestTime Time the request was sent.
+     * @return Cache entry, null if the response may not be cached.
+     */
+    static CachedResponse of(IHTTPResponse response, long requestTime) {
+        if (response.isStreaming() || !isCacheableStatus(response.getStatusCode()))
+            return null;
+        String cacheControl = joined(response, "Cache-Control");
+        if (directive(cacheControl, "no-store") != null)
+            return null;
+
+        HTTPHeaders headers = response.getResponseHeaders().copy();
+        //The body is kept decoded, so the headers describing its wire form no longer apply.
+        byte[] body = response.getBodyBytes();
+        headers.remove("Content-Encoding");
+        headers.remove("Transfer-Encoding");
+        headers.set("Content-Length", String.valueOf(body.length));
+
+        CachedResponse entry = new CachedResponse(response.getStatusCode(), headers,
+                ByteBuffer.wrap(body), requestTime, System.currentTimeMillis());
+        if (entry.freshnessLifetime == 0 && !entry.hasValidators())
+            return null;
+        return entry;
+    }
+
+    /**
+     * @param status       Status code of the response.
+     * @param headers      Headers, repeated ones keeping one entry per value.
+     * @param body         Decoded body.
+     * @param requestTime  Time the request was sent.
+     * @param responseTime Time the response was received.
+     * @return Cache entry read back from storage.
+     */
+    static CachedResponse restore(int status, HTTPHeaders headers, ByteBuffer body, long requestTime,
+                                  long responseTime) {
+        return new CachedResponse(status, headers, body, requestTime, responseTime);
+    }
+
+    /**
+     * @param notModified 304 response to a conditional request for this entry.
+     * @param requestTime Time the conditional request was sent.
+     * @return Entry with the same body and the headers updated by the 304 response.
+     */
+    CachedResponse revalidated(IHTTPResponse notModified, long requestTime) {
+        HTTPHeaders headers = this.headers.copy();
+        HTTPHeaders received = notModified.getResponseHeaders();
+        Set<String> replaced = new HashSet<String>();
+        for (int i = 0; i < received.size(); i++) {
+            String name = received.getName(i);
+            if (name == null || "Content-Length".equalsIgnoreCase(name) || "Content-Encoding".equalsIgnoreCase(name)
+                    || "Transfer-Encoding".equalsIgnoreCase(name))
+                continue;
+            //Every value of a header sent with the 304 replaces all the stored ones.
+            if (replaced.add(name.toLowerCase(Locale.ROOT)))
+                headers.remove(name);
+            headers.add(name, received.getValue(i));
+        }
+        return new CachedResponse(this.status, headers, this.body, requestTime, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now Current time.
+     * @return Whether the entry can be served without contacting the server.
+     */
+    boolean isFresh(long now) {
+        return !this.noCache && currentAge(now) < this.freshnessLifetime;
+    }
+
+    /**
+     * @param now Current time.
+     * @return Whether the entry is stale but may still be served while it is revalidated.
+     */
+    boolean isWithinStaleWhileRevalidate(long now) {
+        return !this.noCache && currentAge(now) < this.freshnessLifetime + this.staleWhileRevalidate;
+    }
+
+    /**
+     * @return Whether the entry can be revalidated with a conditional request.
+     */
+    boolean hasValidators() {
+        return this.etag != null || this.lastModified != null;
+    }
+
+    /**
+     * @param spec Request to be made conditional.
+     * @return Copy of the request asking the server to only send the body if it changed.
+     */
+    HTTPRequestSpec conditional(HTTPRequestSpec spec) {
+        HTTPRequestSpec conditional = spec.copy();
+        if (this.etag != null)
+            conditional.setHeader("If-None-Match", this.etag);
+        if (this.lastModified != null)
+            conditional.setHeader("If-Modified-Since", this.lastModified);
+        return conditional;
+    }
+
+    /**
+     * @return Whether the caller is the one that has to run the background revalidation.
+     */
+    boolean startRevalidation() {
+        return this.revalidating.compareAndSet(false, true);
+    }
+
+    void endRevalidation() {
+        this.revalidating.set(false);
+    }
+
+    /**
+     * @param spec Request being served from the cache.
+     * @return New response object over the cached body.
+     */
+    IHTTPResponse toResponse(HTTPRequestSpec spec) {
+        return HTTPFactory.getHTTPResponse(
+                HTTPFactory.getHTTPRequest(spec.getUrl(), spec.getMethod(), spec.getHeaders(), null),
+                this.status, this.headers.copy(), this.body.duplicate());
+    }
+
+    int getStatus() {
+        return this.status;
+    }
+
+    HTTPHeaders getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @return Read-only view of the decoded body.
+     */
+    ByteBuffer getBody() {
+        return this.body.asReadOnlyBuffer();
+    }
+
+    long getRequestTime() {
+        return this.requestTime;
+    }
+
+    long getResponseTime() {
+        return this.responseTime;
+    }
+
+    /**
+     * @return Approximate heap footprint of the entry, in bytes.
+     * Bodies mapped from disk do not count.
+     */
+    long size() {
+        long size = this.body.isDirect() ? 0 : this.body.remaining();
+        for (int i = 0; i < this.headers.size(); i++) {
+            String name = this.headers.getName(i);
+            size += (name == null ? 0 : name.length()) + this.headers.getValue(i).length();
+        }
+        return size;
+    }
+
+    private long currentAge(long now) {
+        return this.initialAge + Math.max(0, now - this.responseTime);
+    }
+
+    /**
+     * @param status HTTP status code.
+     * @return Whether responses with the status code are cacheable by default.
+     */
+    private static boolean isCacheableStatus(int status) {
+        return status == 200 || status == 203 || status == 300 || status == 301 || status == 404 || status == 410;
+    }
+
+    /**
+     * @param cacheControl Value of the Cache-Control header, repeated lines joined with commas, may be null.
+     * @param name         Name of the directive.
+     * @return Argument of the directive, empty if it has none, null if it is absent.
+     */
+    static String directive(String cacheControl, String name) {
+        if (cacheControl == null)
+            return null;
+        String[] directives = cacheControl.split(",");
+        for (int i = 0; i < directives.length; i++) {
+            String directive = directives[i].trim();
+            int equals = directive.indexOf('=');
+            String key = equals == -1 ? directive : directive.substring(0, equals).trim();
+            if (key.equalsIgnoreCase(name))
+                return equals == -1 ? "" : directive.substring(equals + 1).trim().replace("\"", "");
+        }
+        return null;
+    }
+
+    /**
+     * @param headers Map of HTTP headers.
+     * @param name    Header name, matched case insensitively.
+     * @return Header value, null if absent.
+     */
+    static String header(Map<String, String> headers, String name) {
+        Iterator<Entry<String, String>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            if (name.equalsIgnoreCase(entry.getKey()))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * @param response Response received from the network.
+     * @param name     Name of a header whose values form a comma separated list.
+     * @return Values of the header joined with commas, as RFC 9110 allows, null if absent.
+     */
+    private static String joined(IHTTPResponse response, String name) {
+        List<String> values = response.getResponseHeaderValues(name);
+        if (values.isEmpty())
+            return null;
+        StringBuilder joined = new StringBuilder(values.get(0));
+        for (int i = 1; i < values.size(); i++)
+            joined.append(',').append(values.get(i));
+        return joined.toString();
+    }
+
+    /**
+     * @param value        Number of seconds, may be null.
+     * @param defaultValue Value returned if it is absent or malformed.
+     * @return Parsed value, never negative.
+     */
+    private static long parseSeconds(String value, long defaultValue) {
+        if (value == null)
+            return defaultValue;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param value        HTTP date, may be null.
+     * @param defaultValue Value returned if it is absent or malformed.
+     * @return Date in milliseconds since the epoch.
+     */
+    private static long parseDate(String value, long defaultValue) {
+        if (value == null)
+            return defaultValue;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return defaultValue;
+        }
+    }
+
+}
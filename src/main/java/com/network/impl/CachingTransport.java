@@ -0,0 +1,210 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.utilities.Logger;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport decorator caching GET responses in memory, following the HTTP
+ * caching rules of a private cache.
+ * Fresh responses are served without contacting the server. Stale responses
+ * with an ETag or Last-Modified are revalidated with a conditional request
+ * and served from the cache on 304 Not Modified. Responses allowing
+ * stale-while-revalidate are served stale while a background request
+ * refreshes them.
+ * Requests are cached per URL and headers, so responses for different
+ * session cookies never mix.
+ */
+public class CachingTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    /**
+     * Store of the cached responses.
+     */
+    private final ResponseCache cache;
+
+    /**
+     * Caching transport constructor with a cache of the default size.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     */
+    public CachingTransport(IHTTPTransport delegate) {
+        this(delegate, new ResponseCache());
+    }
+
+    /**
+     * Caching transport constructor.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     * @param cache    Store of the cached responses.
+     */
+    public CachingTransport(IHTTPTransport delegate, ResponseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object, possibly served from the cache.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        if (!isCacheable(spec))
+            return this.delegate.execute(spec);
+
+        String key = RequestKey.of(spec);
+        CachedResponse entry = this.cache.get(key);
+        if (entry != null && !isNoCacheRequest(spec)) {
+            long now = System.currentTimeMillis();
+            if (entry.isFresh(now)) {
+                this.cache.recordHit();
+                return entry.toResponse(spec);
+            }
+            if (entry.isWithinStaleWhileRevalidate(now)) {
+                this.cache.recordHit();
+                revalidateInBackground(key, spec, entry);
+                return entry.toResponse(spec);
+            }
+        }
+        return fetch(key, spec, entry);
+    }
+
+    /**
+     * Shuts the underlying transport down and closes the disk tier of the cache, if any.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+        try {
+            this.cache.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the response cache.", e);
+        }
+    }
+
+    /**
+     * @return Store of the cached responses, with its hit, miss and eviction counters.
+     */
+    public ResponseCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Gets the response from the server, conditionally if a cached entry can be revalidated.
+     *
+     * @param key   Request key.
+     * @param spec  Description of the request to be made.
+     * @param entry Cached entry, null if absent.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    private IHTTPResponse fetch(String key, HTTPRequestSpec spec, CachedResponse entry) throws IOException {
+        boolean conditional = entry != null && entry.hasValidators();
+        long requestTime = System.currentTimeMillis();
+        IHTTPResponse response = this.delegate.execute(conditional ? entry.conditional(spec) : spec);
+
+        if (conditional && response.getStatusCode() == 304) {
+            CachedResponse updated = entry.revalidated(response, requestTime);
+            this.cache.put(key, updated);
+            this.cache.recordRevalidation();
+            return updated.toResponse(spec);
+        }
+
+        this.cache.recordMiss();
+        CachedResponse fetched = CachedResponse.of(response, requestTime);
+        if (fetched != null)
+            this.cache.put(key, fetched);
+        else
+            this.cache.remove(key);
+        return response;
+    }
+
+    /**
+     * Refreshes a stale entry without making the caller wait.
+     * Only one background revalidation runs per entry at a time.
+     *
+     * @param key   Request key.
+     * @param spec  Description of the request being served.
+     * @param entry Stale cached entry.
+     */
+    private void revalidateInBackground(final String key, HTTPRequestSpec spec, final CachedResponse entry) {
+        if (!entry.startRevalidation())
+            return;
+        final HTTPRequestSpec background = spec.copy();
+        background.setDeadline(null);
+        try {
+            ExecutorHolder.EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetch(key, background, entry);
+                    } catch (Throwable e) {
+                        LOGGER.debug("Background revalidation failed: " + background, e);
+                    } finally {
+                        entry.endRevalidation();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.endRevalidation();
+        }
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return Whether the response of the request may come from or go to the cache.
+     */
+    private static boolean isCacheable(HTTPRequestSpec spec) {
+        if (!"GET".equals(spec.getMethod()) || spec.getBody() != null || spec.isStreamResponse())
+            return false;
+        Map<String, String> headers = spec.getHeaders();
+        //Conditional requests made by the caller are the caller's business.
+        if (CachedResponse.header(headers, "If-None-Match") != null
+                || CachedResponse.header(headers, "If-Modified-Since") != null)
+            return false;
+        return CachedResponse.directive(CachedResponse.header(headers, "Cache-Control"), "no-store") == null;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return Whether the caller asked for the cached entry to be revalidated.
+     */
+    private static boolean isNoCacheRequest(HTTPRequestSpec spec) {
+        Map<String, String> headers = spec.getHeaders();
+        return CachedResponse.directive(CachedResponse.header(headers, "Cache-Control"), "no-cache") != null
+                || CachedResponse.directive(CachedResponse.header(headers, "Pragma"), "no-cache") != null;
+    }
+
+    /**
+     * Holder class for the executor of background revalidations.
+     */
+    private final static class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "http-cache-revalidation-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,305 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.CircuitBreakerOpenException;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a circuit per host, tripped open when too many of the recent calls
+ * to the host failed.
+ * While closed, the outcome of every call goes into a sliding window; once
+ * the window holds enough calls and their failure rate reaches the
+ * threshold, the circuit opens. While open, calls are rejected without
+ * contacting the host. After the open time, the circuit goes half open and
+ * lets a few probe calls through: if they all succeed it closes again,
+ * if any fails it opens for another open time.
+ */
+public class CircuitBreaker {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * State of the circuit of a host.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Number of most recent calls the failure rate is computed over.
+     */
+    private final int windowSize;
+
+    /**
+     * Number of calls the window must hold before the circuit can open.
+     */
+    private final int minCalls;
+
+    /**
+     * Failure rate, between 0 and 1, at which the circuit opens.
+     */
+    private final double failureRate;
+
+    /**
+     * Time the circuit stays open before letting probes through, in milliseconds.
+     */
+    private final long openMillis;
+
+    /**
+     * Number of probe calls needed to close a half open circuit, and allowed in flight.
+     */
+    private final int probes;
+
+    /**
+     * Circuits by host.
+     */
+    private final ConcurrentHashMap<String, Circuit> hosts = new ConcurrentHashMap<String, Circuit>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Circuit breaker constructor with the default settings.
+     */
+    public CircuitBreaker() {
+        this(NetworkReferences.DEFAULT_CIRCUIT_BREAKER_WINDOW, NetworkReferences.DEFAULT_CIRCUIT_BREAKER_MIN_CALLS,
+                NetworkReferences.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE,
+                NetworkReferences.DEFAULT_CIRCUIT_BREAKER_OPEN_TIME, NetworkReferences.DEFAULT_CIRCUIT_BREAKER_PROBES);
+    }
+
+    /**
+     * Circuit breaker constructor.
+     *
+     * @param windowSize  Number of most recent calls the failure rate is computed over.
+     * @param minCalls    Number of calls the window must hold before the circuit can open.
+     * @param failureRate Failure rate, between 0 and 1, at which the circuit opens.
+     * @param openMillis  Time the circuit stays open before letting probes through, in milliseconds.
+     * @param probes      Number of probe calls needed to close a half open circuit.
+     */
+    public CircuitBreaker(int windowSize, int minCalls, double failureRate, long openMillis, int probes) {
+        if (windowSize < 1 || minCalls < 1 || minCalls > windowSize)
+            throw new IllegalArgumentException("Expected 1 <= min calls <= window: " + minCalls + ", " + windowSize);
+        if (failureRate <= 0 || failureRate > 1)
+            throw new IllegalArgumentException("Failure rate not in (0, 1]: " + failureRate);
+        if (openMillis < 0 || probes < 1)
+            throw new IllegalArgumentException("Invalid open time or probe count: " + openMillis + ", " + probes);
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRate = failureRate;
+        this.openMillis = openMillis;
+        this.probes = probes;
+    }
+
+    /**
+     * Lets a call to the host through, unless its circuit is open.
+     * Every call let through must be followed by onResult or release.
+     *
+     * @param host Host about to be requested.
+     * @return Whether the call is a probe of a half open circuit.
+     * @throws CircuitBreakerOpenException If the circuit is open or all the probes are in flight.
+     */
+    public boolean acquire(String host) {
+        Circuit circuit = circuit(host);
+        long retryAfter = circuit.acquire();
+        if (retryAfter < 0)
+            return retryAfter == Circuit.PROBE;
+        this.rejected.incrementAndGet();
+        throw new CircuitBreakerOpenException(host, retryAfter);
+    }
+
+    /**
+     * Records the outcome of a call let through by acquire.
+     *
+     * @param host    Host that was requested.
+     * @param probe   Value returned by acquire.
+     * @param success Whether the call succeeded.
+     */
+    public void onResult(String host, boolean probe, boolean success) {
+        circuit(host).onResult(probe, success);
+    }
+
+    /**
+     * Ends a call let through by acquire whose outcome says nothing about the
+     * host, such as one cancelled by the caller or refused on the client side.
+     *
+     * @param host  Host that was requested.
+     * @param probe Value returned by acquire.
+     */
+    public void release(String host, boolean probe) {
+        circuit(host).release(probe);
+    }
+
+    /**
+     * @param host Host name.
+     * @return Current state of the circuit of the host.
+     */
+    public State getState(String host) {
+        return circuit(host).getState();
+    }
+
+    /**
+     * @return Current state of the circuit of every host seen, by host name.
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<String, State>();
+        Iterator<Entry<String, Circuit>> iter = this.hosts.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, Circuit> entry = iter.next();
+            states.put(entry.getKey(), entry.getValue().getState());
+        }
+        return states;
+    }
+
+    /**
+     * @return Number of calls rejected by an open circuit.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    private Circuit circuit(String host) {
+        host = host.toLowerCase();
+        Circuit circuit = this.hosts.get(host);
+        if (circuit != null)
+            return circuit;
+        Circuit created = new Circuit(host);
+        circuit = this.hosts.putIfAbsent(host, created);
+        return circuit == null ? created : circuit;
+    }
+
+    @Override
+    public String toString() {
+        return "States: " + getStates()
+                + "\nRejected: " + getRejectedCount() + "\n";
+    }
+
+    /**
+     * Circuit and recent outcomes of one host.
+     */
+    private final class Circuit {
+
+        /**
+         * Returned by acquire for a call let through while closed.
+         */
+        static final long PASS = -1;
+
+        /**
+         * Returned by acquire for a probe call of a half open circuit.
+         */
+        static final long PROBE = -2;
+
+        private final String host;
+
+        private State state = State.CLOSED;
+
+        /**
+         * Ring of the most recent outcomes, true for a failure.
+         */
+        private final boolean[] window = new boolean[CircuitBreaker.this.windowSize];
+
+        private int calls;
+
+        private int next;
+
+        private int failures;
+
+        /**
+         * Time at which an open circuit goes half open, in nanoseconds.
+         */
+        private long openUntil;
+
+        private int probesInFlight;
+
+        private int probesSucceeded;
+
+        Circuit(String host) {
+            this.host = host;
+        }
+
+        /**
+         * @return PASS or PROBE if the call may go through, otherwise the time until probes are let through.
+         */
+        synchronized long acquire() {
+            if (this.state == State.OPEN) {
+                long remaining = this.openUntil - System.nanoTime();
+                if (remaining > 0)
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+                transition(State.HALF_OPEN);
+            }
+            if (this.state == State.CLOSED)
+                return PASS;
+            if (this.probesInFlight + this.probesSucceeded >= CircuitBreaker.this.probes)
+                return 1;
+            this.probesInFlight++;
+            return PROBE;
+        }
+
+        synchronized void onResult(boolean probe, boolean success) {
+            if (probe) {
+                this.probesInFlight--;
+                if (this.state != State.HALF_OPEN)
+                    return;
+                if (!success)
+                    open();
+                else if (++this.probesSucceeded >= CircuitBreaker.this.probes)
+                    transition(State.CLOSED);
+                return;
+            }
+            //Calls let through before the circuit opened do not count against it.
+            if (this.state != State.CLOSED)
+                return;
+
+            if (this.calls == this.window.length) {
+                if (this.window[this.next])
+                    this.failures--;
+            } else {
+                this.calls++;
+            }
+            this.window[this.next] = !success;
+            if (!success)
+                this.failures++;
+            this.next = (this.next + 1) % this.window.length;
+
+            if (this.calls >= CircuitBreaker.this.minCalls
+                    && this.failures >= CircuitBreaker.this.failureRate * this.calls)
+                open();
+        }
+
+        synchronized void release(boolean probe) {
+            if (probe)
+                this.probesInFlight--;
+        }
+
+        private void open() {
+            this.openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CircuitBreaker.this.openMillis);
+            transition(State.OPEN);
+        }
+
+        private void transition(State state) {
+            LOGGER.warn("Circuit breaker of " + this.host + " is now " + state);
+            this.state = state;
+            //Probes still in flight keep counting until they complete.
+            this.probesSucceeded = 0;
+            if (state == State.CLOSED) {
+                this.calls = 0;
+                this.next = 0;
+                this.failures = 0;
+            }
+        }
+
+        synchronized State getState() {
+            if (this.state == State.OPEN && this.openUntil - System.nanoTime() <= 0)
+                return State.HALF_OPEN;
+            return this.state;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Transport decorator failing fast on hosts whose circuit breaker is open,
+ * and reporting the outcome of every request back to the breaker.
+ * A request fails if it times out or fails on the wire, or if the server
+ * answers 502, 503 or 504. A request cancelled by the caller, through its
+ * deadline or an interrupt, or refused on the client side, as by a rate or
+ * concurrency limiter, does not count either way.
+ */
+public class CircuitBreakerTransport implements IHTTPTransport {
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    private final CircuitBreaker breaker;
+
+    /**
+     * Circuit breaker transport constructor.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     * @param breaker  Breaker keeping the circuit of every host.
+     */
+    public CircuitBreakerTransport(IHTTPTransport delegate, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     * @throws main.java.com.network.CircuitBreakerOpenException If the circuit of the host is open.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        String host = circuitKey(spec.getUrl());
+        boolean probe = this.breaker.acquire(host);
+
+        boolean counted = false;
+        boolean success = false;
+        try {
+            IHTTPResponse response = this.delegate.execute(spec);
+            int status = response.getStatusCode();
+            success = status != 502 && status != 503 && status != 504;
+            counted = true;
+            return response;
+        } catch (IOException | HTTPTimeoutException | UncheckedIOException e) {
+            counted = !isCancelled(spec, e);
+            throw e;
+        } finally {
+            if (counted)
+                this.breaker.onResult(host, probe, success);
+            else
+                this.breaker.release(host, probe);
+        }
+    }
+
+    /**
+     * @param spec Description of the request that failed.
+     * @param e    Failure of the request.
+     * @return Whether the request failed because the caller gave up on it rather than because of the host.
+     */
+    private static boolean isCancelled(HTTPRequestSpec spec, Exception e) {
+        if (spec.getDeadline() != null && spec.getDeadline().isCancelled())
+            return true;
+        //A socket timeout is an InterruptedIOException too, but one the host caused.
+        return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)
+                || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @param url URL of the request.
+     * @return Host and explicit port of the URL, so replicas sharing a machine get a circuit each.
+     * Unix socket URLs have the socket path as authority.
+     * @throws MalformedURLException If the URL has no authority.
+     */
+    private static String circuitKey(String url) throws MalformedURLException {
+        try {
+            String authority = new URI(url).getRawAuthority();
+            if (authority != null)
+                return authority.substring(authority.indexOf('@') + 1).toLowerCase();
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException("Invalid URL: " + url + ": " + e.getMessage());
+        }
+        throw new MalformedURLException("No host in URL: " + url);
+    }
+
+    /**
+     * Shuts the underlying transport down.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    /**
+     * @return Breaker keeping the circuit of every host.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.breaker;
+    }
+
+}
@@ -0,0 +1,177 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.utilities.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport decorator sharing one request between concurrent identical GETs.
+ * The first caller puts the request on the wire, callers arriving while it
+ * is in flight wait for it and receive the same response, or the same failure.
+ * Requests are identical when they have the same URL, parameters included,
+ * and the same headers, cookies included.
+ * Streamed responses cannot be shared and are never coalesced.
+ * The request runs under the deadline of the first caller, so when it fails
+ * because that deadline expired or was cancelled, the callers waiting for it
+ * send the request again under their own.
+ */
+public class CoalescingTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    /**
+     * Requests in flight, by key.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<IHTTPResponse>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<IHTTPResponse>>();
+
+    /**
+     * Number of requests put on the wire by this transport.
+     */
+    private final AtomicLong executed = new AtomicLong();
+
+    /**
+     * Number of calls served by a request already in flight.
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Coalescing transport constructor.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     */
+    public CoalescingTransport(IHTTPTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object, possibly shared with concurrent callers.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        if (!isCoalescable(spec))
+            return this.delegate.execute(spec);
+
+        String key = RequestKey.of(spec);
+        CompletableFuture<IHTTPResponse> call = new CompletableFuture<IHTTPResponse>();
+        CompletableFuture<IHTTPResponse> existing;
+        while ((existing = this.inFlight.putIfAbsent(key, call)) != null) {
+            this.coalesced.incrementAndGet();
+            LOGGER.debug("Joining request in flight: " + key);
+            IHTTPResponse response = await(existing, spec);
+            if (response != null)
+                return response;
+            this.coalesced.decrementAndGet();
+            LOGGER.debug("Request in flight gave up on the deadline of its caller, sending it again: " + key);
+        }
+
+        this.executed.incrementAndGet();
+        try {
+            IHTTPResponse response = this.delegate.execute(spec);
+            call.complete(response);
+            return response;
+        } catch (IOException | RuntimeException | Error e) {
+            if (isOwnFailure(spec, e))
+                call.complete(null);
+            else
+                call.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Shuts the underlying transport down.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    /**
+     * @return Number of requests put on the wire by this transport.
+     */
+    public long getRequestsExecuted() {
+        return this.executed.get();
+    }
+
+    /**
+     * @return Number of calls served by a request already in flight.
+     */
+    public long getRequestsCoalesced() {
+        return this.coalesced.get();
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return Whether the response of the request can be shared.
+     */
+    private static boolean isCoalescable(HTTPRequestSpec spec) {
+        return "GET".equals(spec.getMethod()) && spec.getBody() == null && !spec.isStreamResponse();
+    }
+
+    /**
+     * @param spec    Description of the request which failed.
+     * @param failure Failure of the request.
+     * @return Whether the request failed because of the deadline of its caller,
+     * rather than because of the server or the network.
+     */
+    private static boolean isOwnFailure(HTTPRequestSpec spec, Throwable failure) {
+        Deadline deadline = spec.getDeadline();
+        return !(failure instanceof Error) && deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * Waits for a request in flight, within the deadline of the joining call.
+     *
+     * @param call Request in flight.
+     * @param spec Description of the joining request.
+     * @return HTTP response of the request in flight, null if it failed because
+     * of the deadline of its caller and has to be sent again.
+     * @throws IOException If the request in flight failed.
+     */
+    private static IHTTPResponse await(CompletableFuture<IHTTPResponse> call, HTTPRequestSpec spec)
+            throws IOException {
+        Deadline deadline = spec.getDeadline();
+        try {
+            if (deadline == null)
+                return call.get();
+            return call.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new HTTPTimeoutException("Deadline expired waiting for the request in flight " + spec, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the request in flight " + spec);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.ConcurrencyLimitExceededException;
+import main.java.com.network.Deadline;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests in flight to each host, adapting the limit to the
+ * latency and errors observed, AIMD style.
+ * While requests complete within twice the lowest latency seen, the limit
+ * grows by one per limit's worth of requests, as long as it is actually
+ * being used. A slower request, a timeout, a failure or a 429, 503 or 504
+ * shrinks it by a tenth. The lowest latency is forgotten now and then so the
+ * limiter follows a backend whose baseline shifts.
+ * Requests over the limit wait briefly for a slot, then are rejected.
+ * They wait on a lock rather than a monitor, so a waiting virtual thread
+ * does not hold on to its carrier thread.
+ */
+public class ConcurrencyLimiter {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Latency, relative to the lowest one seen, above which the backend is considered overloaded.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * Factor applied to the limit when the backend is overloaded.
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * Number of samples after which the lowest latency is measured again.
+     */
+    private static final int MIN_LATENCY_WINDOW = 1000;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * Maximum time a request waits for a slot, in milliseconds.
+     */
+    private final long maxQueueMillis;
+
+    /**
+     * Limits by host.
+     */
+    private final ConcurrentHashMap<String, HostLimit> hosts = new ConcurrentHashMap<String, HostLimit>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Concurrency limiter constructor with the default settings.
+     */
+    public ConcurrencyLimiter() {
+        this(NetworkReferences.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, 1,
+                NetworkReferences.MAX_CONCURRENCY_LIMIT, NetworkReferences.DEFAULT_CONCURRENCY_QUEUE_TIMEOUT);
+    }
+
+    /**
+     * Concurrency limiter constructor.
+     *
+     * @param initialLimit   Limit of a host before anything is known about it.
+     * @param minLimit       Lowest limit a host can be brought down to.
+     * @param maxLimit       Highest limit a host can grow to.
+     * @param maxQueueMillis Maximum time a request waits for a slot, in milliseconds, 0 to reject right away.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long maxQueueMillis) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit)
+            throw new IllegalArgumentException("Expected 1 <= min <= initial <= max: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueMillis = maxQueueMillis;
+    }
+
+    /**
+     * Takes a slot for a request to the host, waiting briefly for one if needed.
+     *
+     * @param host     Host about to be requested.
+     * @param deadline Deadline of the call, null for none.
+     * @throws ConcurrencyLimitExceededException If no slot freed up in time.
+     * @throws InterruptedIOException            If the thread was interrupted while waiting.
+     */
+    public void acquire(String host, Deadline deadline) throws InterruptedIOException {
+        long maxWait = this.maxQueueMillis;
+        if (deadline != null)
+            maxWait = Math.min(maxWait, deadline.remainingMillis());
+        HostLimit limit = hostLimit(host);
+        try {
+            if (limit.acquire(maxWait))
+                return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a slot for " + host);
+        }
+        this.rejected.incrementAndGet();
+        throw new ConcurrencyLimitExceededException("Too many requests in flight to " + host
+                + " (limit " + limit.getLimit() + ")", limit.getLimit());
+    }
+
+    /**
+     * Frees the slot of a completed request and adapts the limit of the host.
+     *
+     * @param host         Host that was requested.
+     * @param latencyNanos Time taken by the request, in nanoseconds.
+     * @param overloaded   Whether the request failed or the server said it was overloaded.
+     */
+    public void release(String host, long latencyNanos, boolean overloaded) {
+        hostLimit(host).release(latencyNanos, overloaded);
+    }
+
+    /**
+     * @param host Host name.
+     * @return Current limit of the host.
+     */
+    public int getLimit(String host) {
+        return hostLimit(host).getLimit();
+    }
+
+    /**
+     * @param host Host name.
+     * @return Number of requests in flight to the host.
+     */
+    public int getInFlight(String host) {
+        return hostLimit(host).getInFlight();
+    }
+
+    /**
+     * @return Current limit of every host seen, by host name.
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new TreeMap<String, Integer>();
+        Iterator<Entry<String, HostLimit>> iter = this.hosts.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, HostLimit> entry = iter.next();
+            limits.put(entry.getKey(), entry.getValue().getLimit());
+        }
+        return limits;
+    }
+
+    /**
+     * @return Number of requests rejected for lack of a slot.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    private HostLimit hostLimit(String host) {
+        host = host.toLowerCase();
+        HostLimit limit = this.hosts.get(host);
+        if (limit != null)
+            return limit;
+        HostLimit created = new HostLimit(host);
+        limit = this.hosts.putIfAbsent(host, created);
+        return limit == null ? created : limit;
+    }
+
+    @Override
+    public String toString() {
+        return "Limits: " + getLimits()
+                + "\nRejected: " + getRejectedCount() + "\n";
+    }
+
+    /**
+     * Limit and requests in flight of one host, guarded by its lock.
+     */
+    private final class HostLimit {
+
+        private final String host;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Signalled whenever a slot is freed or the limit changes.
+         */
+        private final Condition released = this.lock.newCondition();
+
+        private double limit = ConcurrencyLimiter.this.initialLimit;
+
+        private int inFlight;
+
+        /**
+         * Lowest latency seen in the current window, in nanoseconds.
+         */
+        private long minLatency = Long.MAX_VALUE;
+
+        private int samples;
+
+        HostLimit(String host) {
+            this.host = host;
+        }
+
+        boolean acquire(long maxWaitMillis) throws InterruptedException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            this.lock.lockInterruptibly();
+            try {
+                while (this.inFlight >= (int) this.limit) {
+                    if (remaining <= 0)
+                        return false;
+                    remaining = this.released.awaitNanos(remaining);
+                }
+                this.inFlight++;
+                return true;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void release(long latencyNanos, boolean overloaded) {
+            this.lock.lock();
+            try {
+                update(latencyNanos, overloaded);
+                this.released.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void update(long latencyNanos, boolean overloaded) {
+            int used = this.inFlight;
+            this.inFlight--;
+
+            if (++this.samples >= MIN_LATENCY_WINDOW) {
+                this.samples = 0;
+                this.minLatency = Long.MAX_VALUE;
+            }
+            if (!overloaded)
+                this.minLatency = Math.min(this.minLatency, latencyNanos);
+
+            double previous = this.limit;
+            if (overloaded || latencyNanos > this.minLatency * LATENCY_TOLERANCE)
+                this.limit = Math.max(ConcurrencyLimiter.this.minLimit, this.limit * BACKOFF_RATIO);
+            else if (used * 2 >= (int) this.limit)
+                this.limit = Math.min(ConcurrencyLimiter.this.maxLimit, this.limit + 1 / this.limit);
+
+            if ((int) this.limit != (int) previous)
+                LOGGER.debug("Concurrency limit of " + this.host + " is now " + (int) this.limit);
+        }
+
+        int getLimit() {
+            this.lock.lock();
+            try {
+                return (int) this.limit;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        int getInFlight() {
+            this.lock.lock();
+            try {
+                return this.inFlight;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+    }
+
+}
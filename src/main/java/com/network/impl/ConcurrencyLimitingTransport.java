@@ -0,0 +1,259 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPHeaders;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.network.IResponseBodyHandler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport decorator holding a slot of the adaptive concurrency limiter
+ * for the duration of every request, and reporting its latency and outcome
+ * back to the limiter.
+ * A streamed response holds its slot until its body has been read, that is
+ * until the body stream or the response is closed, so the latency reported
+ * includes the transfer of the body.
+ */
+public class ConcurrencyLimitingTransport implements IHTTPTransport {
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    private final ConcurrencyLimiter limiter;
+
+    /**
+     * Concurrency limiting transport constructor.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Limiter handing out the slots.
+     */
+    public ConcurrencyLimitingTransport(IHTTPTransport delegate, ConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        String host = new URL(spec.getUrl()).getHost();
+        this.limiter.acquire(host, spec.getDeadline());
+
+        long start = System.nanoTime();
+        boolean overloaded = true;
+        boolean handedOver = false;
+        try {
+            IHTTPResponse response = this.delegate.execute(spec);
+            int status = response.getStatusCode();
+            overloaded = status == 429 || status == 503 || status == 504;
+            if (response.isStreaming()) {
+                handedOver = true;
+                return new StreamedResponse(response, host, start, overloaded);
+            }
+            return response;
+        } finally {
+            if (!handedOver)
+                this.limiter.release(host, System.nanoTime() - start, overloaded);
+        }
+    }
+
+    /**
+     * Shuts the underlying transport down.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    /**
+     * @return Limiter handing out the slots, with the current limit of every host.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.limiter;
+    }
+
+    /**
+     * Streamed response giving its slot back once its body has been read.
+     * The slot is released once, on whichever comes first of the body stream
+     * being closed, the body being consumed, or the response being closed.
+     */
+    private final class StreamedResponse implements IHTTPResponse {
+
+        private final IHTTPResponse response;
+
+        private final String host;
+
+        /**
+         * Time the request was sent, in System.nanoTime units.
+         */
+        private final long start;
+
+        private final boolean overloaded;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        StreamedResponse(IHTTPResponse response, String host, long start, boolean overloaded) {
+            this.response = response;
+            this.host = host;
+            this.start = start;
+            this.overloaded = overloaded;
+        }
+
+        private void release() {
+            if (this.released.compareAndSet(false, true))
+                limiter.release(this.host, System.nanoTime() - this.start, this.overloaded);
+        }
+
+        @Override
+        public int getStatusCode() {
+            return this.response.getStatusCode();
+        }
+
+        @Override
+        public Map<String, String> getAllResponseHeaders() {
+            return this.response.getAllResponseHeaders();
+        }
+
+        @Override
+        public String getResponseHeaderByKey(String key) {
+            return this.response.getResponseHeaderByKey(key);
+        }
+
+        @Override
+        public HTTPHeaders getResponseHeaders() {
+            return this.response.getResponseHeaders();
+        }
+
+        @Override
+        public List<String> getResponseHeaderValues(String key) {
+            return this.response.getResponseHeaderValues(key);
+        }
+
+        @Override
+        public String getBaseURL() {
+            return this.response.getBaseURL();
+        }
+
+        @Override
+        public Map<String, String> getAllRequestParameters() {
+            return this.response.getAllRequestParameters();
+        }
+
+        @Override
+        public String getRequestParameterByKey(String key) {
+            return this.response.getRequestParameterByKey(key);
+        }
+
+        @Override
+        public List<String> getRequestParameterValues(String key) {
+            return this.response.getRequestParameterValues(key);
+        }
+
+        @Override
+        public String getMethod() {
+            return this.response.getMethod();
+        }
+
+        @Override
+        public String getProtocol() {
+            return this.response.getProtocol();
+        }
+
+        @Override
+        public Map<String, String> getAllRequestHeaders() {
+            return this.response.getAllRequestHeaders();
+        }
+
+        @Override
+        public String getRequestHeaderByKey(String key) {
+            return this.response.getRequestHeaderByKey(key);
+        }
+
+        @Override
+        public String getRawResponse() {
+            try {
+                return this.response.getRawResponse();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public byte[] getBodyBytes() {
+            try {
+                return this.response.getBodyBytes();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public InputStream getBodyStream() {
+            return new FilterInputStream(this.response.getBodyStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ReadableByteChannel getBodyChannel() {
+            return Channels.newChannel(getBodyStream());
+        }
+
+        @Override
+        public long consumeBody(IResponseBodyHandler handler) throws IOException {
+            try {
+                return this.response.consumeBody(handler);
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return this.response.isStreaming();
+        }
+
+        @Override
+        public long getBodyBytesOnWire() {
+            return this.response.getBodyBytesOnWire();
+        }
+
+        @Override
+        public long getBodyBytesDecoded() {
+            return this.response.getBodyBytesDecoded();
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.response.close();
+            } finally {
+                release();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,361 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of keep-alive connections, partitioned by route.
+ * A route is the combination of protocol, host and port.
+ * The number of connections per route is bounded, idle connections
+ * are evicted in the background and every connection is checked for
+ * staleness before being handed out again.
+ */
+public class ConnectionPool {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Maximum number of connections, leased and idle, per route.
+     */
+    private final int maxConnectionsPerRoute;
+
+    /**
+     * Time after which an idle connection is evicted, in milliseconds.
+     */
+    private final long idleTimeout;
+
+    /**
+     * Maximum time to wait for a connection to become available, in milliseconds.
+     */
+    private final long connectionRequestTimeout;
+
+    /**
+     * Map of route key to its connections.
+     */
+    private final ConcurrentMap<String, RoutePool> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Background task evicting idle connections.
+     */
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Source of the TLS settings for HTTPS routes.
+     */
+    private final TLSContextManager tls;
+
+    /**
+     * Resolver of the host names of the routes.
+     */
+    private final DNSCache dns;
+
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+
+    /**
+     * Connection pool constructor with the default settings.
+     */
+    public ConnectionPool() {
+        this(NetworkReferences.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                NetworkReferences.DEFAULT_IDLE_CONNECTION_TIMEOUT,
+                NetworkReferences.DEFAULT_CONNECTION_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Connection pool constructor using the shared TLS context manager.
+     *
+     * @param maxConnectionsPerRoute   Maximum number of connections per route.
+     * @param idleTimeout              Time after which an idle connection is evicted, in milliseconds.
+     * @param connectionRequestTimeout Maximum time to wait for a connection, in milliseconds.
+     */
+    public ConnectionPool(int maxConnectionsPerRoute, long idleTimeout, long connectionRequestTimeout) {
+        this(maxConnectionsPerRoute, idleTimeout, connectionRequestTimeout, TLSContextManager.getInstance());
+    }
+
+    /**
+     * Connection pool constructor using the shared DNS cache.
+     *
+     * @param maxConnectionsPerRoute   Maximum number of connections per route.
+     * @param idleTimeout              Time after which an idle connection is evicted, in milliseconds.
+     * @param connectionRequestTimeout Maximum time to wait for a connection, in milliseconds.
+     * @param tls                      Source of the TLS settings for HTTPS routes.
+     */
+    public ConnectionPool(int maxConnectionsPerRoute, long idleTimeout, long connectionRequestTimeout,
+                          TLSContextManager tls) {
+        this(maxConnectionsPerRoute, idleTimeout, connectionRequestTimeout, tls, DNSCache.getInstance());
+    }
+
+    /**
+     * Connection pool constructor.
+     *
+     * @param maxConnectionsPerRoute   Maximum number of connections per route.
+     * @param idleTimeout              Time after which an idle connection is evicted, in milliseconds.
+     * @param connectionRequestTimeout Maximum time to wait for a connection, in milliseconds.
+     * @param tls                      Source of the TLS settings for HTTPS routes.
+     * @param dns                      Resolver of the host names of the routes.
+     */
+    public ConnectionPool(int maxConnectionsPerRoute, long idleTimeout, long connectionRequestTimeout,
+                          TLSContextManager tls, DNSCache dns) {
+        if (maxConnectionsPerRoute <= 0)
+            throw new IllegalArgumentException("Maximum connections per route must be positive: "
+                    + maxConnectionsPerRoute);
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.idleTimeout = idleTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.tls = tls;
+        this.dns = dns;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "connection-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long period = Math.max(1000, idleTimeout / 2);
+        this.evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param url URL of the request.
+     * @return Key of the route serving the URL.
+     */
+    static String routeKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    /**
+     * Leases a connection for the route of the URL, reusing an idle one if possible.
+     *
+     * @param url            URL of the request.
+     * @param connectTimeout Timeout for opening a new connection, in milliseconds, 0 for none.
+     * @param deadline       Deadline of the call, null for none.
+     * @return Connection leased to the caller. It has to be handed back through release.
+     * @throws IOException If no connection could be obtained.
+     */
+    PooledConnection acquire(URL url, int connectTimeout, Deadline deadline) throws IOException {
+        String key = routeKey(url);
+        RoutePool route = routePool(key);
+
+        long wait = deadline == null ? this.connectionRequestTimeout
+                : deadline.capTimeout(this.connectionRequestTimeout);
+        try {
+            if (!route.permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                if (deadline != null && deadline.isExpired())
+                    throw new HTTPTimeoutException("Deadline expired waiting for connection to " + key);
+                throw new IOException("Timeout waiting for connection to " + key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for connection to " + key, e);
+        }
+
+        PooledConnection connection;
+        while ((connection = route.idle.pollFirst()) != null) {
+            if (!connection.isStale()) {
+                this.connectionsReused.incrementAndGet();
+                return connection;
+            }
+            LOGGER.debug("Discarding stale connection to " + key);
+            connection.close();
+        }
+
+        try {
+            connection = new PooledConnection(key, open(url, connectTimeout, deadline), this);
+        } catch (IOException | RuntimeException e) {
+            route.permits.release();
+            throw e;
+        }
+        this.connectionsCreated.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Hands a leased connection back to the pool.
+     *
+     * @param connection Connection to be released.
+     * @param reusable   Whether the connection can serve another request.
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        RoutePool route = routePool(connection.getRoute());
+        if (reusable && !connection.getSocket().isClosed()) {
+            connection.markIdle();
+            route.idle.offerFirst(connection);
+        } else
+            connection.close();
+        route.permits.release();
+    }
+
+    /**
+     * Closes all connections which have been idle for longer than the idle timeout.
+     */
+    public void evictIdleConnections() {
+        long threshold = System.currentTimeMillis() - this.idleTimeout;
+        Iterator<RoutePool> routeIter = this.routes.values().iterator();
+        while (routeIter.hasNext()) {
+            ConcurrentLinkedDeque<PooledConnection> idle = routeIter.next().idle;
+            Iterator<PooledConnection> iter = idle.descendingIterator();
+            while (iter.hasNext()) {
+                PooledConnection connection = iter.next();
+                if (connection.getLastUsed() < threshold && idle.removeFirstOccurrence(connection)) {
+                    connection.close();
+                    this.connectionsEvicted.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the eviction task.
+     */
+    public void shutdown() {
+        this.evictor.shutdownNow();
+        Iterator<RoutePool> routeIter = this.routes.values().iterator();
+        while (routeIter.hasNext()) {
+            ConcurrentLinkedDeque<PooledConnection> idle = routeIter.next().idle;
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null)
+                connection.close();
+        }
+    }
+
+    /**
+     * @return Number of connections opened, i.e. TCP and TLS handshakes made.
+     */
+    public long getConnectionsCreated() {
+        return this.connectionsCreated.get();
+    }
+
+    /**
+     * @return Number of times an idle connection was reused.
+     */
+    public long getConnectionsReused() {
+        return this.connectionsReused.get();
+    }
+
+    /**
+     * @return Number of idle connections closed by the evictor.
+     */
+    public long getConnectionsEvicted() {
+        return this.connectionsEvicted.get();
+    }
+
+    /**
+     * @return Number of idle connections across all routes.
+     */
+    public int getIdleConnections() {
+        int count = 0;
+        Iterator<RoutePool> routeIter = this.routes.values().iterator();
+        while (routeIter.hasNext())
+            count += routeIter.next().idle.size();
+        return count;
+    }
+
+    private RoutePool routePool(String key) {
+        RoutePool route = this.routes.get(key);
+        if (route == null) {
+            RoutePool created = new RoutePool(this.maxConnectionsPerRoute);
+            route = this.routes.putIfAbsent(key, created);
+            if (route == null)
+                route = created;
+        }
+        return route;
+    }
+
+    /**
+     * Opens a new socket to the host of the URL, trying its addresses in turn until one accepts.
+     *
+     * @param url            URL of the request.
+     * @param connectTimeout Timeout for connecting to each address and the TLS handshake, in milliseconds, 0 for none.
+     * @param deadline       Deadline of the call, null for none.
+     * @return Connected socket, with the TLS handshake completed for HTTPS.
+     * @throws IOException If the connection could not be established.
+     */
+    private Socket open(URL url, int connectTimeout, Deadline deadline) throws IOException {
+        String host = url.getHost();
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+
+        Socket socket = null;
+        IOException failure = null;
+        for (InetAddress address : this.dns.resolve(host)) {
+            if (deadline != null && deadline.isExpired())
+                break;
+            Socket candidate = new Socket();
+            try {
+                candidate.setTcpNoDelay(true);
+                candidate.setKeepAlive(true);
+                int timeout = deadline == null ? connectTimeout : deadline.capTimeout(connectTimeout);
+                candidate.connect(new InetSocketAddress(address, port), timeout);
+                socket = candidate;
+                break;
+            } catch (IOException e) {
+                candidate.close();
+                LOGGER.debug("Unable to connect to " + address + ":" + port + ", trying the next address.");
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (socket == null) {
+            if (failure == null)
+                throw new HTTPTimeoutException("Deadline expired connecting to " + host + ":" + port);
+            throw failure;
+        }
+
+        try {
+            socket.setSoTimeout(connectTimeout);
+            if ("https".equalsIgnoreCase(url.getProtocol()))
+                return this.tls.createSocket(socket, host, port);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connections and lease permits of a single route.
+     */
+    private static final class RoutePool {
+
+        private final Semaphore permits;
+
+        /**
+         * Idle connections, most recently used first.
+         */
+        private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+        RoutePool(int maxConnections) {
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+    }
+
+}
@@ -0,0 +1,235 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side cache of host name resolutions.
+ * Addresses are kept for the TTL, failed lookups for the negative TTL.
+ * Once the TTL has elapsed the cached addresses keep being served while
+ * they are looked up again in the background, so only the first call to a
+ * host waits for the resolver. Every resolution hands the addresses out in
+ * a rotated order, so connections spread across all the A and AAAA records
+ * of the host and a caller can fall back on the next one.
+ */
+public class DNSCache {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Time addresses are served before being looked up again, in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * Time a failed lookup is remembered, in milliseconds.
+     */
+    private final long negativeTtl;
+
+    /**
+     * Resolutions by lower case host name.
+     */
+    private final ConcurrentHashMap<String, Resolution> hosts = new ConcurrentHashMap<String, Resolution>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * DNS cache constructor with the default TTLs.
+     */
+    public DNSCache() {
+        this(NetworkReferences.DEFAULT_DNS_TTL, NetworkReferences.DEFAULT_DNS_NEGATIVE_TTL);
+    }
+
+    /**
+     * DNS cache constructor.
+     *
+     * @param ttl         Time addresses are served before being looked up again, in milliseconds.
+     * @param negativeTtl Time a failed lookup is remembered, in milliseconds.
+     */
+    public DNSCache(long ttl, long negativeTtl) {
+        if (ttl < 0 || negativeTtl < 0)
+            throw new IllegalArgumentException("Negative TTL: " + ttl + ", " + negativeTtl);
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * @return DNS cache shared by the default connection pools.
+     */
+    public static DNSCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param host Host name or address literal.
+     * @return Addresses of the host, starting one further than the previous resolution.
+     * @throws UnknownHostException If the host could not be resolved, now or within the negative TTL.
+     */
+    public List<InetAddress> resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase();
+        Resolution resolution = this.hosts.get(key);
+        long now = System.nanoTime();
+        if (resolution == null || (resolution.addresses == null && resolution.isExpired(now))) {
+            this.misses.incrementAndGet();
+            resolution = lookup(host);
+            this.hosts.put(key, resolution);
+        } else {
+            this.hits.incrementAndGet();
+            if (resolution.addresses != null && resolution.isExpired(now))
+                refresh(host, key, resolution);
+        }
+
+        if (resolution.addresses == null)
+            throw new UnknownHostException(resolution.failure);
+        InetAddress[] addresses = resolution.addresses;
+        int start = (resolution.next.getAndIncrement() & Integer.MAX_VALUE) % addresses.length;
+        List<InetAddress> rotated = new ArrayList<InetAddress>(addresses.length);
+        for (int i = 0; i < addresses.length; i++)
+            rotated.add(addresses[(start + i) % addresses.length]);
+        return rotated;
+    }
+
+    /**
+     * Forgets the resolution of a host, so the next call looks it up again.
+     *
+     * @param host Host name.
+     */
+    public void invalidate(String host) {
+        this.hosts.remove(host.toLowerCase());
+    }
+
+    /**
+     * Forgets every resolution.
+     */
+    public void clear() {
+        this.hosts.clear();
+    }
+
+    /**
+     * @return Number of resolutions served from the cache, fresh or not.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Number of resolutions which had to wait for the resolver.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    private Resolution lookup(String host) {
+        try {
+            return new Resolution(InetAddress.getAllByName(host), null, this.ttl);
+        } catch (UnknownHostException e) {
+            LOGGER.warn("Unable to resolve " + host + ": " + e.getMessage());
+            return new Resolution(null, host, this.negativeTtl);
+        }
+    }
+
+    /**
+     * Looks the host up again in the background, keeping the stale addresses if that fails.
+     */
+    private void refresh(final String host, final String key, final Resolution stale) {
+        if (!stale.refreshing.compareAndSet(false, true))
+            return;
+        ExecutorHolder.EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Resolution fresh = lookup(host);
+                if (fresh.addresses != null) {
+                    DNSCache.this.hosts.replace(key, stale, fresh);
+                } else {
+                    //Ride out a resolver outage on the addresses known to work.
+                    stale.expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DNSCache.this.negativeTtl);
+                    stale.refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "Hosts: " + this.hosts.size()
+                + "\nHits: " + getHitCount()
+                + "\nMisses: " + getMissCount() + "\n";
+    }
+
+    /**
+     * Addresses of a host, or the failure to resolve it.
+     */
+    private static final class Resolution {
+
+        /**
+         * Addresses of the host, null if it could not be resolved.
+         */
+        private final InetAddress[] addresses;
+
+        /**
+         * Message of the lookup failure.
+         */
+        private final String failure;
+
+        /**
+         * Time after which the resolution is stale, in nanoseconds.
+         */
+        private volatile long expires;
+
+        /**
+         * Position of the first address handed out next.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Resolution(InetAddress[] addresses, String failure, long ttlMillis) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+
+        boolean isExpired(long now) {
+            return now - this.expires >= 0;
+        }
+
+    }
+
+    /**
+     * Holder class for the shared DNS cache.
+     */
+    private final static class Holder {
+        private static final DNSCache INSTANCE = new DNSCache();
+    }
+
+    /**
+     * Holder class for the threads looking stale hosts up again.
+     */
+    private final static class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dns-refresh-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,183 @@
+package main.java.com.network.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Response body stream which undoes the Content-Encoding of the body
+ * while it is being read, and counts the bytes both as received on
+ * the wire and after decoding.
+ */
+public class DecodingInputStream extends InputStream {
+
+    /**
+     * Content encoding of the body, null for identity.
+     */
+    private final String contentEncoding;
+
+    /**
+     * Body as received on the wire.
+     */
+    private final CountingInputStream wire;
+
+    /**
+     * Decoder, created on first read since it consumes the encoding header.
+     */
+    private InputStream decoded;
+
+    /**
+     * Inflater of a deflate body. InflaterInputStream does not end an inflater
+     * it was given, so its native memory is released on close.
+     */
+    private Inflater inflater;
+
+    /**
+     * Number of bytes handed out after decoding.
+     */
+    private volatile long decodedBytes;
+
+    /**
+     * @param body            Body as received on the wire.
+     * @param contentEncoding Value of the Content-Encoding header, null if absent.
+     */
+    public DecodingInputStream(InputStream body, String contentEncoding) {
+        this.wire = new CountingInputStream(body);
+        this.contentEncoding = contentEncoding == null ? null : contentEncoding.trim().toLowerCase();
+    }
+
+    /**
+     * @return Number of body bytes received on the wire so far.
+     */
+    public long getWireBytes() {
+        return this.wire.count;
+    }
+
+    /**
+     * @return Number of body bytes read after decoding so far.
+     */
+    public long getDecodedBytes() {
+        return this.decodedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = decoder().read();
+        if (b == -1)
+            drainWire();
+        else
+            this.decodedBytes++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = decoder().read(b, off, len);
+        if (read == -1)
+            drainWire();
+        else
+            this.decodedBytes += read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.decoded != null)
+                this.decoded.close();
+            else
+                this.wire.close();
+        } finally {
+            if (this.inflater != null)
+                this.inflater.end();
+        }
+    }
+
+    private InputStream decoder() throws IOException {
+        if (this.decoded != null)
+            return this.decoded;
+
+        if ("gzip".equals(this.contentEncoding) || "x-gzip".equals(this.contentEncoding)) {
+            PushbackInputStream in = new PushbackInputStream(this.wire, 1);
+            int first = in.read();
+            if (first == -1)
+                this.decoded = in;
+            else {
+                in.unread(first);
+                this.decoded = new GZIPInputStream(in, 8192);
+            }
+        } else if ("deflate".equals(this.contentEncoding)) {
+            //Servers disagree on whether deflate is zlib wrapped, so look at the header.
+            PushbackInputStream in = new PushbackInputStream(this.wire, 2);
+            int cmf = in.read();
+            int flg = cmf == -1 ? -1 : in.read();
+            if (flg != -1)
+                in.unread(flg);
+            if (cmf != -1)
+                in.unread(cmf);
+            boolean zlib = cmf != -1 && flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) + flg) % 31 == 0;
+            if (cmf == -1)
+                this.decoded = in;
+            else {
+                this.inflater = new Inflater(!zlib);
+                this.decoded = new InflaterInputStream(in, this.inflater, 8192);
+            }
+        } else
+            this.decoded = this.wire;
+        return this.decoded;
+    }
+
+    /**
+     * Reads whatever framing follows the compressed data, so that the
+     * connection sees the end of the body and can be reused.
+     */
+    private void drainWire() throws IOException {
+        byte[] buffer = new byte[512];
+        while (this.wire.read(buffer, 0, buffer.length) != -1) {
+        }
+    }
+
+    /**
+     * Input stream counting the bytes read through it.
+     */
+    private static final class CountingInputStream extends InputStream {
+
+        private final InputStream in;
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.in.read();
+            if (b != -1)
+                this.count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = this.in.read(b, off, len);
+            if (read > 0)
+                this.count += read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,632 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPHeaders;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Disk tier of the response cache, persisted across process restarts.
+ * Entries are appended to memory-mapped segment files, and bodies are served
+ * as slices of the mapping so they are never copied onto the heap unless the
+ * caller asks for the bytes or the text.
+ * Each record is committed by writing its marker last, so a record torn by a
+ * crash is ignored. The index maps the SHA-256 of each request key to the
+ * position of its latest record and is rebuilt from the segments on open,
+ * which also keeps cookies out of the files. Set-Cookie headers are not
+ * stored either, as they belong to the client that received them.
+ * Records overwritten or removed stay in their segment until it is compacted:
+ * once most of the oldest segment is dead, its live records are copied to the
+ * end and it is deleted. Once the segments exceed the maximum size the oldest
+ * ones are deleted along with their live records.
+ */
+public class DiskResponseCache implements Closeable {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Marker of a committed record.
+     */
+    private static final int RECORD_MARKER = 0x52434331;
+
+    /**
+     * Length of the request key digest.
+     */
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * Offset of the header length in a record: marker, digest, status and both times.
+     */
+    private static final int HEADER_LENGTH_OFFSET = 4 + DIGEST_LENGTH + 4 + 16;
+
+    /**
+     * Part of the oldest segment that has to be dead for it to be compacted, as a divisor:
+     * it is compacted once its live records take at most a quarter of it.
+     */
+    private static final int COMPACTION_RATIO = 4;
+
+    /**
+     * Status stored for records removing an entry.
+     */
+    private static final int TOMBSTONE = -1;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    /**
+     * Directory holding the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * Maximum total size of the segment files, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Size of new segment files, in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * Lock preventing other processes from using the directory.
+     */
+    private final FileChannel lockChannel;
+
+    private final FileLock lock;
+
+    /**
+     * Segments by id, oldest first. The last one is appended to.
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+    /**
+     * Record positions by key digest: segment id in the high half, offset in the low half.
+     */
+    private final HashMap<String, Long> index = new HashMap<String, Long>();
+
+    /**
+     * Total size of the segment files, in bytes.
+     */
+    private long fileBytes;
+
+    /**
+     * Total size of the records in the index, in bytes.
+     */
+    private long liveBytes;
+
+    /**
+     * Guards the segments and the index. A lock rather than a monitor, so a
+     * virtual thread doing file I/O while holding it keeps its carrier free.
+     */
+    private final ReentrantLock guard = new ReentrantLock();
+
+    private final AtomicLong evictedSegments = new AtomicLong();
+
+    private final AtomicLong compactedSegments = new AtomicLong();
+
+    /**
+     * Disk response cache constructor with the default segment size.
+     *
+     * @param directory Directory holding the segment files, created if needed.
+     * @param maxBytes  Maximum total size of the segment files, in bytes.
+     * @throws IOException If the directory could not be opened or is used by another process.
+     */
+    public DiskResponseCache(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, NetworkReferences.DEFAULT_DISK_CACHE_SEGMENT_SIZE);
+    }
+
+    /**
+     * Disk response cache constructor.
+     *
+     * @param directory   Directory holding the segment files, created if needed.
+     * @param maxBytes    Maximum total size of the segment files, in bytes.
+     * @param segmentSize Size of new segment files, in bytes, at most a quarter of the maximum size
+     *                    so that eviction has segments to drop. Larger records get a segment of their own.
+     * @throws IOException If the directory could not be opened or is used by another process.
+     */
+    public DiskResponseCache(Path directory, long maxBytes, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = (int) Math.max(1, Math.min(segmentSize, maxBytes / 4));
+
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = this.lockChannel.tryLock();
+        if (this.lock == null) {
+            this.lockChannel.close();
+            throw new IOException("Disk cache directory is in use by another process: " + directory);
+        }
+
+        List<Integer> ids = new ArrayList<Integer>();
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX);
+        try {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Ignoring unexpected file in disk cache: " + file);
+                }
+            }
+        } finally {
+            files.close();
+        }
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i++)
+            load(ids.get(i));
+        LOGGER.info("Disk cache " + directory + " opened with " + this.index.size() + " entries in "
+                + this.segments.size() + " segments.");
+    }
+
+    /**
+     * @param key Request key.
+     * @return Cached entry with its body mapped from disk, null if absent.
+     */
+    CachedResponse get(String key) {
+        this.guard.lock();
+        try {
+            Long position = this.index.get(digest(key));
+            if (position == null)
+                return null;
+            Segment segment = this.segments.get((int) (position >>> 32));
+            return readEntry(segment.map, (int) position.longValue());
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * Appends an entry, compacting the oldest segment if most of it is dead
+     * and evicting the oldest segments if the cache grows too large.
+     *
+     * @param key   Request key.
+     * @param entry Entry to be stored.
+     * @throws IOException If a new segment could not be created.
+     */
+    void put(String key, CachedResponse entry) throws IOException {
+        this.guard.lock();
+        try {
+            append(digest(key), entry);
+            compact();
+            evict();
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * @param key Request key whose entry is to be dropped.
+     * @throws IOException If a new segment could not be created.
+     */
+    void remove(String key) throws IOException {
+        this.guard.lock();
+        try {
+            String digest = digest(key);
+            if (this.index.containsKey(digest))
+                append(digest, null);
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * Flushes the segments and releases the directory.
+     *
+     * @throws IOException If a segment file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.guard.lock();
+        try {
+            Iterator<Segment> iter = this.segments.values().iterator();
+            while (iter.hasNext()) {
+                Segment segment = iter.next();
+                segment.map.force();
+                segment.channel.close();
+            }
+            this.segments.clear();
+            this.index.clear();
+            this.lock.release();
+            this.lockChannel.close();
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * @return Number of entries on disk.
+     */
+    public int getEntryCount() {
+        this.guard.lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * @return Total size of the records of the entries on disk, in bytes.
+     */
+    public long getSize() {
+        this.guard.lock();
+        try {
+            return this.liveBytes;
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * @return Total size of the segment files, including dead records and unused space, in bytes.
+     */
+    public long getFileSize() {
+        this.guard.lock();
+        try {
+            return this.fileBytes;
+        } finally {
+            this.guard.unlock();
+        }
+    }
+
+    /**
+     * @return Number of segments deleted to keep the cache within its size.
+     */
+    public long getEvictedSegmentCount() {
+        return this.evictedSegments.get();
+    }
+
+    /**
+     * @return Number of segments deleted after moving their live records.
+     */
+    public long getCompactedSegmentCount() {
+        return this.compactedSegments.get();
+    }
+
+    /**
+     * Maps an existing segment and indexes its committed records.
+     *
+     * @param id Segment id.
+     * @throws IOException If the segment could not be mapped.
+     */
+    private void load(int id) throws IOException {
+        Path path = segmentPath(id);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        this.segments.put(id, segment);
+        this.fileBytes += channel.size();
+
+        ByteBuffer records = segment.map.duplicate();
+        byte[] digest = new byte[DIGEST_LENGTH];
+        try {
+            while (records.remaining() >= 4 && records.getInt(records.position()) == RECORD_MARKER) {
+                int offset = records.position();
+                records.getInt();
+                records.get(digest);
+                int status = records.getInt();
+                records.position(records.position() + 16);
+                int headerBytes = records.getInt();
+                records.position(records.position() + headerBytes);
+                int bodyLength = records.getInt();
+                records.position(records.position() + bodyLength);
+
+                String key = Base64.getEncoder().encodeToString(digest);
+                index(key, status == TOMBSTONE ? null : Long.valueOf(((long) id << 32) | offset),
+                        records.position() - offset);
+                segment.position = records.position();
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            LOGGER.warn("Truncated record in " + path + " at " + segment.position + ", ignoring the rest.");
+        }
+    }
+
+    /**
+     * @param digest Key digest.
+     * @param entry  Entry to be stored, null to write a tombstone.
+     * @throws IOException If a new segment could not be created.
+     */
+    private void append(String digest, CachedResponse entry) throws IOException {
+        byte[] headers = entry == null ? new byte[0] : encodeHeaders(entry.getHeaders());
+        ByteBuffer body = entry == null ? ByteBuffer.allocate(0) : entry.getBody();
+        long length = HEADER_LENGTH_OFFSET + 4 + headers.length + 4 + body.remaining();
+        if (length > Integer.MAX_VALUE || length > this.maxBytes)
+            return;
+
+        Segment segment = appendSegment((int) length);
+        int offset = segment.position;
+        ByteBuffer record = segment.map.duplicate();
+        record.position(offset);
+        record.putInt(0);
+        record.put(Base64.getDecoder().decode(digest));
+        record.putInt(entry == null ? TOMBSTONE : entry.getStatus());
+        record.putLong(entry == null ? 0 : entry.getRequestTime());
+        record.putLong(entry == null ? 0 : entry.getResponseTime());
+        record.putInt(headers.length);
+        record.put(headers);
+        record.putInt(body.remaining());
+        record.put(body);
+        segment.map.putInt(offset, RECORD_MARKER);
+        segment.position = record.position();
+
+        index(digest, entry == null ? null : Long.valueOf(((long) segment.id << 32) | offset), (int) length);
+    }
+
+    /**
+     * Points the key at a record, or drops it, keeping the live byte counts.
+     *
+     * @param digest   Key digest.
+     * @param position Position of the record, null for a tombstone.
+     * @param length   Length of the record, in bytes.
+     */
+    private void index(String digest, Long position, int length) {
+        Long previous = position == null ? this.index.remove(digest) : this.index.put(digest, position);
+        if (previous != null) {
+            Segment segment = this.segments.get((int) (previous >>> 32));
+            int released = recordLength(segment.map, (int) previous.longValue());
+            segment.live -= released;
+            this.liveBytes -= released;
+        }
+        if (position != null) {
+            this.segments.get((int) (position >>> 32)).live += length;
+            this.liveBytes += length;
+        }
+    }
+
+    /**
+     * @param length Length of the record to be appended, in bytes.
+     * @return Last segment if the record fits in it, a new one otherwise.
+     * @throws IOException If a new segment could not be created.
+     */
+    private Segment appendSegment(int length) throws IOException {
+        Segment segment = this.segments.isEmpty() ? null : this.segments.lastEntry().getValue();
+        if (segment != null && segment.map.capacity() - segment.position >= length)
+            return segment;
+        //The segment is full, so make sure it is on disk before moving on.
+        if (segment != null)
+            segment.map.force();
+        return createSegment(Math.max(this.segmentSize, length));
+    }
+
+    /**
+     * @param capacity Size of the segment file, in bytes.
+     * @return New segment to be appended to.
+     * @throws IOException If the segment could not be created.
+     */
+    private Segment createSegment(int capacity) throws IOException {
+        int id = this.segments.isEmpty() ? 0 : this.segments.lastKey() + 1;
+        FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        this.segments.put(id, segment);
+        this.fileBytes += capacity;
+        return segment;
+    }
+
+    /**
+     * Copies the live records of the oldest segment to the end and deletes it,
+     * if at most a 1 / COMPACTION_RATIO part of it is live. Only the oldest
+     * segment is compacted, so its tombstones cannot be shadowing records of
+     * an older segment when they go.
+     *
+     * @throws IOException If a new segment could not be created.
+     */
+    private void compact() throws IOException {
+        if (this.segments.size() < 2)
+            return;
+        Segment oldest = this.segments.firstEntry().getValue();
+        if ((long) oldest.live * COMPACTION_RATIO > oldest.position)
+            return;
+
+        List<String> digests = new ArrayList<String>();
+        List<Integer> offsets = new ArrayList<Integer>();
+        Iterator<Entry<String, Long>> iter = this.index.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, Long> entry = iter.next();
+            if ((int) (entry.getValue() >>> 32) == oldest.id) {
+                digests.add(entry.getKey());
+                offsets.add((int) entry.getValue().longValue());
+            }
+        }
+        for (int i = 0; i < digests.size(); i++)
+            copy(digests.get(i), oldest, offsets.get(i));
+        drop(oldest);
+        this.compactedSegments.incrementAndGet();
+    }
+
+    /**
+     * Appends a committed record of another segment as is.
+     *
+     * @param digest Key digest.
+     * @param from   Segment holding the record.
+     * @param offset Offset of the record.
+     * @throws IOException If a new segment could not be created.
+     */
+    private void copy(String digest, Segment from, int offset) throws IOException {
+        int length = recordLength(from.map, offset);
+        Segment segment = appendSegment(length);
+        ByteBuffer source = from.map.duplicate();
+        source.limit(offset + length);
+        source.position(offset + 4);
+        ByteBuffer record = segment.map.duplicate();
+        record.position(segment.position);
+        record.putInt(0);
+        record.put(source);
+        int at = segment.position;
+        segment.map.putInt(at, RECORD_MARKER);
+        segment.position = record.position();
+        index(digest, Long.valueOf(((long) segment.id << 32) | at), length);
+    }
+
+    /**
+     * Deletes the oldest segments, except the one being appended to,
+     * until the cache is within its size.
+     * Bodies still referenced by responses stay readable until they are released.
+     */
+    private void evict() {
+        while (this.fileBytes > this.maxBytes && this.segments.size() > 1) {
+            Segment oldest = this.segments.firstEntry().getValue();
+            Iterator<Long> iter = this.index.values().iterator();
+            while (iter.hasNext())
+                if ((int) (iter.next() >>> 32) == oldest.id)
+                    iter.remove();
+            this.liveBytes -= oldest.live;
+            drop(oldest);
+            this.evictedSegments.incrementAndGet();
+        }
+    }
+
+    /**
+     * Deletes a segment which no longer holds any indexed record.
+     *
+     * @param segment Segment to be deleted.
+     */
+    private void drop(Segment segment) {
+        this.segments.remove(segment.id);
+        this.fileBytes -= segment.map.capacity();
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segmentPath(segment.id));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete disk cache segment " + segmentPath(segment.id), e);
+        }
+    }
+
+    /**
+     * @param map    Mapping of the segment.
+     * @param offset Offset of a committed record.
+     * @return Length of the record, in bytes.
+     */
+    private static int recordLength(ByteBuffer map, int offset) {
+        int headerBytes = map.getInt(offset + HEADER_LENGTH_OFFSET);
+        return HEADER_LENGTH_OFFSET + 4 + headerBytes + 4 + map.getInt(offset + HEADER_LENGTH_OFFSET + 4 + headerBytes);
+    }
+
+    /**
+     * @param map    Mapping of the segment.
+     * @param offset Offset of the record.
+     * @return Entry whose body is a slice of the mapping.
+     */
+    private static CachedResponse readEntry(MappedByteBuffer map, int offset) {
+        ByteBuffer record = map.duplicate();
+        record.position(offset + 4 + DIGEST_LENGTH);
+        int status = record.getInt();
+        long requestTime = record.getLong();
+        long responseTime = record.getLong();
+
+        HTTPHeaders headers = new HTTPHeaders();
+        int headerEnd = record.getInt();
+        headerEnd += record.position();
+        while (record.position() < headerEnd)
+            headers.add(readString(record), readString(record));
+
+        int bodyLength = record.getInt();
+        record.limit(record.position() + bodyLength);
+        return CachedResponse.restore(status, headers, record.slice().asReadOnlyBuffer(), requestTime, responseTime);
+    }
+
+    /**
+     * @param headers Headers of the entry, a repeated header being written once per value.
+     * @return Name and value pairs, each string prefixed with its length.
+     */
+    private static byte[] encodeHeaders(HTTPHeaders headers) {
+        List<byte[]> parts = new ArrayList<byte[]>();
+        int length = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.getName(i);
+            if (name == null || "Set-Cookie".equalsIgnoreCase(name) || "Set-Cookie2".equalsIgnoreCase(name))
+                continue;
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            byte[] value = headers.getValue(i).getBytes(StandardCharsets.UTF_8);
+            parts.add(key);
+            parts.add(value);
+            length += 8 + key.length + value.length;
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(length);
+        for (int i = 0; i < parts.size(); i++) {
+            encoded.putInt(parts.get(i).length);
+            encoded.put(parts.get(i));
+        }
+        return encoded.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param key Request key.
+     * @return SHA-256 digest of the key, Base64 encoded.
+     */
+    private static String digest(String key) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private Path segmentPath(int id) {
+        return this.directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Segment file and its mapping.
+     */
+    private static final class Segment {
+
+        private final int id;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer map;
+
+        /**
+         * Offset at which the next record is appended.
+         */
+        private int position;
+
+        /**
+         * Total size of the records of the segment in the index, in bytes.
+         */
+        private int live;
+
+        Segment(int id, FileChannel channel, MappedByteBuffer map) {
+            this.id = id;
+            this.channel = channel;
+            this.map = map;
+        }
+
+    }
+
+}
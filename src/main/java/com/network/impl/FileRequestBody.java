@@ -0,0 +1,43 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.IHTTPRequestBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Request body streamed from a file.
+ */
+public class FileRequestBody implements IHTTPRequestBody {
+
+    private final Path file;
+
+    private final long length;
+
+    /**
+     * @param file File holding the body.
+     * @throws IOException If the size of the file could not be read.
+     */
+    public FileRequestBody(Path file) throws IOException {
+        this.file = file;
+        this.length = Files.size(file);
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        Files.copy(this.file, out);
+    }
+
+    @Override
+    public boolean isReplayable() {
+        return true;
+    }
+
+}
@@ -0,0 +1,52 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.IHTTPRequestBody;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request body compressed with gzip while it is being written.
+ * The compressed length is not known upfront, so it is sent chunked.
+ */
+public class GzipRequestBody implements IHTTPRequestBody {
+
+    private final IHTTPRequestBody body;
+
+    /**
+     * @param body Uncompressed body.
+     */
+    public GzipRequestBody(IHTTPRequestBody body) {
+        this.body = body;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                //The connection stays open.
+            }
+        }, 8192);
+        this.body.writeTo(gzip);
+        gzip.finish();
+    }
+
+    @Override
+    public boolean isReplayable() {
+        return this.body.isReplayable();
+    }
+
+}
@@ -0,0 +1,442 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPHeaders;
+import main.java.com.references.NetworkReferences;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Reads and writes HTTP/1.1 messages on a raw connection.
+ */
+final class HTTP1Codec {
+
+    private static final String CRLF = "\r\n";
+
+    /**
+     * Headers framing the message on the connection, only ever written by the codec.
+     */
+    private static final String[] FRAMING_HEADERS = {"Content-Length", "Transfer-Encoding", "Connection"};
+
+    private HTTP1Codec() {
+    }
+
+    /**
+     * Writes the request line and the request headers.
+     * A Host header of the caller replaces the one derived from the URL,
+     * while the framing headers are left to the codec.
+     *
+     * @param out           Output stream of the connection.
+     * @param method        HTTP method of the request.
+     * @param url           URL of the request.
+     * @param headers       Map of request headers.
+     * @param contentLength Length of the request body, -1 if there is no body or it is chunked.
+     * @param chunked       Whether the body is sent with chunked transfer encoding.
+     * @throws IOException              If the connection could not be written to.
+     * @throws IllegalArgumentException If the request line or a header holds a line break,
+     *                                  which would let it inject headers or a second request.
+     */
+    static void writeRequestHead(OutputStream out, String method, URL url, Map<String, String> headers,
+                                 long contentLength, boolean chunked) throws IOException {
+        StringBuilder head = new StringBuilder(256);
+        String file = url.getFile();
+        checkLine(method, "Method");
+        checkLine(file, "Request target");
+        head.append(method).append(' ').append(file.length() == 0 ? "/" : file).append(" HTTP/1.1").append(CRLF);
+        if (!containsKey(headers, "Host")) {
+            head.append("Host: ").append(url.getHost());
+            if (url.getPort() != -1)
+                head.append(':').append(url.getPort());
+            head.append(CRLF);
+        }
+        if (!containsKey(headers, "User-Agent"))
+            head.append("User-Agent: ").append(NetworkReferences.USER_AGENT).append(CRLF);
+        if (!containsKey(headers, "Accept"))
+            head.append("Accept: */*").append(CRLF);
+        if (!containsKey(headers, "Accept-Encoding"))
+            head.append("Accept-Encoding: ").append(NetworkReferences.ACCEPT_ENCODING).append(CRLF);
+
+        Iterator<Entry<String, String>> iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            if (isFramingHeader(entry.getKey()))
+                continue;
+            checkLine(entry.getKey(), "Header name");
+            checkLine(entry.getValue(), "Value of header " + entry.getKey());
+            head.append(entry.getKey()).append(": ").append(entry.getValue()).append(CRLF);
+        }
+        if (chunked)
+            head.append("Transfer-Encoding: chunked").append(CRLF);
+        else if (contentLength >= 0)
+            head.append("Content-Length: ").append(contentLength).append(CRLF);
+        head.append(CRLF);
+
+        out.write(head.toString().getBytes("ISO-8859-1"));
+    }
+
+    /**
+     * Reads the status line and the response headers of the final response.
+     * Interim 1xx responses, such as 100 Continue or 103 Early Hints, are
+     * skipped, except 101 Switching Protocols which ends the exchange.
+     *
+     * @param in Input stream of the connection.
+     * @return Parsed response head.
+     * @throws IOException If the response head is malformed or could not be read.
+     */
+    static ResponseHead readResponseHead(InputStream in) throws IOException {
+        for (; ; ) {
+            ResponseHead head = readHead(in);
+            if (head.getStatus() >= 200 || head.getStatus() == 101)
+                return head;
+        }
+    }
+
+    private static ResponseHead readHead(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null)
+            throw new EOFException("Connection closed before the response was received.");
+
+        //HTTP/1.1 200 OK
+        int first = statusLine.indexOf(' ');
+        if (first == -1 || !statusLine.startsWith("HTTP/"))
+            throw new ProtocolException("Malformed status line: " + statusLine);
+        int second = statusLine.indexOf(' ', first + 1);
+        int status;
+        try {
+            status = Integer.parseInt(second == -1 ? statusLine.substring(first + 1)
+                    : statusLine.substring(first + 1, second));
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed status line: " + statusLine);
+        }
+
+        ResponseHead head = new ResponseHead(statusLine.substring(0, first), status);
+        String line;
+        for (int count = 0; (line = readLine(in)) != null && line.length() != 0; count++) {
+            if (count == NetworkReferences.MAX_RESPONSE_HEADERS)
+                throw new ProtocolException("Response has more than " + NetworkReferences.MAX_RESPONSE_HEADERS
+                        + " headers.");
+            int colon = line.indexOf(':');
+            if (colon == -1)
+                continue;
+            head.addHeader(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        return head;
+    }
+
+    /**
+     * @param in Input stream to read from.
+     * @return Line without the line terminator, null at end of stream.
+     * @throws IOException If the stream could not be read, or the line is longer than
+     *                     {@value NetworkReferences#MAX_HEADER_LINE_LENGTH} characters.
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r')
+                    line.setLength(length - 1);
+                return line.toString();
+            }
+            if (line.length() == NetworkReferences.MAX_HEADER_LINE_LENGTH)
+                throw new ProtocolException("Line longer than " + NetworkReferences.MAX_HEADER_LINE_LENGTH
+                        + " characters.");
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * @param text Part of the request head.
+     * @param what Description of the part, for the error message.
+     * @throws IllegalArgumentException If the part holds a CR or LF.
+     */
+    private static void checkLine(String text, String what) {
+        if (text == null)
+            return;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n')
+                throw new IllegalArgumentException(what + " holds a line break at position " + i + ".");
+        }
+    }
+
+    private static boolean isFramingHeader(String key) {
+        for (int i = 0; i < FRAMING_HEADERS.length; i++)
+            if (FRAMING_HEADERS[i].equalsIgnoreCase(key))
+                return true;
+        return false;
+    }
+
+    private static boolean containsKey(Map<String, String> headers, String key) {
+        Iterator<String> iter = headers.keySet().iterator();
+        while (iter.hasNext())
+            if (iter.next().equalsIgnoreCase(key))
+                return true;
+        return false;
+    }
+
+    /**
+     * Status line and headers of a response.
+     */
+    static final class ResponseHead {
+
+        private final String protocol;
+        private final int status;
+        private final HTTPHeaders headers = new HTTPHeaders();
+
+        ResponseHead(String protocol, int status) {
+            this.protocol = protocol;
+            this.status = status;
+        }
+
+        void addHeader(String key, String value) {
+            this.headers.add(key, value);
+        }
+
+        String getProtocol() {
+            return this.protocol;
+        }
+
+        int getStatus() {
+            return this.status;
+        }
+
+        HTTPHeaders getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * @param key HTTP header key, matched case insensitively.
+         * @return First value of the header, null if not present.
+         */
+        String getHeader(String key) {
+            return this.headers.get(key);
+        }
+
+        /**
+         * @param method HTTP method of the request.
+         * @return Whether the response carries a message body.
+         */
+        boolean hasBody(String method) {
+            return !"HEAD".equals(method) && this.status >= 200 && this.status != 204 && this.status != 304;
+        }
+
+        /**
+         * @return Whether the server allows the connection to be reused.
+         */
+        boolean isKeepAlive() {
+            String connection = getHeader("Connection");
+            if ("HTTP/1.0".equals(this.protocol))
+                return connection != null && connection.equalsIgnoreCase("keep-alive");
+            return connection == null || !connection.equalsIgnoreCase("close");
+        }
+
+        /**
+         * @return Whether the response body uses chunked transfer encoding.
+         */
+        boolean isChunked() {
+            String encoding = getHeader("Transfer-Encoding");
+            return encoding != null && encoding.toLowerCase().contains("chunked");
+        }
+
+        /**
+         * @return Value of the Content-Length header, -1 if absent or malformed.
+         */
+        long getContentLength() {
+            String length = getHeader("Content-Length");
+            if (length == null)
+                return -1;
+            try {
+                return Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+    }
+
+    /**
+     * Input stream which reads a body of known length.
+     */
+    static final class FixedLengthInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0)
+                return -1;
+            int b = this.in.read();
+            if (b == -1)
+                throw new EOFException("Connection closed with " + this.remaining + " bytes remaining.");
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining <= 0)
+                return -1;
+            int read = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (read == -1)
+                throw new EOFException("Connection closed with " + this.remaining + " bytes remaining.");
+            this.remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(this.in.available(), this.remaining);
+        }
+
+        /**
+         * The underlying connection is owned by the pool, so it is not closed here.
+         */
+        @Override
+        public void close() {
+        }
+
+    }
+
+    /**
+     * Input stream which decodes a body sent with chunked transfer encoding.
+     */
+    static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+        private boolean eof;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk())
+                return -1;
+            int b = this.in.read();
+            if (b == -1)
+                throw new EOFException("Connection closed in the middle of a chunk.");
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!ensureChunk())
+                return -1;
+            int read = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (read == -1)
+                throw new EOFException("Connection closed in the middle of a chunk.");
+            this.remaining -= read;
+            return read;
+        }
+
+        /**
+         * @return False once the last chunk and the trailers have been read.
+         */
+        private boolean ensureChunk() throws IOException {
+            if (this.eof)
+                return false;
+            if (this.remaining > 0)
+                return true;
+
+            String line = readLine(this.in);
+            //CRLF terminating the previous chunk.
+            if (line != null && line.length() == 0)
+                line = readLine(this.in);
+            if (line == null)
+                throw new EOFException("Connection closed before the last chunk.");
+
+            int extension = line.indexOf(';');
+            try {
+                this.remaining = Long.parseLong((extension == -1 ? line : line.substring(0, extension)).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Malformed chunk size: " + line);
+            }
+
+            if (this.remaining == 0) {
+                //Skip the trailers.
+                String trailer;
+                for (int count = 0; (trailer = readLine(this.in)) != null && trailer.length() != 0; count++)
+                    if (count == NetworkReferences.MAX_RESPONSE_HEADERS)
+                        throw new ProtocolException("Response has more than "
+                                + NetworkReferences.MAX_RESPONSE_HEADERS + " trailers.");
+                this.eof = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * The underlying connection is owned by the pool, so it is not closed here.
+         */
+        @Override
+        public void close() {
+        }
+
+    }
+
+    /**
+     * Output stream which frames everything written to it as chunks.
+     * Closing it writes the last chunk but leaves the connection open.
+     */
+    static final class ChunkedOutputStream extends OutputStream {
+
+        private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+        private static final byte[] CRLF_BYTES = {'\r', '\n'};
+
+        private final OutputStream out;
+        private boolean closed;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+            this.out.write(Integer.toHexString(len).getBytes("ISO-8859-1"));
+            this.out.write(CRLF_BYTES);
+            this.out.write(b, off, len);
+            this.out.write(CRLF_BYTES);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.out.write(LAST_CHUNK);
+        }
+
+    }
+
+}
@@ -1,26 +1,44 @@
 package main.java.com.network.impl;
 
+import main.java.com.network.BatchResult;
+import main.java.com.network.DownloadResult;
+import main.java.com.network.HTTPCallException;
 import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IBatchResultHandler;
 import main.java.com.network.IHTTPCallActions;
+import main.java.com.network.IHTTPRequestBody;
 import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
 import main.java.com.utilities.Logger;
 
-import javax.net.ssl.*;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility to make HTTP calls.
  * The following methods are supported: GET, PUT, POST, DELETE.
- * The calls also handle certificate errors.
+ * Certificate errors are handled by the TLSContextManager of the transport.
+ * Requests are put on the wire by a pluggable transport, which by default
+ * keeps connections alive in a per-route pool.
  */
 public class HTTPCallActions implements IHTTPCallActions {
 
@@ -29,6 +47,53 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     private static Logger LOGGER = Logger.getRootLogger();
 
+    /**
+     * Transport used to put the requests on the wire.
+     */
+    private final IHTTPTransport transport;
+
+    /**
+     * Executor on which the asynchronous calls are run.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Size from which POST and PUT bodies are gzip compressed, -1 to disable.
+     */
+    private volatile long requestCompressionThreshold = NetworkReferences.DEFAULT_REQUEST_COMPRESSION_THRESHOLD;
+
+    /**
+     * HTTP call actions constructor backed by a keep-alive connection pool.
+     */
+    public HTTPCallActions() {
+        this(new PooledHTTPTransport());
+    }
+
+    /**
+     * HTTP call actions constructor.
+     * Asynchronous calls run on a virtual thread each on JDK 21 and later, unless
+     * the NetworkReferences.VIRTUAL_THREADS_PROPERTY system property is set to
+     * false. Otherwise they share a fixed pool of NetworkReferences.DEFAULT_ASYNC_THREADS
+     * platform threads, so calls beyond that wait in its queue instead of each
+     * holding a platform thread, but they are not all in flight at once.
+     *
+     * @param transport Transport used to put the requests on the wire.
+     */
+    public HTTPCallActions(IHTTPTransport transport) {
+        this(transport, ExecutorHolder.EXECUTOR);
+    }
+
+    /**
+     * HTTP call actions constructor.
+     *
+     * @param transport Transport used to put the requests on the wire.
+     * @param executor  Executor on which the asynchronous calls are run.
+     */
+    public HTTPCallActions(IHTTPTransport transport, ExecutorService executor) {
+        this.transport = transport;
+        this.executor = executor;
+    }
+
     public static IHTTPCallActions getInstance() {
         return Holder.INSTANCE;
     }
@@ -42,7 +107,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makeGetCall(String url, String parameters, String cookieValue) {
-        return core.makeGetCall(url, parameters, cookieValue);
+        return execute(core.getSpec(url, parameters, cookieValue));
     }
 
     /**
@@ -52,7 +117,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makeGetCall(String url, String parameters) {
-        return core.makeGetCall(url, parameters, null);
+        return execute(core.getSpec(url, parameters, null));
     }
 
     /**
@@ -61,7 +126,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makeGetCall(String url) {
-        return core.makeGetCall(url, null, null);
+        return execute(core.getSpec(url, null, null));
     }
 
     /**
@@ -73,7 +138,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makePostCall(String url, String parameters, String cookieValue) {
-        return core.makePostCall(url, parameters, cookieValue);
+        return execute(core.postSpec(url, parameters, cookieValue));
     }
 
     /**
@@ -83,7 +148,20 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makePostCall(String url, String parameters) {
-        return core.makePostCall(url, parameters, null);
+        return execute(core.postSpec(url, parameters, null));
+    }
+
+    /**
+     * @param url         URL on which the POST request will be made, without the parameters.
+     * @param body        Request body, streamed to the connection.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object.
+     */
+    @Override
+    public IHTTPResponse makePostCall(String url, IHTTPRequestBody body, String cookieValue) {
+        LOGGER.info("POST call: " + url + "\nBody length: " + body.getContentLength());
+        return execute(core.postSpec(url, body, cookieValue));
     }
 
     /**
@@ -95,7 +173,20 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makePutCall(String url, String parameters, String cookieValue) {
-        return core.makePutCall(url, parameters, cookieValue);
+        return execute(core.putSpec(url, parameters, cookieValue));
+    }
+
+    /**
+     * @param url         URL on which the PUT request will be made, without the parameters.
+     * @param body        Request body, streamed to the connection.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object.
+     */
+    @Override
+    public IHTTPResponse makePutCall(String url, IHTTPRequestBody body, String cookieValue) {
+        LOGGER.info("PUT call: " + url + "\nBody length: " + body.getContentLength());
+        return execute(core.putSpec(url, body, cookieValue));
     }
 
     /**
@@ -105,7 +196,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makePutCall(String url, String parameters) {
-        return core.makePutCall(url, parameters, null);
+        return execute(core.putSpec(url, parameters, null));
     }
 
     /**
@@ -116,7 +207,7 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makeDeleteCall(String url, String cookieValue) {
-        return core.makeDeleteCall(url, cookieValue);
+        return execute(core.deleteSpec(url, cookieValue));
     }
 
     /**
@@ -125,7 +216,392 @@ public class HTTPCallActions implements IHTTPCallActions {
      */
     @Override
     public IHTTPResponse makeDeleteCall(String url) {
-        return core.makeDeleteCall(url, null);
+        return execute(core.deleteSpec(url, null));
+    }
+
+    /**
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return HTTP response object whose body is left unread.
+     */
+    @Override
+    public IHTTPResponse makeStreamingGetCall(String url, String parameters, String cookieValue) {
+        HTTPRequestSpec spec = core.getSpec(url, parameters, cookieValue);
+        spec.setStreamResponse(true);
+        return execute(spec);
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     */
+    @Override
+    public IHTTPResponse makeCall(HTTPRequestSpec spec) {
+        LOGGER.info(spec.getMethod() + " call: " + spec.getUrl());
+        return execute(spec);
+    }
+
+    /**
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @param target      File to write the body to.
+     * @return Status, bytes written and throughput of the download.
+     * @throws IOException If the file could not be written.
+     */
+    @Override
+    public DownloadResult download(String url, String parameters, String cookieValue, Path target)
+            throws IOException {
+        //The body goes to a file next to the target, which is only replaced once the whole body is in.
+        Path directory = target.toAbsolutePath().getParent();
+        Path partial = Files.createTempFile(directory, target.getFileName().toString(), ".part");
+        boolean moved = false;
+        try {
+            DownloadResult result;
+            FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE);
+            try {
+                result = download(url, parameters, cookieValue, channel);
+            } finally {
+                channel.close();
+            }
+            int status = result.getStatusCode();
+            if (status >= 200 && status < 300) {
+                move(partial, target);
+                moved = true;
+            }
+            return result;
+        } finally {
+            if (!moved)
+                Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * @param source File to move.
+     * @param target File to replace, atomically where the file system allows it.
+     * @throws IOException If the file could not be moved.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The body is moved with FileChannel.transferFrom, so it is never decoded
+     * and only a bounded transfer buffer is used whatever its size.
+     *
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @param target      Channel to write the body to. It is not closed.
+     * @return Status, bytes written and throughput of the download.
+     * @throws IOException If the channel could not be written.
+     */
+    @Override
+    public DownloadResult download(String url, String parameters, String cookieValue, FileChannel target)
+            throws IOException {
+        HTTPRequestSpec spec = core.getSpec(url, parameters, cookieValue);
+        spec.setStreamResponse(true);
+        IHTTPResponse response = execute(spec);
+
+        int status = response.getStatusCode();
+        if (status < 200 || status >= 300) {
+            LOGGER.warn("Download skipped, status " + status + " for " + spec.getUrl());
+            response.close();
+            return new DownloadResult(response, 0, 0);
+        }
+
+        long start = System.nanoTime();
+        long position = target.position();
+        long written = 0;
+        ReadableByteChannel body = response.getBodyChannel();
+        try {
+            long transferred;
+            while ((transferred = target.transferFrom(body, position + written,
+                    NetworkReferences.DOWNLOAD_TRANSFER_SIZE)) > 0)
+                written += transferred;
+        } finally {
+            body.close();
+        }
+        target.position(position + written);
+
+        DownloadResult result = new DownloadResult(response, written, System.nanoTime() - start);
+        LOGGER.info("Downloaded " + written + " bytes from " + spec.getUrl() + " in "
+                + result.getElapsedMillis() + " ms");
+        return result;
+    }
+
+    /**
+     * @param url         URL on which the GET request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    @Override
+    public CompletableFuture<IHTTPResponse> makeGetCallAsync(String url, String parameters, String cookieValue) {
+        return submit(core.getSpec(url, parameters, cookieValue));
+    }
+
+    /**
+     * @param url URL on which the GET request will be made, without the parameters.
+     * @return Future HTTP response object.
+     */
+    @Override
+    public CompletableFuture<IHTTPResponse> makeGetCallAsync(String url) {
+        return submit(core.getSpec(url, null, null));
+    }
+
+    /**
+     * @param url         URL on which the POST request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    @Override
+    public CompletableFuture<IHTTPResponse> makePostCallAsync(String url, String parameters, String cookieValue) {
+        return submit(core.postSpec(url, parameters, cookieValue));
+    }
+
+    /**
+     * @param url         URL on which the PUT request will be made, without the parameters.
+     * @param parameters  String parameters to be passed on in the request.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    @Override
+    public CompletableFuture<IHTTPResponse> makePutCallAsync(String url, String parameters, String cookieValue) {
+        return submit(core.putSpec(url, parameters, cookieValue));
+    }
+
+    /**
+     * @param url         URL on which the DELETE request will be made, without the parameters.
+     * @param cookieValue Cookie data in a string format. This format is
+     *                    similar to that of request parameters.
+     * @return Future HTTP response object.
+     */
+    @Override
+    public CompletableFuture<IHTTPResponse> makeDeleteCallAsync(String url, String cookieValue) {
+        return submit(core.deleteSpec(url, cookieValue));
+    }
+
+    /**
+     * Runs a batch of requests, at most maxConcurrency of them at a time.
+     * A failing request does not abort the others, its failure is reported
+     * in its result instead.
+     * If the calling thread is interrupted, no further requests are started and
+     * the results of the requests that did not complete are null.
+     *
+     * @param specs          Descriptions of the requests to be made.
+     * @param maxConcurrency Maximum number of requests in flight.
+     * @return Results in the same order as the requests.
+     */
+    @Override
+    public List<BatchResult> makeBatchCall(List<HTTPRequestSpec> specs, int maxConcurrency) {
+        final BatchResult[] results = new BatchResult[specs.size()];
+        makeBatchCall(specs, maxConcurrency, new IBatchResultHandler() {
+            @Override
+            public void onResult(BatchResult result) {
+                results[result.getIndex()] = result;
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Runs a batch of requests, at most maxConcurrency of them at a time,
+     * and hands the results over as they complete.
+     * The requests run on threads of their own rather than on the executor of
+     * the asynchronous calls, so a batch started from an asynchronous call
+     * cannot wait on workers queued behind it. They share the transport, so
+     * connections are reused across the batch.
+     * If the calling thread is interrupted, no further requests are started and
+     * the call returns without waiting for the ones in flight.
+     *
+     * @param specs          Descriptions of the requests to be made.
+     * @param maxConcurrency Maximum number of requests in flight.
+     * @param handler        Callback receiving the results in completion order.
+     */
+    @Override
+    public void makeBatchCall(final List<HTTPRequestSpec> specs, int maxConcurrency, IBatchResultHandler handler) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("Max concurrency has to be positive: " + maxConcurrency);
+
+        final int size = specs.size();
+        final long start = System.nanoTime();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final BlockingQueue<BatchResult> completed = new LinkedBlockingQueue<BatchResult>();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while (!stopped.get() && (index = next.getAndIncrement()) < size)
+                    completed.add(runBatchItem(index, specs.get(index), start));
+            }
+        };
+
+        int workers = Math.min(maxConcurrency, size);
+        int started = 0;
+        for (int i = 0; i < workers; i++) {
+            try {
+                BatchExecutorHolder.EXECUTOR.execute(worker);
+                started++;
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Batch worker rejected by the executor, running with " + started + " workers.");
+                break;
+            }
+        }
+        if (started == 0 && size > 0)
+            worker.run();
+
+        LOGGER.info("Batch of " + size + " requests with " + Math.max(started, 1) + " workers.");
+        int received = 0;
+        try {
+            for (; received < size; received++)
+                handler.onResult(completed.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Batch interrupted after " + received + " of " + size + " requests.");
+        } finally {
+            if (received < size)
+                stopped.set(true);
+        }
+    }
+
+    /**
+     * Enables gzip compression of request bodies. Bodies of unknown length
+     * are compressed too, since they are typically large uploads.
+     *
+     * @param threshold Size in bytes from which bodies are compressed, -1 to disable.
+     */
+    public void setRequestCompressionThreshold(long threshold) {
+        this.requestCompressionThreshold = threshold;
+    }
+
+    /**
+     * @return Transport used to put the requests on the wire.
+     */
+    public IHTTPTransport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws HTTPCallException If the request could not be completed.
+     */
+    private IHTTPResponse execute(HTTPRequestSpec spec) {
+        compressBody(spec);
+
+        IHTTPResponse response;
+        try {
+            response = this.transport.execute(spec);
+        } catch (MalformedURLException e) {
+            LOGGER.error("Improper URL: " + spec.getUrl(), e);
+            throw new IllegalArgumentException("Improper URL: " + spec.getUrl(), e);
+        } catch (IOException e) {
+            LOGGER.error("Unable to connect to host.", e);
+            throw new HTTPCallException("Unable to complete " + spec, e);
+        } catch (UncheckedIOException e) {
+            LOGGER.error("Unable to read the response.", e.getCause());
+            throw new HTTPCallException("Unable to complete " + spec, e.getCause());
+        }
+
+        //Only decode the body for logging if it is going to be logged.
+        if (!spec.isStreamResponse() && LOGGER.isDebugEnabled()) {
+            if ("GET".equals(spec.getMethod()))
+                LOGGER.debug("Raw response: " + response.getRawResponse());
+            LOGGER.debug("Body bytes on wire: " + response.getBodyBytesOnWire()
+                    + ", decoded: " + response.getBodyBytesDecoded());
+        }
+        return response;
+    }
+
+    /**
+     * Wraps the body of the request in gzip if it reaches the compression threshold.
+     *
+     * @param spec Description of the request to be made.
+     */
+    private void compressBody(HTTPRequestSpec spec) {
+        IHTTPRequestBody body = spec.getBody();
+        long threshold = this.requestCompressionThreshold;
+        if (body == null || threshold < 0 || body instanceof GzipRequestBody)
+            return;
+        long length = body.getContentLength();
+        if (length >= 0 && length < threshold)
+            return;
+        spec.setBody(new GzipRequestBody(body));
+        spec.setHeader("Content-Encoding", "gzip");
+    }
+
+    /**
+     * Runs the request on the executor.
+     * Failures are reported by completing the future exceptionally with the
+     * exception the transport threw, where the blocking calls rethrow an
+     * IOException as an HTTPCallException. The request runs under a
+     * deadline of its own, derived from the one of the spec, which cancelling
+     * the future cancels so that the transport aborts the blocked socket.
+     * A response arriving after the future was cancelled is closed.
+     *
+     * @param spec Description of the request to be made.
+     * @return Future HTTP response object.
+     */
+    private CompletableFuture<IHTTPResponse> submit(final HTTPRequestSpec spec) {
+        compressBody(spec);
+        final AsyncCall<IHTTPResponse> call = new AsyncCall<IHTTPResponse>(spec.getDeadline());
+        spec.setDeadline(call.getDeadline());
+        try {
+            call.setTask(this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (call.isDone())
+                        return;
+                    try {
+                        IHTTPResponse response = transport.execute(spec);
+                        if (!call.complete(response))
+                            response.close();
+                    } catch (Throwable e) {
+                        call.completeExceptionally(e);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            call.completeExceptionally(e);
+        }
+        return call;
+    }
+
+    /**
+     * Runs one request of a batch, capturing its failure instead of propagating it.
+     *
+     * @param index Position of the request in the batch.
+     * @param spec  Description of the request to be made.
+     * @param start Time the batch started, in System.nanoTime units.
+     * @return Outcome of the request.
+     */
+    private BatchResult runBatchItem(int index, HTTPRequestSpec spec, long start) {
+        long begin = System.nanoTime();
+        IHTTPResponse response = null;
+        Throwable failure = null;
+        try {
+            compressBody(spec);
+            response = this.transport.execute(spec);
+        } catch (Throwable e) {
+            LOGGER.debug("Batch request #" + index + " failed: " + spec, e);
+            failure = e;
+        }
+        return new BatchResult(index, spec, response, failure, begin - start, System.nanoTime() - begin);
     }
 
     /**
@@ -135,6 +611,26 @@ public class HTTPCallActions implements IHTTPCallActions {
         private static final IHTTPCallActions INSTANCE = new HTTPCallActions();
     }
 
+    /**
+     * Holder class for the default executor of asynchronous calls,
+     * created only once an instance is constructed without an explicit executor.
+     * It starts a virtual thread per call when they are enabled, as they are by
+     * default on JDK 21 and later.
+     */
+    private final static class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = VirtualThreads.newCallExecutor("http-async-",
+                NetworkReferences.DEFAULT_ASYNC_THREADS);
+    }
+
+    /**
+     * Holder class for the executor of batch workers, kept apart from the one of
+     * the asynchronous calls. It starts a thread per worker, the number of which
+     * is bounded by the concurrency of each batch.
+     */
+    private final static class BatchExecutorHolder {
+        private static final ExecutorService EXECUTOR = VirtualThreads.newPerTaskExecutor("http-batch-");
+    }
+
     private static class core {
 
         /**
@@ -142,42 +638,17 @@ public class HTTPCallActions implements IHTTPCallActions {
          * @param parameters  String parameters to be passed on in the request.
          * @param cookieValue Cookie data in a string format. This format is
          *                    similar to that of request parameters.
-         * @return HTTP response object.
+         * @return Description of the GET request.
          */
-        private static IHTTPResponse makeGetCall(String getUrl, String parameters, String cookieValue) {
-            handleCertificateErrors();
-
+        private static HTTPRequestSpec getSpec(String getUrl, String parameters, String cookieValue) {
             if (parameters != null)
                 getUrl = getUrl + "?" + parameters;
 
             LOGGER.info("GET call: " + getUrl);
 
-            URL url = null;
-            try {
-                url = new URL(getUrl);
-            } catch (MalformedURLException e) {
-                LOGGER.error("Improper URL", e);
-                System.out.println("ERROR: Improper URL: " + getUrl);
-                System.exit(1);
-            }
-
-            HttpURLConnection connection = null;
-            try {
-                connection = (HttpURLConnection) url.openConnection();
-            } catch (IOException e) {
-                LOGGER.error("Unable to connect to host.", e);
-                System.out.println("ERROR: Unable to connect to host.");
-                System.exit(1);
-            }
-
-            if (cookieValue != null) {
-                if (cookieValue.length() != 0)
-                    connection.setRequestProperty("Cookie", cookieValue);
-            }
-
-            IHTTPResponse response = HTTPFactory.getHTTPResponse(connection);
-            LOGGER.info("Raw response: " + response.getRawResponse());
-            return response;
+            HTTPRequestSpec spec = new HTTPRequestSpec("GET", getUrl);
+            spec.setCookie(cookieValue);
+            return spec;
         }
 
         /**
@@ -185,63 +656,28 @@ public class HTTPCallActions implements IHTTPCallActions {
          * @param parameters  String parameters to be passed on in the request.
          * @param cookieValue Cookie data in a string format. This format is
          *                    similar to that of request parameters.
-         * @return HTTP response object.
+         * @return Description of the POST request.
          */
-        private static IHTTPResponse makePostCall(String postUrl, String parameters, String cookieValue) {
-            handleCertificateErrors();
-
+        private static HTTPRequestSpec postSpec(String postUrl, String parameters, String cookieValue) {
             LOGGER.info("POST call: " + postUrl + "\nParams: " + parameters);
+            return postSpec(postUrl, HTTPFactory.getRequestBody(parameters), cookieValue);
+        }
 
-            URL url = null;
-            try {
-                url = new URL(postUrl);
-            } catch (MalformedURLException e) {
-                LOGGER.error("Improper URL", e);
-                System.out.println("ERROR: Improper URL: " + postUrl);
-                System.exit(1);
-            }
-
-            HttpURLConnection connection = null;
-            try {
-                connection = (HttpURLConnection) url.openConnection();
-            } catch (IOException e) {
-                LOGGER.error("Unable to connect to host.", e);
-                System.out.println("ERROR: Unable to connect to host.");
-                System.exit(1);
-            }
-
-            if (cookieValue != null) {
-                if (cookieValue.length() != 0)
-                    connection.setRequestProperty("Cookie", cookieValue);
-            }
-
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.setInstanceFollowRedirects(false);
-            try {
-                connection.setRequestMethod("POST");
-            } catch (ProtocolException e) {
-                LOGGER.error("Protocol Exception", e);
-                System.out.println("ERROR: Protocol excetion.");
-                System.exit(1);
-            }
-            //connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("charset", "utf-8");
-            connection.setRequestProperty("Content-Length", "" + Integer.toString(parameters.getBytes().length));
-            connection.setUseCaches(false);
-
-            try {
-                DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-                wr.writeBytes(parameters);
-                wr.flush();
-                wr.close();
-            } catch (IOException e) {
-                LOGGER.error("Unable to write request parameter.", e);
-                System.out.println("ERROR: Unable to write request parameters.");
-                System.exit(1);
-            }
-
-            return HTTPFactory.getHTTPResponse(connection);
+        /**
+         * @param postUrl     URL to which the POST call will be made.
+         * @param body        Request body.
+         * @param cookieValue Cookie data in a string format. This format is
+         *                    similar to that of request parameters.
+         * @return Description of the POST request.
+         */
+        private static HTTPRequestSpec postSpec(String postUrl, IHTTPRequestBody body, String cookieValue) {
+            HTTPRequestSpec spec = new HTTPRequestSpec("POST", postUrl);
+            spec.setCookie(cookieValue);
+            spec.setFollowRedirects(false);
+            //spec.setHeader("Content-Type", "application/json");
+            spec.setHeader("charset", "utf-8");
+            spec.setBody(body);
+            return spec;
         }
 
         /**
@@ -249,146 +685,41 @@ public class HTTPCallActions implements IHTTPCallActions {
          * @param parameters  String parameters to be passed on in the request.
          * @param cookieValue Cookie data in a string format. This format is
          *                    similar to that of request parameters.
-         * @return HTTP response object.
+         * @return Description of the PUT request.
          */
-        private static IHTTPResponse makePutCall(String putUrl, String parameters, String cookieValue) {
-            handleCertificateErrors();
-
+        private static HTTPRequestSpec putSpec(String putUrl, String parameters, String cookieValue) {
             LOGGER.info("PUT call: " + putUrl + "\nParams: " + parameters);
-            URL url = null;
-            try {
-                url = new URL(putUrl);
-            } catch (MalformedURLException e) {
-                LOGGER.error("Improper URL", e);
-                System.out.println("ERROR: Improper URL: " + putUrl);
-                System.exit(1);
-            }
-
-            HttpURLConnection connection = null;
-            try {
-                connection = (HttpURLConnection) url.openConnection();
-            } catch (IOException e) {
-                LOGGER.error("Unable to connect to host.", e);
-                System.out.println("ERROR: Unable to connect to host.");
-                System.exit(1);
-            }
-
-            if (cookieValue != null) {
-                if (cookieValue.length() != 0)
-                    connection.setRequestProperty("Cookie", cookieValue);
-            }
-
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-            try {
-                connection.setRequestMethod("PUT");
-            } catch (ProtocolException e) {
-                LOGGER.error("Protocol Exception", e);
-                System.out.println("ERROR: Protocol excetion.");
-                System.exit(1);
-            }
-
-            OutputStreamWriter out;
-            try {
-                out = new OutputStreamWriter(connection.getOutputStream());
-                out.write(parameters);
-                out.close();
-            } catch (IOException e) {
-                LOGGER.error("Unable to write request parameter.", e);
-                System.out.println("ERROR: Unable to write request parameters.");
-                System.exit(1);
-            }
-
-            return HTTPFactory.getHTTPResponse(connection);
+            return putSpec(putUrl, HTTPFactory.getRequestBody(parameters), cookieValue);
         }
 
         /**
-         * @param deleteUrl   URL to which the delete call will be made.
+         * @param putUrl      URL to which the PUT call will be made.
+         * @param body        Request body.
          * @param cookieValue Cookie data in a string format. This format is
          *                    similar to that of request parameters.
-         * @return String HTTP response.
+         * @return Description of the PUT request.
          */
-        private static IHTTPResponse makeDeleteCall(String deleteUrl, String cookieValue) {
-            handleCertificateErrors();
-
-            LOGGER.info("DELETE call: " + deleteUrl);
-            URL url = null;
-            try {
-                url = new URL(deleteUrl);
-            } catch (MalformedURLException e) {
-                LOGGER.error("Improper URL", e);
-                System.out.println("ERROR: Improper URL: " + deleteUrl);
-                System.exit(1);
-            }
-
-            HttpURLConnection connection = null;
-            try {
-                connection = (HttpURLConnection) url.openConnection();
-            } catch (IOException e) {
-                LOGGER.error("Unable to connect to host.", e);
-                System.out.println("ERROR: Unable to connect to host.");
-                System.exit(1);
-            }
-
-            if (cookieValue != null) {
-                if (cookieValue.length() != 0)
-                    connection.setRequestProperty("Cookie", cookieValue);
-            }
-
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-
-            try {
-                connection.setRequestMethod("DELETE");
-            } catch (ProtocolException e) {
-                LOGGER.error("Protocol Exception", e);
-                System.out.println("ERROR: Protocol excetion.");
-                System.exit(1);
-            }
-            try {
-                connection.connect();
-            } catch (IOException e) {
-                LOGGER.error("Unable to connect to host.", e);
-                System.out.println("ERROR: Unable to connect to host.");
-                System.exit(1);
-            }
-
-            return HTTPFactory.getHTTPResponse(connection);
+        private static HTTPRequestSpec putSpec(String putUrl, IHTTPRequestBody body, String cookieValue) {
+            HTTPRequestSpec spec = new HTTPRequestSpec("PUT", putUrl);
+            spec.setCookie(cookieValue);
+            spec.setHeader("Content-Type", "application/json");
+            spec.setBody(body);
+            return spec;
         }
 
         /**
-         * This method is used to handle certificate errors.
+         * @param deleteUrl   URL to which the delete call will be made.
+         * @param cookieValue Cookie data in a string format. This format is
+         *                    similar to that of request parameters.
+         * @return Description of the DELETE request.
          */
-        private static void handleCertificateErrors() {
-            TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
-
-                public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                }
-
-                public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                }
-            }};
-
-            SSLContext sc = null;
-            try {
-                sc = SSLContext.getInstance("SSL");
-                sc.init(null, trustAllCerts, new java.security.SecureRandom());
-            } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                System.out.println("ERROR: Unable to handle certifcate errors.");
-                LOGGER.error("Unable to handle certifcate errors.", e);
-                System.exit(1);
-            }
+        private static HTTPRequestSpec deleteSpec(String deleteUrl, String cookieValue) {
+            LOGGER.info("DELETE call: " + deleteUrl);
 
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-            HostnameVerifier allHostsValid = new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
-            };
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
+            HTTPRequestSpec spec = new HTTPRequestSpec("DELETE", deleteUrl);
+            spec.setCookie(cookieValue);
+            spec.setHeader("Content-Type", "application/json");
+            return spec;
         }
 
     }
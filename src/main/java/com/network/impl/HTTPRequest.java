@@ -1,35 +1,29 @@
 package main.java.com.network.impl;
 
+import main.java.com.network.HTTPHeaders;
 import main.java.com.network.IHTTPRequest;
 import main.java.com.references.AutomationReferences;
-import main.java.com.utilities.Logger;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Represents a network request.
+ * The URL is only split into its base and parameters when one of them is
+ * first asked for, and parameters are only decoded when read.
   */
 public class HTTPRequest implements IHTTPRequest {
 
     /**
-     * Encoding format to be used to decode the intercepted
-     * network call URLs.
+     * Full URL of the request, as given to the constructor.
      */
-    private final static String ENCODING_FORMAT = "UTF-8";
-    /**
-     * Root logger instance.
-     */
-    private static Logger LOGGER = Logger.getRootLogger();
+    private String url;
+
     /**
-     * Base URL to which the request was made.
-     * The base URL will not caontain any request parameters.
+     * URL split into base and query parameters, null until first needed.
      */
-    private String baseUrl;
+    private ParsedURL parsedUrl;
 
     /**
      * HTTP method of the call - GET, PUT, POST etc.
@@ -42,107 +36,66 @@ public class HTTPRequest implements IHTTPRequest {
     private String protocol;
 
     /**
-     * Map of request headers.
+     * Request headers.
      */
-    private Map<String, String> headers;
+    private HTTPHeaders headers;
 
     /**
-     * Map of request parameters.
+     * Map of request headers as given to the constructor.
      */
-    private Map<String, String> parameters;
+    private Map<String, String> headerMap;
 
     /**
-     * Whether the base URL has been formatted or not.
+     * Map of POST parameters given to the constructor, null to read the parameters from the URL.
      */
-    private boolean updateCompleted = false;
+    private Map<String, String> postData;
+
+    /**
+     * Map of request parameters, built on first use.
+     */
+    private Map<String, String> parameters;
 
     /**
      * HTTP request constructor.
      *
-     * @param url     URL of the request.
-     * @param method  HTTP method of the request.
-     * @param headers Map of request headers.
+     * @param url      URL of the request.
+     * @param method   HTTP method of the request.
+     * @param headers  Map of request headers.
+     * @param postData Map of POST parameters, null to read the parameters from the URL.
      */
     public HTTPRequest(String url, String method, Map<String, String> headers, Map<String, String> postData) {
-        if (method.equals(AutomationReferences.HTTP_POST_METHOD)) {
-            this.parameters = postData;
-            this.baseUrl = url;
-        } else
-            formatURL(url);
-
+        this.url = url;
         this.method = method;
-        if (this.baseUrl.startsWith("https:"))
+        if (method.equals(AutomationReferences.HTTP_POST_METHOD))
+            this.postData = postData;
+        if (url.regionMatches(true, 0, "https:", 0, 6))
             this.protocol = "https";
         else
             this.protocol = "http";
-        this.headers = headers;
+        this.headerMap = headers;
+        this.headers = HTTPHeaders.of(headers);
     }
 
     /**
-     * Splits the input URL into path and request parameters.
-     *
-     * @param url Full URL of the network call.
-     */
-    private void formatURL(String url) {
-        String[] decoded = null;
-
-        try {
-            decoded = URLDecoder.decode(url, ENCODING_FORMAT).split("[?]");
-        } catch (UnsupportedEncodingException e) {
-            LOGGER.error("Unsopported encoding: " + ENCODING_FORMAT, e);
-            System.out.println("ERROR: Unsopported encoding: " + ENCODING_FORMAT);
-            System.exit(1);
-        }
-
-        if (decoded.length > 2) {
-            System.out.println(new HashSet<>(Arrays.asList(decoded)));
-            throw new Error("Logic error.");
-        }
-
-        this.baseUrl = decoded[0];
-        this.updateCompleted = true;
-
-        //Only if the URL actually contains request parameters.
-        if (decoded.length == 2) {
-            String[] pairs = decoded[1].split("[&]");
-            int size = pairs.length;
-            this.parameters = new HashMap<>();
-            for (int i = 0; i < size; i++) {
-                if (pairs[i].indexOf("=") == -1)
-                    throw new Error("Logic error: Parameter does not contain '='\n" + url);
-
-                String[] keyVals = pairs[i].split("[=]");
-
-                if (keyVals.length > 2) {
-                    LOGGER.warn("Logic error: Multiple '=' found in a single argument pair.\n" + url);
-                    LOGGER.warn(new HashSet<>(Arrays.asList(keyVals)).toString());
-                    continue;
-                }
-
-                if (keyVals.length == 1)
-                    this.parameters.put(keyVals[0], "");
-                else
-                    this.parameters.put(keyVals[0], keyVals[1]);
-            }
-        } else
-            this.parameters = new HashMap<>();
+     * @return URL split into base and query parameters.
+     */
+    private ParsedURL parsedUrl() {
+        if (this.parsedUrl == null)
+            this.parsedUrl = ParsedURL.parse(this.url);
+        return this.parsedUrl;
     }
 
     /**
-     * @return Base URL of the request.
+     * @return Base URL of the request, without the query and with percent escapes decoded.
      */
     public String getBaseURL() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
-        return this.baseUrl;
+        return parsedUrl().getBase();
     }
 
     /**
      * @return HTTP method of the request.
      */
     public String getMethod() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
         return this.method;
     }
 
@@ -150,8 +103,6 @@ public class HTTPRequest implements IHTTPRequest {
      * @return HTTP protocol of the request.
      */
     public String getProtocol() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
         return this.protocol;
     }
 
@@ -159,50 +110,61 @@ public class HTTPRequest implements IHTTPRequest {
      * @return Map of all request headers.
      */
     public Map<String, String> getAllHeaders() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
+        return this.headerMap;
+    }
+
+    /**
+     * @return All the request headers.
+     */
+    public HTTPHeaders getHeaders() {
         return this.headers;
     }
 
     /**
-     * @param key HTTP header key
+     * @param key HTTP header key, matched case insensitively.
      * @return HTTP header value of the specified key.
      */
     public String getHeaderByKey(String key) {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
-        if (this.headers.containsKey(key))
-            return this.headers.get(key);
-        return null;
+        return this.headers.get(key);
     }
 
     /**
+     * A parameter repeated in the URL maps to its last value, and
+     * a parameter without value maps to an empty string.
+     *
      * @return Map of all request parameters.
      */
     public Map<String, String> getAllParameters() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
+        if (this.parameters == null)
+            this.parameters = this.postData != null ? this.postData : parsedUrl().toMap();
         return this.parameters;
     }
 
     /**
      * @param key Request parameter key.
-     * @return Parameter value corresponding to the key.
+     * @return Parameter value corresponding to the key, the first one if repeated.
      */
     public String getRequestParameterByKey(String key) {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
-        if (this.parameters.containsKey(key))
-            return this.parameters.get(key);
-        return null;
+        if (this.postData != null)
+            return this.postData.get(key);
+        return parsedUrl().getParameter(key);
+    }
+
+    /**
+     * @param key Request parameter key.
+     * @return Every value of the parameter in URL order, empty if not present.
+     */
+    public List<String> getRequestParameterValues(String key) {
+        if (this.postData == null)
+            return parsedUrl().getParameters(key);
+        String value = this.postData.get(key);
+        return value == null ? Collections.<String>emptyList() : Collections.singletonList(value);
     }
 
     @Override
     public String toString() {
-        if (!this.updateCompleted)
-            formatURL(this.baseUrl);
-        return this.method + " " + this.protocol + " " + this.baseUrl
-                + "\nParameters: " + this.parameters + "\n";
+        return this.method + " " + this.protocol + " " + getBaseURL()
+                + "\nParameters: " + getAllParameters() + "\n";
     }
 
 }
@@ -2,18 +2,25 @@ package main.java.com.network.impl;
 
 
 import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPHeaders;
 import main.java.com.network.IHTTPRequest;
 import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IResponseBodyHandler;
 import main.java.com.references.AutomationReferences;
+import main.java.com.references.NetworkReferences;
 import main.java.com.utilities.Logger;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a network call transaction, both the
@@ -24,9 +31,14 @@ public class HTTPResponse implements IHTTPResponse {
     private static Logger LOGGER = Logger.getRootLogger();
 
     /**
-     * Map of response headers.
+     * Response headers.
      */
-    private Map<String, String> headers;
+    private HTTPHeaders headers;
+
+    /**
+     * Single valued view of the headers, built on first use.
+     */
+    private Map<String, String> headerMap;
 
     /**
      * Status code of the HTTP response.
@@ -39,10 +51,48 @@ public class HTTPResponse implements IHTTPResponse {
     private IHTTPRequest request;
 
     /**
-     * Raw response text of the network call.
+     * Raw response text of the network call, decoded from the body bytes on first use.
      */
     private String rawResponse;
 
+    /**
+     * Body bytes, after undoing any Content-Encoding.
+     */
+    private byte[] bodyBytes;
+
+    /**
+     * Body held outside the heap, such as a disk cache mapping.
+     * It is only copied into bodyBytes when the bytes or the text are asked for.
+     */
+    private ByteBuffer bodyBuffer;
+
+    /**
+     * Body which has not been read yet, only set in streaming mode.
+     */
+    private InputStream body;
+
+    /**
+     * Whether the body has been handed out to the caller.
+     */
+    private boolean bodyConsumed;
+
+    /**
+     * Whether the body is streamed rather than read upfront.
+     */
+    private boolean streaming;
+
+    /**
+     * Decoder of the body, which also keeps the byte counts.
+     */
+    private DecodingInputStream decoder;
+
+    /**
+     * Guards the body, which may be read from the socket while it is held.
+     * A lock rather than a monitor, so a virtual thread reading the body
+     * does not hold on to its carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     /**
      * HTTP response constructor.
      *
@@ -52,11 +102,60 @@ public class HTTPResponse implements IHTTPResponse {
      */
     public HTTPResponse(IHTTPRequest request, Map<String, String> headers, int status, String rawResponse) {
         this.request = request;
-        this.headers = headers;
+        this.headerMap = headers;
+        this.headers = HTTPHeaders.of(headers);
         this.status = status;
         this.rawResponse = rawResponse;
     }
 
+    /**
+     * HTTP response constructor for a body which has already been read and decoded.
+     *
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of HTTP headers.
+     * @param body    Body bytes, after undoing any Content-Encoding.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, Map<String, String> headers, byte[] body) {
+        this.request = request;
+        this.status = status;
+        this.headerMap = headers;
+        this.headers = HTTPHeaders.of(headers);
+        this.bodyBytes = body;
+    }
+
+    /**
+     * HTTP response constructor for a body which has already been read and decoded.
+     *
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of HTTP headers.
+     * @param body    Body, after undoing any Content-Encoding. It is not copied.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, Map<String, String> headers, ByteBuffer body) {
+        this(request, status, HTTPHeaders.of(headers), body);
+        this.headerMap = headers;
+    }
+
+    /**
+     * HTTP response constructor for a body which has already been read and decoded.
+     *
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Headers, repeated ones keeping one entry per value. They are not copied.
+     * @param body    Body, after undoing any Content-Encoding. It is not copied.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, HTTPHeaders headers, ByteBuffer body) {
+        this.request = request;
+        this.status = status;
+        this.headers = headers;
+        if (body.hasArray() && body.arrayOffset() == 0 && body.position() == 0
+                && body.remaining() == body.array().length)
+            this.bodyBytes = body.array();
+        else
+            this.bodyBuffer = body.slice();
+    }
+
     /**
      * HTTP response constructor.
      *
@@ -65,6 +164,18 @@ public class HTTPResponse implements IHTTPResponse {
      *                   Java URL API.
      */
     public HTTPResponse(HttpURLConnection connection) {
+        this(connection, false);
+    }
+
+    /**
+     * HTTP response constructor.
+     *
+     * @param connection HTTP connection object which can be
+     *                   obtained while constructing a network call using the
+     *                   Java URL API.
+     * @param streaming  Whether the body is left unread for the caller to stream.
+     */
+    public HTTPResponse(HttpURLConnection connection, boolean streaming) {
         //FIXME: Capture POST parameters.
         this.request = HTTPFactory.getHTTPRequest(connection.getURL().toString(),
                 connection.getRequestMethod(), null, null);
@@ -75,81 +186,177 @@ public class HTTPResponse implements IHTTPResponse {
             LOGGER.error("Error obtaining response code.", e);
             throw new Error("Error obtaining response code.", e);
         }
-        populateHeaders(connection.getHeaderFields());
+        this.headers = HTTPHeaders.ofMultiValued(connection.getHeaderFields());
 
-        InputStream is = null;
+        InputStream is;
         try {
             is = connection.getInputStream();
         } catch (IOException e) {
-            LOGGER.error("Unable to read response.", e);
-            System.out.println("ERROR: Unable to read response.");
-            System.exit(1);
+            //Error statuses carry their body on the error stream.
+            is = connection.getErrorStream();
+            if (is == null)
+                is = new ByteArrayInputStream(new byte[0]);
+        }
+        setBody(is, streaming);
+    }
+
+    /**
+     * HTTP response constructor.
+     *
+     * @param request HTTP request corresponding to the HTTP response.
+     * @param status  Status code of the response.
+     * @param headers Map of headers as received on the wire.
+     * @param body    Input stream of the response body.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, Map<String, List<String>> headers, InputStream body) {
+        this(request, status, headers, body, false);
+    }
+
+    /**
+     * HTTP response constructor.
+     *
+     * @param request   HTTP request corresponding to the HTTP response.
+     * @param status    Status code of the response.
+     * @param headers   Map of headers as received on the wire.
+     * @param body      Input stream of the response body.
+     * @param streaming Whether the body is left unread for the caller to stream.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, Map<String, List<String>> headers, InputStream body,
+                        boolean streaming) {
+        this(request, status, HTTPHeaders.ofMultiValued(headers), body, streaming);
+    }
+
+    /**
+     * HTTP response constructor.
+     *
+     * @param request   HTTP request corresponding to the HTTP response.
+     * @param status    Status code of the response.
+     * @param headers   Headers as received on the wire. They are not copied.
+     * @param body      Input stream of the response body.
+     * @param streaming Whether the body is left unread for the caller to stream.
+     */
+    public HTTPResponse(IHTTPRequest request, int status, HTTPHeaders headers, InputStream body, boolean streaming) {
+        this.request = request;
+        this.status = status;
+        this.headers = headers;
+        setBody(body, streaming);
+    }
+
+    /**
+     * @param body      Input stream of the response body.
+     * @param streaming Whether the body is left unread for the caller to stream.
+     */
+    private void setBody(InputStream body, boolean streaming) {
+        this.decoder = new DecodingInputStream(body, this.headers.get("Content-Encoding"));
+        body = this.decoder;
+        this.streaming = streaming;
+        if (streaming)
+            this.body = body;
+        else
+            this.bodyBytes = readBytes(body, expectedLength());
+    }
+
+    /**
+     * @return Length of the decoded body announced by the server, -1 if unknown.
+     */
+    private int expectedLength() {
+        //HEAD, 1xx, 204 and 304 responses announce the length of a body they do not carry.
+        if ((this.status >= 100 && this.status < 200) || this.status == 204 || this.status == 304
+                || (this.request != null && "HEAD".equals(this.request.getMethod())))
+            return 0;
+        String encoding = this.headers.get("Content-Encoding");
+        if (encoding != null && !encoding.trim().equalsIgnoreCase("identity"))
+            return -1;
+        String length = this.headers.get("Content-Length");
+        if (length == null)
+            return -1;
+        try {
+            long value = Long.parseLong(length.trim());
+            return value >= 0 && value <= Integer.MAX_VALUE - 8 ? (int) value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        this.rawResponse = convertStream(is, 1024);
     }
 
     /**
-     * @param is         Input stream.
-     * @param bufferSize Buffer size to be used while reading.
-     * @return String read from input stream.
+     * Reads the stream fully into an array of exactly the body size.
+     * The announced length only sizes the first buffer up to
+     * NetworkReferences.MAX_INITIAL_BODY_BUFFER, so that a bogus Content-Length
+     * cannot make the client allocate more than the bytes actually received.
+     *
+     * @param is             Input stream.
+     * @param expectedLength Length announced by the server, -1 if unknown.
+     * @return Bytes read from input stream.
      */
-    private static String convertStream(InputStream is, int bufferSize) {
-        final char[] buffer = new char[bufferSize];
-        final StringBuilder out = new StringBuilder();
+    private static byte[] readBytes(InputStream is, int expectedLength) {
+        byte[] buffer = new byte[expectedLength >= 0
+                ? Math.min(expectedLength, NetworkReferences.MAX_INITIAL_BODY_BUFFER) : 8192];
+        int size = 0;
         try {
-            final Reader in = new InputStreamReader(is, "UTF-8");
             try {
                 for (; ; ) {
-                    int rsz = in.read(buffer, 0, buffer.length);
+                    if (size == buffer.length) {
+                        if (expectedLength == size) {
+                            int b = is.read();
+                            if (b == -1)
+                                break;
+                            LOGGER.warn("Response body is longer than its Content-Length: " + expectedLength);
+                            expectedLength = -1;
+                            buffer = Arrays.copyOf(buffer, Math.max(8192, buffer.length * 2));
+                            buffer[size++] = (byte) b;
+                            continue;
+                        }
+                        buffer = Arrays.copyOf(buffer, grow(buffer.length, expectedLength));
+                    }
+                    int rsz = is.read(buffer, size, buffer.length - size);
                     if (rsz < 0)
                         break;
-                    out.append(buffer, 0, rsz);
+                    size += rsz;
                 }
             } finally {
-                in.close();
+                is.close();
             }
-        } catch (UnsupportedEncodingException e) {
-            LOGGER.error("Unsupported encoding.", e);
-            throw new Error("Unsupported encoding.");
         } catch (IOException e) {
-            LOGGER.error("Unable to read input stream.", e);
-            throw new Error("ERROR: Unable to read input stream.");
+            throw new UncheckedIOException("Unable to read the response body.", e);
         }
-        return out.toString();
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
     }
 
     /**
-     * Populate headers class variable.
-     *
-     * @param headers Map of headers obtained from URL API.
+     * @param length         Current buffer length.
+     * @param expectedLength Length announced by the server, -1 if unknown.
+     * @return Next buffer length, doubling but not past the announced length.
      */
-    private void populateHeaders(Map<String, List<String>> headers) {
-        this.headers = new HashMap<>();
-        Iterator<Entry<String, List<String>>> iter = headers.entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<String, List<String>> entry = iter.next();
-
-            String key = entry.getKey();
-            List<String> value = entry.getValue();
-
-            int size = value.size();
-
-            if (size == 0) {
-                this.headers.put(key, "");
-                continue;
-            }
+    private static int grow(int length, int expectedLength) {
+        int next = Math.max(8192, length * 2);
+        if (next < 0)
+            next = Integer.MAX_VALUE - 8;
+        return expectedLength > length ? Math.min(next, expectedLength) : next;
+    }
 
-            if (size == 1) {
-                this.headers.put(key, value.get(0));
-                continue;
+    /**
+     * @return Charset declared in the Content-Type header, UTF-8 if absent or unsupported.
+     */
+    private Charset getCharset() {
+        String contentType = this.headers.get("Content-Type");
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index != -1) {
+                String name = contentType.substring(index + "charset=".length());
+                int end = name.indexOf(';');
+                if (end != -1)
+                    name = name.substring(0, end);
+                name = name.trim();
+                if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\""))
+                    name = name.substring(1, name.length() - 1);
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Unsupported charset, falling back to UTF-8: " + name);
+                }
             }
-
-            String val = "";
-            for (int i = 0; i < size; i++)
-                val = val + value.get(i) + AutomationReferences.COOKIE_SEPARATOR;
-            val = val.substring(0, val.length() - 1);
-            this.headers.put(key, val);
         }
+        return StandardCharsets.UTF_8;
     }
 
     /**
@@ -165,18 +372,36 @@ public class HTTPResponse implements IHTTPResponse {
      */
     @Override
     public Map<String, String> getAllResponseHeaders() {
-        return this.headers;
+        if (this.headerMap == null)
+            this.headerMap = this.headers.toMap(AutomationReferences.COOKIE_SEPARATOR);
+        return this.headerMap;
     }
 
     /**
-     * @param key HTTP response header key.
-     * @return HTTP response header value of the specified key.
+     * @param key HTTP response header key, matched case insensitively.
+     * @return HTTP response header value of the specified key. The values of a
+     * repeated header are joined with AutomationReferences.COOKIE_SEPARATOR.
      */
     @Override
     public String getResponseHeaderByKey(String key) {
-        if (this.headers.containsKey(key))
-            return this.headers.get(key);
-        return null;
+        return this.headers.getJoined(key, AutomationReferences.COOKIE_SEPARATOR);
+    }
+
+    /**
+     * @return All the HTTP response headers, repeated headers keeping one entry per value.
+     */
+    @Override
+    public HTTPHeaders getResponseHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @param key HTTP response header key, matched case insensitively.
+     * @return Every value of the header in wire order, empty if not present.
+     */
+    @Override
+    public List<String> getResponseHeaderValues(String key) {
+        return this.headers.getAll(key);
     }
 
     /**
@@ -204,6 +429,15 @@ public class HTTPResponse implements IHTTPResponse {
         return this.request.getRequestParameterByKey(key);
     }
 
+    /**
+     * @param key Request parameter key.
+     * @return Every value of the parameter in URL order, empty if not present.
+     */
+    @Override
+    public List<String> getRequestParameterValues(String key) {
+        return this.request.getRequestParameterValues(key);
+    }
+
     /**
      * @return HTTP method of the call - GET, PUT, POST etc.
      */
@@ -230,7 +464,7 @@ public class HTTPResponse implements IHTTPResponse {
     }
 
     /**
-     * @param key HTTP request header key.
+     * @param key HTTP request header key, matched case insensitively.
      * @return HTTP request header value of the specified key.
      */
     @Override
@@ -243,7 +477,176 @@ public class HTTPResponse implements IHTTPResponse {
      */
     @Override
     public String getRawResponse() {
-        return this.rawResponse;
+        this.lock.lock();
+        try {
+            if (this.rawResponse == null && this.bodyBytes == null && this.bodyBuffer != null)
+                this.bodyBytes = copyBodyBuffer();
+            if (this.rawResponse == null && this.bodyBytes == null && this.body != null) {
+                if (this.bodyConsumed)
+                    throw new IllegalStateException("Response body has already been consumed as a stream.");
+                this.bodyConsumed = true;
+                this.bodyBytes = readBytes(this.body, expectedLength());
+                this.body = null;
+            }
+            if (this.rawResponse == null && this.bodyBytes != null)
+                this.rawResponse = new String(this.bodyBytes, getCharset());
+            return this.rawResponse;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Body bytes, read fully if the body is being streamed.
+     * Null if the response was built from text.
+     */
+    @Override
+    public byte[] getBodyBytes() {
+        this.lock.lock();
+        try {
+            if (this.bodyBytes == null && this.bodyBuffer != null)
+                this.bodyBytes = copyBodyBuffer();
+            if (this.bodyBytes == null && this.body != null) {
+                if (this.bodyConsumed)
+                    throw new IllegalStateException("Response body has already been consumed as a stream.");
+                this.bodyConsumed = true;
+                this.bodyBytes = readBytes(this.body, expectedLength());
+                this.body = null;
+            }
+            return this.bodyBytes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Input stream of the response body.
+     */
+    @Override
+    public InputStream getBodyStream() {
+        this.lock.lock();
+        try {
+            if (this.body != null) {
+                if (this.bodyConsumed)
+                    throw new IllegalStateException("Response body has already been consumed.");
+                this.bodyConsumed = true;
+                return this.body;
+            }
+            if (this.bodyBytes != null)
+                return new ByteArrayInputStream(this.bodyBytes);
+            if (this.bodyBuffer != null)
+                return new ByteBufferInputStream(this.bodyBuffer.duplicate());
+            if (this.rawResponse == null)
+                return new ByteArrayInputStream(new byte[0]);
+            return new ByteArrayInputStream(this.rawResponse.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Copy of the body held outside the heap.
+     */
+    private byte[] copyBodyBuffer() {
+        ByteBuffer source = this.bodyBuffer.duplicate();
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return Channel over the response body.
+     */
+    @Override
+    public ReadableByteChannel getBodyChannel() {
+        return Channels.newChannel(getBodyStream());
+    }
+
+    /**
+     * @param handler Callback receiving the body.
+     * @return Number of bytes read.
+     * @throws IOException If the body could not be read or the handler aborted.
+     */
+    @Override
+    public long consumeBody(IResponseBodyHandler handler) throws IOException {
+        ByteBuffer mapped;
+        this.lock.lock();
+        try {
+            mapped = this.bodyBytes == null && this.bodyBuffer != null ? this.bodyBuffer.asReadOnlyBuffer() : null;
+        } finally {
+            this.lock.unlock();
+        }
+        //A body held outside the heap is handed over in one piece, without copying it.
+        if (mapped != null) {
+            int length = mapped.remaining();
+            if (length > 0)
+                handler.onChunk(mapped);
+            return length;
+        }
+
+        byte[] buffer = new byte[8192];
+        ByteBuffer chunk = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+        long total = 0;
+        InputStream in = getBodyStream();
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (read == 0)
+                    continue;
+                chunk.clear();
+                chunk.limit(read);
+                handler.onChunk(chunk);
+                total += read;
+            }
+        } finally {
+            in.close();
+        }
+        return total;
+    }
+
+    /**
+     * @return Whether the body is streamed rather than read upfront.
+     */
+    @Override
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
+    /**
+     * @return Number of body bytes received on the wire so far.
+     */
+    @Override
+    public long getBodyBytesOnWire() {
+        return this.decoder == null ? -1 : this.decoder.getWireBytes();
+    }
+
+    /**
+     * @return Number of body bytes read so far after decoding.
+     */
+    @Override
+    public long getBodyBytesDecoded() {
+        return this.decoder == null ? -1 : this.decoder.getDecodedBytes();
+    }
+
+    /**
+     * Releases the body if it has not been handed out or read.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.body != null && !this.bodyConsumed) {
+                this.bodyConsumed = true;
+                try {
+                    this.body.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Error closing response body.", e);
+                }
+                this.body = null;
+            }
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     @Override
@@ -251,7 +654,9 @@ public class HTTPResponse implements IHTTPResponse {
         return "Request: \n" + this.request
                 + "\nResponse Code: " + this.status
                 + "\nContent Length: "
-                + (this.rawResponse == null ? 0 : this.rawResponse.length()) + "\n";
+                + (this.bodyBytes != null ? this.bodyBytes.length
+                : this.bodyBuffer != null ? this.bodyBuffer.remaining()
+                : this.rawResponse == null ? 0 : this.rawResponse.length()) + "\n";
     }
 
 }
@@ -0,0 +1,423 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Transport decorator hedging idempotent requests to cut tail latency.
+ * The request is sent on the calling thread. If the response has not arrived
+ * after the hedge delay, a second copy of the request is sent from another
+ * thread and the first response wins. The other attempt is aborted by
+ * cancelling its deadline, and its response is closed if it still arrives.
+ * Requests whose deadline expires before the hedge delay are not hedged.
+ * The hedge delay is either fixed or a percentile of the recent latencies.
+ * Hedges are paid for from a budget growing with every request, so they
+ * never add more than the budget ratio to the load.
+ */
+public class HedgingTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Number of recent latencies the percentile is taken from.
+     */
+    private static final int LATENCY_WINDOW = 1000;
+
+    /**
+     * Number of latencies needed before the percentile is used.
+     */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    /**
+     * Number of new latencies after which the percentile is computed again.
+     */
+    private static final int PERCENTILE_REFRESH = 50;
+
+    /**
+     * Maximum number of hedges that can be saved up.
+     */
+    private static final double MAX_BUDGET = 10;
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    /**
+     * Fixed hedge delay, also used until enough latencies are known for the percentile.
+     */
+    private final long hedgeDelayMillis;
+
+    /**
+     * Share of the requests which may be hedged.
+     */
+    private final double budgetRatio;
+
+    /**
+     * Percentile of the recent latencies used as hedge delay, 0 to use the fixed delay.
+     */
+    private volatile double percentile;
+
+    /**
+     * Recent latencies in nanoseconds, as a ring. Guarded by itself.
+     */
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    private int latencyCount;
+
+    private volatile long percentileDelayNanos = -1;
+
+    /**
+     * Hedges which can be sent right now. Guarded by the latencies.
+     */
+    private double budget = 1;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Hedging transport constructor with the default budget.
+     *
+     * @param delegate         Transport putting the requests on the wire.
+     * @param hedgeDelayMillis Time after which a request is hedged, in milliseconds.
+     */
+    public HedgingTransport(IHTTPTransport delegate, long hedgeDelayMillis) {
+        this(delegate, hedgeDelayMillis, NetworkReferences.DEFAULT_HEDGE_BUDGET);
+    }
+
+    /**
+     * Hedging transport constructor.
+     *
+     * @param delegate         Transport putting the requests on the wire.
+     * @param hedgeDelayMillis Time after which a request is hedged, in milliseconds.
+     * @param budgetRatio      Share of the requests which may be hedged, such as 0.05 for 5%.
+     */
+    public HedgingTransport(IHTTPTransport delegate, long hedgeDelayMillis, double budgetRatio) {
+        this.delegate = delegate;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * Hedges once the request is slower than a percentile of the recent latencies,
+     * such as 95 to hedge the slowest 5%. The fixed delay is used until enough
+     * latencies are known.
+     *
+     * @param percentile Percentile of the recent latencies, 0 to only use the fixed delay.
+     */
+    public void setHedgePercentile(double percentile) {
+        if (percentile < 0 || percentile >= 100)
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        this.percentile = percentile;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object of the fastest attempt.
+     * @throws IOException If no attempt could complete the request.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        if (!isIdempotent(spec))
+            return this.delegate.execute(spec);
+        long delay = hedgeDelayNanos();
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && TimeUnit.MILLISECONDS.toNanos(deadline.remainingMillis()) <= delay)
+            return this.delegate.execute(spec);
+        this.requests.incrementAndGet();
+        synchronized (this.latencies) {
+            this.budget = Math.min(MAX_BUDGET, this.budget + this.budgetRatio);
+        }
+
+        long start = System.nanoTime();
+        AtomicReference<Attempt> winner = new AtomicReference<Attempt>();
+        final Attempt primary = new Attempt(spec, winner);
+        final Attempt hedge = new Attempt(spec, winner);
+        primary.rival = hedge;
+        hedge.rival = primary;
+        ScheduledFuture<?> timer = ExecutorHolder.TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                launch(primary, hedge);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+
+        primary.run();
+        //Either the hedge was launched already, or it never will be.
+        boolean hedged = !hedge.started.compareAndSet(false, true);
+        timer.cancel(false);
+        if (!hedged)
+            hedge.deadline.detach();
+        if (winner.get() == primary) {
+            recordLatency(System.nanoTime() - start);
+            return primary.response;
+        }
+        if (hedged) {
+            try {
+                hedge.finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort(hedge);
+                throw new InterruptedIOException("Interrupted waiting for " + spec);
+            }
+            if (winner.get() == hedge) {
+                recordLatency(System.nanoTime() - start);
+                this.hedgeWins.incrementAndGet();
+                return hedge.response;
+            }
+        }
+        throw (primary.failure != null ? primary : hedge).rethrow();
+    }
+
+    /**
+     * Shuts the underlying transport down.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    /**
+     * @return Number of requests eligible for hedging.
+     */
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return Number of hedges sent.
+     */
+    public long getHedgeCount() {
+        return this.hedges.get();
+    }
+
+    /**
+     * @return Number of hedges which answered before the original request.
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWins.get();
+    }
+
+    /**
+     * @return Current hedge delay, in milliseconds.
+     */
+    public long getHedgeDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos());
+    }
+
+    /**
+     * Sends the hedge once the hedge delay is over, unless the primary attempt
+     * completed or the budget is exhausted.
+     *
+     * @param primary Attempt running on the calling thread.
+     * @param hedge   Attempt to be sent.
+     */
+    private void launch(Attempt primary, Attempt hedge) {
+        if (primary.done || !takeBudget())
+            return;
+        if (!hedge.started.compareAndSet(false, true)) {
+            returnBudget();
+            return;
+        }
+        this.hedges.incrementAndGet();
+        LOGGER.debug("Hedging " + hedge.spec + " after " + getHedgeDelayMillis() + " ms");
+        try {
+            ExecutorHolder.EXECUTOR.execute(hedge);
+        } catch (RejectedExecutionException e) {
+            hedge.failure = e;
+            hedge.done = true;
+            hedge.deadline.detach();
+            hedge.finished.countDown();
+        }
+    }
+
+    /**
+     * Aborts an attempt which lost the race, closing its response if it already has one.
+     *
+     * @param attempt Attempt to be aborted, may be null.
+     */
+    private static void abort(Attempt attempt) {
+        if (attempt == null)
+            return;
+        attempt.deadline.cancel();
+        if (attempt.done && attempt.response != null)
+            attempt.response.close();
+    }
+
+    private boolean takeBudget() {
+        synchronized (this.latencies) {
+            if (this.budget < 1)
+                return false;
+            this.budget -= 1;
+            return true;
+        }
+    }
+
+    private void returnBudget() {
+        synchronized (this.latencies) {
+            this.budget = Math.min(MAX_BUDGET, this.budget + 1);
+        }
+    }
+
+    private long hedgeDelayNanos() {
+        long delay = this.percentileDelayNanos;
+        if (this.percentile > 0 && delay >= 0)
+            return delay;
+        return TimeUnit.MILLISECONDS.toNanos(this.hedgeDelayMillis);
+    }
+
+    /**
+     * @param latencyNanos Time the caller waited for a successful response, in nanoseconds.
+     */
+    private void recordLatency(long latencyNanos) {
+        double percentile = this.percentile;
+        synchronized (this.latencies) {
+            this.latencies[this.latencyCount++ % LATENCY_WINDOW] = latencyNanos;
+            if (percentile == 0 || this.latencyCount < MIN_LATENCY_SAMPLES
+                    || this.latencyCount % PERCENTILE_REFRESH != 0 && this.percentileDelayNanos >= 0)
+                return;
+            long[] sorted = Arrays.copyOf(this.latencies, Math.min(this.latencyCount, LATENCY_WINDOW));
+            Arrays.sort(sorted);
+            this.percentileDelayNanos = sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+        }
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return Whether the request can safely be sent twice.
+     */
+    private static boolean isIdempotent(HTTPRequestSpec spec) {
+        if (!HTTPRequestSpec.isIdempotent(spec.getMethod()))
+            return false;
+        IHTTPRequestBody body = spec.getBody();
+        return body == null || body.isReplayable();
+    }
+
+    /**
+     * One copy of the request, running under a deadline of its own so it can be aborted.
+     * The deadline is cancelled along with the one of the caller, until the
+     * attempt is over, or for the winner until its response has been read.
+     * The first attempt to get a response claims the win and aborts its rival.
+     */
+    private final class Attempt implements Runnable {
+
+        private final HTTPRequestSpec spec;
+
+        private final Deadline deadline;
+
+        private final AtomicReference<Attempt> winner;
+
+        private Attempt rival;
+
+        /**
+         * Set by whoever decides first whether the hedge is sent.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private IHTTPResponse response;
+
+        private Throwable failure;
+
+        private volatile boolean done;
+
+        Attempt(HTTPRequestSpec spec, AtomicReference<Attempt> winner) {
+            this.deadline = Deadline.derive(spec.getDeadline());
+            this.spec = spec.copy();
+            this.spec.setDeadline(this.deadline);
+            this.winner = winner;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (this.winner.get() == null)
+                    this.response = delegate.execute(this.spec);
+            } catch (Throwable e) {
+                this.failure = e;
+            }
+            this.done = true;
+            if (this.response != null) {
+                if (this.winner.compareAndSet(null, this))
+                    abort(this.rival);
+                else
+                    this.response.close();
+            } else if (this.failure == null)
+                this.failure = new InterruptedIOException("Aborted, the other attempt won: " + this.spec);
+            if (this.winner.get() != this)
+                this.deadline.detach();
+            this.finished.countDown();
+        }
+
+        /**
+         * @return Failure of the attempt, to be thrown.
+         */
+        private IOException rethrow() {
+            if (this.failure instanceof IOException)
+                return (IOException) this.failure;
+            if (this.failure instanceof RuntimeException)
+                throw (RuntimeException) this.failure;
+            if (this.failure instanceof Error)
+                throw (Error) this.failure;
+            return new IOException(this.failure);
+        }
+
+    }
+
+    /**
+     * Holder class for the executor running the hedges and the timer sending them.
+     */
+    private final static class ExecutorHolder {
+        private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+        private static ScheduledThreadPoolExecutor createTimer() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "http-hedge-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "http-hedge-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
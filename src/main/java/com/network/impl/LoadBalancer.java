@@ -0,0 +1,276 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads calls over the replicas of a service, given by their base URLs.
+ * An endpoint is picked by least outstanding requests, or by the power of
+ * two choices: the less loaded of two random endpoints, which is nearly as
+ * good and does not herd every caller onto the same idle endpoint.
+ * An endpoint failing several calls in a row is ejected for the ejection
+ * time, longer every time it is ejected again, and reinstated once it has
+ * elapsed. If every endpoint is ejected, the one due back first is used.
+ * A session can be bound to the endpoint that issued it, so calls made with
+ * it keep going there while the endpoint is in rotation.
+ */
+public class LoadBalancer {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * How an endpoint is picked among the ones in rotation.
+     */
+    public enum Strategy {
+        LEAST_OUTSTANDING, POWER_OF_TWO_CHOICES
+    }
+
+    private final List<Endpoint> endpoints;
+
+    private final Strategy strategy;
+
+    /**
+     * Number of consecutive failures after which an endpoint is ejected.
+     */
+    private final int ejectionFailures;
+
+    /**
+     * Time an endpoint is ejected for the first time, in milliseconds.
+     */
+    private final long ejectionMillis;
+
+    /**
+     * Endpoints by the session they issued.
+     */
+    private final ConcurrentHashMap<String, Endpoint> sessions = new ConcurrentHashMap<String, Endpoint>();
+
+    /**
+     * Rotates the first endpoint looked at, so ties are not always broken the same way.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Load balancer constructor with the default settings.
+     *
+     * @param baseUrls Base URLs of the replicas.
+     * @param strategy How an endpoint is picked.
+     */
+    public LoadBalancer(List<String> baseUrls, Strategy strategy) {
+        this(baseUrls, strategy, NetworkReferences.DEFAULT_EJECTION_FAILURES, NetworkReferences.DEFAULT_EJECTION_TIME);
+    }
+
+    /**
+     * Load balancer constructor.
+     *
+     * @param baseUrls         Base URLs of the replicas.
+     * @param strategy         How an endpoint is picked.
+     * @param ejectionFailures Number of consecutive failures after which an endpoint is ejected.
+     * @param ejectionMillis   Time an endpoint is ejected for the first time, in milliseconds.
+     */
+    public LoadBalancer(List<String> baseUrls, Strategy strategy, int ejectionFailures, long ejectionMillis) {
+        if (baseUrls.isEmpty())
+            throw new IllegalArgumentException("No endpoint to balance over.");
+        if (ejectionFailures < 1)
+            throw new IllegalArgumentException("Invalid ejection failure count: " + ejectionFailures);
+        List<Endpoint> endpoints = new ArrayList<Endpoint>(baseUrls.size());
+        for (String baseUrl : baseUrls)
+            endpoints.add(new Endpoint(baseUrl));
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.strategy = strategy;
+        this.ejectionFailures = ejectionFailures;
+        this.ejectionMillis = ejectionMillis;
+    }
+
+    /**
+     * Picks an endpoint for a call and counts the call as outstanding on it.
+     * Every endpoint acquired must be released.
+     *
+     * @param session Session the call is made with, null for none.
+     * @return Endpoint to send the call to.
+     */
+    public Endpoint acquire(String session) {
+        long now = System.nanoTime();
+        Endpoint endpoint = session == null ? null : this.sessions.get(session);
+        if (endpoint == null || endpoint.isEjected(now)) {
+            if (endpoint != null)
+                LOGGER.warn("Endpoint " + endpoint.baseUrl + " of the session is ejected, moving the call.");
+            endpoint = select(now);
+        }
+        endpoint.outstanding.incrementAndGet();
+        return endpoint;
+    }
+
+    /**
+     * Counts the call as completed, ejecting the endpoint if it failed too many calls in a row.
+     *
+     * @param endpoint Endpoint returned by acquire.
+     * @param success  Whether the call succeeded.
+     */
+    public void release(Endpoint endpoint, boolean success) {
+        endpoint.outstanding.decrementAndGet();
+        endpoint.onResult(success);
+    }
+
+    /**
+     * Sends the calls made with the session to the endpoint that issued it.
+     *
+     * @param session  Session identifier, such as the session cookie.
+     * @param endpoint Endpoint that issued the session.
+     */
+    public void bind(String session, Endpoint endpoint) {
+        if (session != null)
+            this.sessions.put(session, endpoint);
+    }
+
+    /**
+     * Forgets the endpoint of an ended session.
+     *
+     * @param session Session identifier.
+     */
+    public void unbind(String session) {
+        if (session != null)
+            this.sessions.remove(session);
+    }
+
+    /**
+     * @return Every endpoint, in rotation or not.
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    private Endpoint select(long now) {
+        int size = this.endpoints.size();
+        if (size == 1)
+            return this.endpoints.get(0);
+
+        if (this.strategy == Strategy.POWER_OF_TWO_CHOICES) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first)
+                second++;
+            Endpoint a = this.endpoints.get(first);
+            Endpoint b = this.endpoints.get(second);
+            if (!a.isEjected(now) && !b.isEjected(now))
+                return b.outstanding.get() < a.outstanding.get() ? b : a;
+            if (!a.isEjected(now))
+                return a;
+            if (!b.isEjected(now))
+                return b;
+            //Both picks are out, fall back on a full scan.
+        }
+
+        Endpoint best = null;
+        Endpoint soonest = null;
+        int start = Math.abs(this.next.getAndIncrement() % size);
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = this.endpoints.get((start + i) % size);
+            if (endpoint.isEjected(now)) {
+                if (soonest == null || endpoint.ejectedUntil - soonest.ejectedUntil < 0)
+                    soonest = endpoint;
+            } else if (best == null || endpoint.outstanding.get() < best.outstanding.get()) {
+                best = endpoint;
+            }
+        }
+        return best != null ? best : soonest;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Endpoint endpoint : this.endpoints)
+            sb.append(endpoint).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Replica of the service, with its calls in flight and health.
+     */
+    public final class Endpoint {
+
+        private final String baseUrl;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private int consecutiveFailures;
+
+        /**
+         * Number of times the endpoint was ejected since it last succeeded.
+         */
+        private int ejections;
+
+        /**
+         * Time at which an ejected endpoint is reinstated, in nanoseconds.
+         */
+        private volatile long ejectedUntil;
+
+        private volatile boolean ejected;
+
+        Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * @return Base URL of the replica.
+         */
+        public String getBaseUrl() {
+            return this.baseUrl;
+        }
+
+        /**
+         * @return Number of calls in flight to the replica.
+         */
+        public int getOutstanding() {
+            return this.outstanding.get();
+        }
+
+        /**
+         * @return Whether the replica is currently out of rotation.
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        boolean isEjected(long now) {
+            return this.ejected && this.ejectedUntil - now > 0;
+        }
+
+        synchronized void onResult(boolean success) {
+            if (success) {
+                if (this.ejected)
+                    LOGGER.info("Endpoint " + this.baseUrl + " reinstated.");
+                this.consecutiveFailures = 0;
+                this.ejections = 0;
+                this.ejected = false;
+                return;
+            }
+            //A call sent before the ejection adds nothing.
+            if (isEjected(System.nanoTime()) || ++this.consecutiveFailures < LoadBalancer.this.ejectionFailures)
+                return;
+
+            this.consecutiveFailures = 0;
+            this.ejections++;
+            long millis = Math.min(NetworkReferences.MAX_EJECTION_TIME,
+                    LoadBalancer.this.ejectionMillis * this.ejections);
+            this.ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            this.ejected = true;
+            LOGGER.warn("Endpoint " + this.baseUrl + " ejected for " + millis + " ms.");
+        }
+
+        @Override
+        public String toString() {
+            return this.baseUrl + ": " + getOutstanding() + " outstanding" + (isEjected() ? ", ejected" : "");
+        }
+
+    }
+
+}
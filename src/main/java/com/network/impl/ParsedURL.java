@@ -0,0 +1,304 @@
+package main.java.com.network.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * URL split into its base and its query parameters in a single pass.
+ * Only the offsets of the parts are recorded; a part is decoded when it is
+ * first read, and not at all if it needs no decoding. Query parameters may
+ * repeat and may have no value, as in a=1&a=2&flag. Malformed escapes are
+ * kept as is rather than rejected.
+ */
+final class ParsedURL {
+
+    /**
+     * Bits of the per parameter flags.
+     */
+    private static final int HAS_VALUE = 1;
+    private static final int NAME_ENCODED = 2;
+    private static final int VALUE_ENCODED = 4;
+
+    private final String url;
+
+    /**
+     * End of the base URL, which is the position of the query or the fragment if any.
+     */
+    private final int baseEnd;
+
+    /**
+     * Name start, name end, value start and value end of each parameter.
+     */
+    private int[] offsets;
+
+    private byte[] flags;
+
+    private int count;
+
+    private String base;
+
+    /**
+     * Parameter names and values decoded so far.
+     */
+    private String[] names;
+    private String[] values;
+
+    private ParsedURL(String url, int baseEnd) {
+        this.url = url;
+        this.baseEnd = baseEnd;
+    }
+
+    /**
+     * @param url Full URL, with or without a query and a fragment.
+     * @return Offsets of the base and the parameters of the URL.
+     */
+    static ParsedURL parse(String url) {
+        int length = url.length();
+        int end = length;
+        int query = -1;
+        for (int i = 0; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '?' && query == -1)
+                query = i;
+            else if (c == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        ParsedURL parsed = new ParsedURL(url, query == -1 ? end : query);
+        if (query == -1 || query + 1 >= end)
+            return parsed;
+
+        int start = query + 1;
+        int equals = -1;
+        byte flag = 0;
+        for (int i = start; i <= end; i++) {
+            char c = i == end ? '&' : url.charAt(i);
+            if (c == '&') {
+                //Empty pairs, as in a=1&&b=2, carry nothing.
+                if (i > start)
+                    parsed.addParameter(start, equals == -1 ? i : equals, equals == -1 ? i : equals + 1, i, flag);
+                start = i + 1;
+                equals = -1;
+                flag = 0;
+            } else if (c == '=' && equals == -1) {
+                equals = i;
+                flag |= HAS_VALUE;
+            } else if (c == '%' || c == '+')
+                flag |= equals == -1 ? NAME_ENCODED : VALUE_ENCODED;
+        }
+        return parsed;
+    }
+
+    private void addParameter(int nameStart, int nameEnd, int valueStart, int valueEnd, byte flag) {
+        if (this.offsets == null) {
+            this.offsets = new int[16];
+            this.flags = new byte[4];
+        } else if (this.count == this.flags.length) {
+            this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+            this.flags = Arrays.copyOf(this.flags, this.flags.length * 2);
+        }
+        int at = this.count * 4;
+        this.offsets[at] = nameStart;
+        this.offsets[at + 1] = nameEnd;
+        this.offsets[at + 2] = valueStart;
+        this.offsets[at + 3] = valueEnd;
+        this.flags[this.count] = flag;
+        this.count++;
+    }
+
+    /**
+     * @return URL without its query and fragment, with percent escapes decoded.
+     */
+    String getBase() {
+        if (this.base == null)
+            this.base = decode(this.url, 0, this.baseEnd, false);
+        return this.base;
+    }
+
+    /**
+     * @return Number of parameters, a repeated name counting once per occurrence.
+     */
+    int getParameterCount() {
+        return this.count;
+    }
+
+    /**
+     * @param index Position of the parameter in the query.
+     * @return Decoded name of the parameter.
+     */
+    String getName(int index) {
+        checkIndex(index);
+        if (this.names == null)
+            this.names = new String[this.count];
+        String name = this.names[index];
+        if (name == null) {
+            int at = index * 4;
+            name = (this.flags[index] & NAME_ENCODED) == 0
+                    ? this.url.substring(this.offsets[at], this.offsets[at + 1])
+                    : decode(this.url, this.offsets[at], this.offsets[at + 1], true);
+            this.names[index] = name;
+        }
+        return name;
+    }
+
+    /**
+     * @param index Position of the parameter in the query.
+     * @return Decoded value of the parameter, empty if it has none.
+     */
+    String getValue(int index) {
+        checkIndex(index);
+        if (this.values == null)
+            this.values = new String[this.count];
+        String value = this.values[index];
+        if (value == null) {
+            int at = index * 4;
+            value = (this.flags[index] & VALUE_ENCODED) == 0
+                    ? this.url.substring(this.offsets[at + 2], this.offsets[at + 3])
+                    : decode(this.url, this.offsets[at + 2], this.offsets[at + 3], true);
+            this.values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * @param index Position of the parameter in the query.
+     * @return Whether the parameter has an '=', so that flag and flag= can be told apart.
+     */
+    boolean hasValue(int index) {
+        checkIndex(index);
+        return (this.flags[index] & HAS_VALUE) != 0;
+    }
+
+    /**
+     * @param name Decoded parameter name.
+     * @return Value of the first parameter with the name, null if there is none.
+     */
+    String getParameter(String name) {
+        int index = indexOf(name, 0);
+        return index == -1 ? null : getValue(index);
+    }
+
+    /**
+     * @param name Decoded parameter name.
+     * @return Values of the parameters with the name in query order, empty if there are none.
+     */
+    List<String> getParameters(String name) {
+        int index = indexOf(name, 0);
+        if (index == -1)
+            return Collections.emptyList();
+        int next = indexOf(name, index + 1);
+        if (next == -1)
+            return Collections.singletonList(getValue(index));
+        List<String> result = new ArrayList<String>(4);
+        result.add(getValue(index));
+        for (; next != -1; next = indexOf(name, next + 1))
+            result.add(getValue(next));
+        return result;
+    }
+
+    /**
+     * Decodes every parameter. A repeated name maps to its last value.
+     *
+     * @return Map of the parameters in query order.
+     */
+    Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<String, String>(Math.max(4, this.count * 2));
+        for (int i = 0; i < this.count; i++)
+            map.put(getName(i), getValue(i));
+        return map;
+    }
+
+    /**
+     * @param name Decoded parameter name.
+     * @param from Position to start searching at.
+     * @return Position of the next parameter with the name, -1 if none.
+     */
+    private int indexOf(String name, int from) {
+        for (int i = from; i < this.count; i++) {
+            if ((this.flags[i] & NAME_ENCODED) != 0) {
+                if (name.equals(getName(i)))
+                    return i;
+                continue;
+            }
+            //Names without escapes are compared in place.
+            int at = i * 4;
+            int length = this.offsets[at + 1] - this.offsets[at];
+            if (length == name.length() && this.url.regionMatches(this.offsets[at], name, 0, length))
+                return i;
+        }
+        return -1;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.count);
+    }
+
+    /**
+     * Decodes percent escapes as UTF-8.
+     *
+     * @param s            Text holding the part.
+     * @param start        Start of the part.
+     * @param end          End of the part.
+     * @param plusIsSpace  Whether '+' stands for a space, as in form encoded queries.
+     * @return Decoded part, a plain substring if it has nothing to decode.
+     */
+    static String decode(String s, int start, int end, boolean plusIsSpace) {
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '%' || (plusIsSpace && c == '+'))
+                break;
+            i++;
+        }
+        if (i == end)
+            return s.substring(start, end);
+
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(s, start, i);
+        byte[] bytes = null;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '+' && plusIsSpace) {
+                sb.append(' ');
+                i++;
+            } else if (c == '%' && escapeAt(s, i, end)) {
+                //Runs of escapes are decoded together to rebuild multi-byte characters.
+                if (bytes == null)
+                    bytes = new byte[(end - i) / 3];
+                int n = 0;
+                while (escapeAt(s, i, end)) {
+                    bytes[n++] = (byte) ((hex(s.charAt(i + 1)) << 4) | hex(s.charAt(i + 2)));
+                    i += 3;
+                }
+                sb.append(new String(bytes, 0, n, StandardCharsets.UTF_8));
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean escapeAt(String s, int i, int end) {
+        return i + 2 < end && s.charAt(i) == '%' && hex(s.charAt(i + 1)) != -1 && hex(s.charAt(i + 2)) != -1;
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        return -1;
+    }
+
+}
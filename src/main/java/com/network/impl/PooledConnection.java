@@ -0,0 +1,215 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * A keep-alive connection owned by a ConnectionPool.
+ */
+class PooledConnection {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Key of the route the connection belongs to.
+     */
+    private final String route;
+
+    private final Socket socket;
+
+    private final BufferedInputStream in;
+
+    private final BufferedOutputStream out;
+
+    /**
+     * Pool to which the connection is handed back.
+     */
+    private final ConnectionPool pool;
+
+    /**
+     * Time at which the connection was last returned to the pool.
+     */
+    private volatile long lastUsed;
+
+    /**
+     * Whether the connection has served at least one request already.
+     */
+    private boolean reused;
+
+    PooledConnection(String route, Socket socket, ConnectionPool pool) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.pool = pool;
+        this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    String getRoute() {
+        return this.route;
+    }
+
+    Socket getSocket() {
+        return this.socket;
+    }
+
+    InputStream getInputStream() {
+        return this.in;
+    }
+
+    OutputStream getOutputStream() {
+        return this.out;
+    }
+
+    long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    void markIdle() {
+        this.lastUsed = System.currentTimeMillis();
+        this.reused = true;
+    }
+
+    boolean isReused() {
+        return this.reused;
+    }
+
+    /**
+     * Checks whether the peer has closed the connection while it was idle.
+     * Any unsolicited data on an idle connection also makes it unusable.
+     * Only connections idle for longer than NetworkReferences.DEFAULT_VALIDATE_AFTER_INACTIVITY
+     * are probed with a 1 ms blocking read; a connection closed since its last
+     * use is otherwise caught by the retry of the request.
+     *
+     * @return True if the connection should not be reused.
+     */
+    boolean isStale() {
+        if (this.socket.isClosed() || this.socket.isInputShutdown() || this.socket.isOutputShutdown())
+            return true;
+        try {
+            if (this.in.available() > 0)
+                return true;
+            if (System.currentTimeMillis() - this.lastUsed < NetworkReferences.DEFAULT_VALIDATE_AFTER_INACTIVITY)
+                return false;
+            int timeout = this.socket.getSoTimeout();
+            try {
+                this.socket.setSoTimeout(1);
+                this.in.mark(1);
+                if (this.in.read() == -1)
+                    return true;
+                this.in.reset();
+                return true;
+            } finally {
+                this.socket.setSoTimeout(timeout);
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Wraps the body of the current response so that the connection
+     * goes back to the pool once the body has been fully read.
+     * The watchdog of the exchange is cancelled before the connection is
+     * released, so that it cannot close the socket once another caller leases it.
+     *
+     * @param body      Framed body stream.
+     * @param reusable  Whether the connection can be reused after the body.
+     * @param watchdog  Watchdog guarding the exchange, may be null.
+     * @return Stream to be handed over to the response.
+     */
+    InputStream bodyStream(InputStream body, boolean reusable, Watchdog watchdog) {
+        return new BodyStream(body, reusable, watchdog);
+    }
+
+    /**
+     * Closes the underlying socket.
+     */
+    void close() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing connection to " + this.route, e);
+        }
+    }
+
+    /**
+     * Response body stream which releases the connection at end of stream.
+     * If the stream is closed before being fully read, the connection is discarded.
+     */
+    private class BodyStream extends InputStream {
+
+        private final InputStream body;
+        private final boolean reusable;
+        private final Watchdog watchdog;
+        private boolean released;
+
+        BodyStream(InputStream body, boolean reusable, Watchdog watchdog) {
+            this.body = body;
+            this.reusable = reusable;
+            this.watchdog = watchdog;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.released)
+                return -1;
+            try {
+                int b = this.body.read();
+                if (b == -1)
+                    release(this.reusable);
+                return b;
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.released)
+                return -1;
+            try {
+                int read = this.body.read(b, off, len);
+                if (read == -1)
+                    release(this.reusable);
+                return read;
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.released ? 0 : this.body.available();
+        }
+
+        @Override
+        public void close() {
+            release(false);
+        }
+
+        private void release(boolean reuse) {
+            if (this.released)
+                return;
+            this.released = true;
+            //A watchdog which fired has closed the socket.
+            if (Watchdog.cancel(this.watchdog))
+                reuse = false;
+            pool.release(PooledConnection.this, reuse);
+        }
+
+    }
+
+}
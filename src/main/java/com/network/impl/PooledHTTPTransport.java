@@ -0,0 +1,288 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPRequest;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 transport which keeps connections alive and reuses them
+ * through a per-route connection pool.
+ */
+public class PooledHTTPTransport implements IHTTPTransport {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Pool from which the connections are leased.
+     */
+    private final ConnectionPool pool;
+
+    /**
+     * Default connect timeout in milliseconds, 0 for none.
+     */
+    private volatile int connectTimeout = NetworkReferences.DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Default read timeout in milliseconds, 0 for none.
+     */
+    private volatile int readTimeout = NetworkReferences.DEFAULT_READ_TIMEOUT;
+
+    /**
+     * Pooled transport constructor with the default pool settings.
+     */
+    public PooledHTTPTransport() {
+        this(new ConnectionPool());
+    }
+
+    /**
+     * Pooled transport constructor.
+     *
+     * @param pool Pool from which the connections are leased.
+     */
+    public PooledHTTPTransport(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return Pool from which the connections are leased.
+     */
+    public ConnectionPool getConnectionPool() {
+        return this.pool;
+    }
+
+    /**
+     * @param connectTimeout Default connect timeout in milliseconds, 0 for none.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param readTimeout Default read timeout in milliseconds, 0 for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && deadline.isExpired())
+            throw new HTTPTimeoutException("Deadline expired before sending " + spec);
+
+        URL url = new URL(spec.getUrl());
+        String method = spec.getMethod();
+        IHTTPRequestBody body = spec.getBody();
+        Map<String, String> headers = spec.getHeaders();
+
+        for (int redirects = 0; ; redirects++) {
+            Exchange exchange = exchange(url, method, headers, spec, body);
+            HTTP1Codec.ResponseHead head = exchange.head;
+            try {
+                int status = head.getStatus();
+                Redirect redirect = spec.isFollowRedirects() ? Redirect.follow(url, method, headers, body != null,
+                        body != null && body.isReplayable(), status, head.getHeader("Location")) : null;
+                if (redirect != null) {
+                    if (redirects >= NetworkReferences.MAX_REDIRECTS)
+                        throw new ProtocolException("Server redirected too many times (" + redirects + ")");
+                    drain(exchange.body);
+                    if (redirect.isBodyDropped())
+                        body = null;
+                    method = redirect.getMethod();
+                    headers = redirect.getHeaders();
+                    url = redirect.getUrl();
+                    LOGGER.debug("Following redirect to " + url);
+                    continue;
+                }
+
+                IHTTPRequest request = HTTPFactory.getHTTPRequest(url.toString(), method, headers, null);
+                return HTTPFactory.getHTTPResponse(request, status, head.getHeaders(), exchange.body,
+                        spec.isStreamResponse());
+            } catch (IOException | RuntimeException | Error e) {
+                //A body which is not handed over has to give its connection back.
+                closeQuietly(exchange.body);
+                if (Watchdog.cancel(exchange.watchdog) || isTimeout(e))
+                    throw new HTTPTimeoutException("Timed out reading the response of " + spec, e);
+                throw e;
+            } finally {
+                Watchdog.cancel(exchange.watchdog);
+            }
+        }
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    @Override
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Sends the request and reads the response head.
+     * A reused connection may have been closed by the server in the meantime,
+     * in which case the request is retried on another connection, provided
+     * it had not been fully sent or its method is idempotent.
+     */
+    private Exchange exchange(URL url, String method, Map<String, String> headers, HTTPRequestSpec spec,
+                              IHTTPRequestBody body) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        int connectTimeout = spec.getConnectTimeout() >= 0 ? spec.getConnectTimeout() : this.connectTimeout;
+        int readTimeout = spec.getReadTimeout() >= 0 ? spec.getReadTimeout() : this.readTimeout;
+
+        for (; ; ) {
+            PooledConnection connection;
+            try {
+                connection = this.pool.acquire(url, deadline == null ? connectTimeout
+                        : deadline.capTimeout(connectTimeout), deadline);
+            } catch (SocketTimeoutException e) {
+                throw new HTTPTimeoutException("Timed out connecting to " + url.getHost(), e);
+            }
+
+            Watchdog watchdog = Watchdog.watch(deadline, connection.getSocket());
+            HTTP1Codec.ResponseHead head;
+            boolean sent = false;
+            try {
+                connection.getSocket().setSoTimeout(deadline == null ? readTimeout : deadline.capTimeout(readTimeout));
+                OutputStream out = connection.getOutputStream();
+                writeRequest(out, method, url, headers, body);
+                out.flush();
+                sent = true;
+                head = HTTP1Codec.readResponseHead(connection.getInputStream());
+            } catch (IOException | RuntimeException | Error e) {
+                this.pool.release(connection, false);
+                if (Watchdog.cancel(watchdog) || isTimeout(e))
+                    throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, e);
+                //Once fully sent, the server may have acted on the request.
+                if (e instanceof IOException && connection.isReused() && (body == null || body.isReplayable())
+                        && (!sent || HTTPRequestSpec.isIdempotent(method))) {
+                    LOGGER.debug("Retrying " + method + " " + url + " on a new connection: " + e.getMessage());
+                    continue;
+                }
+                throw e;
+            }
+            return new Exchange(head, responseBody(connection, method, head, watchdog), watchdog);
+        }
+    }
+
+    /**
+     * Writes the request head followed by the body, if any.
+     * A body of unknown length is sent chunked.
+     */
+    private static void writeRequest(OutputStream out, String method, URL url, Map<String, String> headers,
+                                     IHTTPRequestBody body) throws IOException {
+        if (body == null) {
+            HTTP1Codec.writeRequestHead(out, method, url, headers, -1, false);
+            return;
+        }
+        long length = body.getContentLength();
+        HTTP1Codec.writeRequestHead(out, method, url, headers, length, length < 0);
+        if (length < 0) {
+            HTTP1Codec.ChunkedOutputStream chunked = new HTTP1Codec.ChunkedOutputStream(out);
+            body.writeTo(chunked);
+            chunked.close();
+        } else
+            body.writeTo(out);
+    }
+
+    /**
+     * The watchdog is cancelled before the connection goes back to the pool.
+     *
+     * @return Body stream of the response, framed as announced by the response head.
+     */
+    private InputStream responseBody(PooledConnection connection, String method, HTTP1Codec.ResponseHead head,
+                                     Watchdog watchdog) {
+        boolean keepAlive = head.isKeepAlive();
+        if (!head.hasBody(method)) {
+            this.pool.release(connection, !Watchdog.cancel(watchdog) && keepAlive);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        if (head.isChunked())
+            return connection.bodyStream(new HTTP1Codec.ChunkedInputStream(connection.getInputStream()), keepAlive,
+                    watchdog);
+        long length = head.getContentLength();
+        if (length >= 0)
+            return connection.bodyStream(new HTTP1Codec.FixedLengthInputStream(connection.getInputStream(), length),
+                    keepAlive, watchdog);
+        //Body delimited by the server closing the connection.
+        return connection.bodyStream(connection.getInputStream(), false, watchdog);
+    }
+
+    /**
+     * @param e Exception raised by the call, possibly wrapped by the response.
+     * @return Whether it was caused by a socket timeout.
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof SocketTimeoutException)
+                return true;
+        return false;
+    }
+
+    /**
+     * Reads and discards the remainder of a body so that its connection can be reused.
+     */
+    private static void drain(InputStream body) throws IOException {
+        byte[] buffer = new byte[4096];
+        try {
+            while (body.read(buffer) != -1) {
+            }
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Closes a body stream, which discards its connection if it was not fully read.
+     */
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing response body.", e);
+        }
+    }
+
+    /**
+     * Response head and body of a single request.
+     */
+    private static final class Exchange {
+
+        private final HTTP1Codec.ResponseHead head;
+        private final InputStream body;
+
+        /**
+         * Watchdog enforcing the deadline until the response is built, may be null.
+         */
+        private final Watchdog watchdog;
+
+        Exchange(HTTP1Codec.ResponseHead head, InputStream body, Watchdog watchdog) {
+            this.head = head;
+            this.body = body;
+            this.watchdog = watchdog;
+        }
+
+    }
+
+}
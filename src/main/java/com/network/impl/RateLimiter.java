@@ -0,0 +1,281 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.RateLimitExceededException;
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side rate limiter with one token bucket per host, and optionally
+ * per path prefix within a host. The longest matching prefix wins.
+ * Hosts without a limit of their own share the default limit, if any, each
+ * in a bucket of its own.
+ * A 429, or a 503 with Retry-After, pauses the bucket of the URL for as long
+ * as the server asked.
+ */
+public class RateLimiter {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Limits by host, each sorted by decreasing path prefix length.
+     */
+    private final ConcurrentHashMap<String, List<Limit>> limits = new ConcurrentHashMap<String, List<Limit>>();
+
+    /**
+     * Buckets by host and path prefix.
+     */
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    /**
+     * Rate applied to hosts without a limit of their own, 0 for none.
+     */
+    private volatile double defaultPermitsPerSecond;
+
+    private volatile int defaultBurst;
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong retryAfters = new AtomicLong();
+
+    /**
+     * @param host             Host name the limit applies to.
+     * @param permitsPerSecond Sustained rate of requests.
+     * @param burst            Maximum number of requests sent at once.
+     */
+    public void setLimit(String host, double permitsPerSecond, int burst) {
+        setLimit(host, "", permitsPerSecond, burst);
+    }
+
+    /**
+     * @param host             Host name the limit applies to.
+     * @param pathPrefix       Path prefix the limit applies to, such as /api/search.
+     * @param permitsPerSecond Sustained rate of requests.
+     * @param burst            Maximum number of requests sent at once.
+     */
+    public void setLimit(String host, String pathPrefix, double permitsPerSecond, int burst) {
+        host = host.toLowerCase();
+        Limit limit = new Limit(pathPrefix, new TokenBucket(permitsPerSecond, burst));
+        synchronized (this.limits) {
+            List<Limit> hostLimits = this.limits.get(host);
+            List<Limit> updated = hostLimits == null ? new ArrayList<Limit>() : new ArrayList<Limit>(hostLimits);
+            for (int i = updated.size() - 1; i >= 0; i--)
+                if (updated.get(i).pathPrefix.equals(pathPrefix))
+                    updated.remove(i);
+            updated.add(limit);
+            Collections.sort(updated, new Comparator<Limit>() {
+                @Override
+                public int compare(Limit a, Limit b) {
+                    return b.pathPrefix.length() - a.pathPrefix.length();
+                }
+            });
+            this.limits.put(host, updated);
+            this.buckets.put(host + pathPrefix, limit.bucket);
+        }
+    }
+
+    /**
+     * Sets the limit of the hosts without one of their own, from their next request on.
+     *
+     * @param permitsPerSecond Sustained rate of requests to each of these hosts.
+     * @param burst            Maximum number of requests sent at once to each of these hosts.
+     */
+    public void setDefaultLimit(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("Rate and burst have to be positive: " + permitsPerSecond + ", " + burst);
+        this.defaultBurst = burst;
+        this.defaultPermitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Takes a permit for the URL, waiting for one if needed.
+     *
+     * @param url      URL about to be requested.
+     * @param deadline Deadline of the call, null for none.
+     * @throws RateLimitExceededException If no permit is available before the deadline.
+     * @throws InterruptedIOException     If the thread was interrupted while waiting.
+     */
+    public void acquire(URL url, Deadline deadline) throws InterruptedIOException {
+        TokenBucket bucket = bucketFor(url);
+        if (bucket == null)
+            return;
+        long maxWait = deadline == null ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(deadline.remainingMillis());
+        long wait = bucket.reserve(maxWait);
+        if (wait < 0) {
+            this.rejected.incrementAndGet();
+            throw new RateLimitExceededException("No permit for " + url.getHost() + " before the deadline.",
+                    TimeUnit.NANOSECONDS.toMillis(bucket.getWaitNanos()));
+        }
+        if (wait == 0)
+            return;
+
+        this.throttled.incrementAndGet();
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a permit for " + url.getHost());
+        }
+    }
+
+    /**
+     * Takes a permit for the URL if one is available right away.
+     *
+     * @param url URL about to be requested.
+     * @return Whether a permit was taken.
+     */
+    public boolean tryAcquire(URL url) {
+        TokenBucket bucket = bucketFor(url);
+        if (bucket == null || bucket.tryAcquire())
+            return true;
+        this.rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @param url URL about to be requested.
+     * @return Time until a permit is available for the URL, in milliseconds.
+     */
+    public long getWaitMillis(URL url) {
+        TokenBucket bucket = bucketFor(url);
+        return bucket == null ? 0 : TimeUnit.NANOSECONDS.toMillis(bucket.getWaitNanos());
+    }
+
+    /**
+     * Pauses the bucket of the URL if the server asked the client to slow down.
+     *
+     * @param url      URL that was requested.
+     * @param response Response of the server.
+     */
+    public void onResponse(URL url, IHTTPResponse response) {
+        int status = response.getStatusCode();
+        if (status != 429 && status != 503)
+            return;
+        long pause = parseRetryAfter(response.getResponseHeaders().get("Retry-After"));
+        if (pause < 0) {
+            if (status == 503)
+                return;
+            pause = NetworkReferences.DEFAULT_RETRY_AFTER;
+        }
+
+        this.retryAfters.incrementAndGet();
+        LOGGER.warn("Server asked to retry " + url.getHost() + " after " + pause + " ms (" + status + ").");
+        TokenBucket bucket = bucketFor(url);
+        if (bucket == null) {
+            //Hosts without a limit only get a bucket to hold the pause.
+            TokenBucket unlimited = new TokenBucket(Double.POSITIVE_INFINITY, 1);
+            bucket = this.buckets.putIfAbsent(url.getHost().toLowerCase(), unlimited);
+            if (bucket == null)
+                bucket = unlimited;
+        }
+        bucket.pause(TimeUnit.MILLISECONDS.toNanos(pause));
+    }
+
+    /**
+     * @return Number of calls that had to wait for a permit.
+     */
+    public long getThrottledCount() {
+        return this.throttled.get();
+    }
+
+    /**
+     * @return Number of calls refused a permit.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    /**
+     * @return Number of 429 and 503 responses that paused a bucket.
+     */
+    public long getRetryAfterCount() {
+        return this.retryAfters.get();
+    }
+
+    /**
+     * @param url URL about to be requested.
+     * @return Bucket limiting the URL, null if it is not limited.
+     */
+    private TokenBucket bucketFor(URL url) {
+        String host = url.getHost().toLowerCase();
+        List<Limit> hostLimits = this.limits.get(host);
+        if (hostLimits != null) {
+            String path = url.getPath();
+            for (int i = 0; i < hostLimits.size(); i++)
+                if (path.startsWith(hostLimits.get(i).pathPrefix))
+                    return hostLimits.get(i).bucket;
+        }
+
+        TokenBucket bucket = this.buckets.get(host);
+        if (bucket != null)
+            return bucket;
+        double permitsPerSecond = this.defaultPermitsPerSecond;
+        if (permitsPerSecond == 0)
+            return null;
+        TokenBucket created = new TokenBucket(permitsPerSecond, this.defaultBurst);
+        bucket = this.buckets.putIfAbsent(host, created);
+        return bucket == null ? created : bucket;
+    }
+
+    /**
+     * @param retryAfter Value of the Retry-After header, delay in seconds or HTTP date.
+     * @return Delay in milliseconds, -1 if absent or malformed.
+     */
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null)
+            return -1;
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                long date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli();
+                return Math.max(0, date - System.currentTimeMillis());
+            } catch (DateTimeParseException e1) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Limits: " + this.limits.keySet()
+                + "\nThrottled: " + getThrottledCount()
+                + "\nRejected: " + getRejectedCount()
+                + "\nRetry-After: " + getRetryAfterCount() + "\n";
+    }
+
+    /**
+     * Limit on a path prefix of a host.
+     */
+    private static final class Limit {
+
+        private final String pathPrefix;
+
+        private final TokenBucket bucket;
+
+        Limit(String pathPrefix, TokenBucket bucket) {
+            this.pathPrefix = pathPrefix;
+            this.bucket = bucket;
+        }
+
+    }
+
+}
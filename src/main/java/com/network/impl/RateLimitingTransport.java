@@ -0,0 +1,89 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.network.RateLimitExceededException;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Transport decorator taking a permit from the rate limiter before every
+ * request and feeding the 429 and 503 responses back to it.
+ * In blocking mode calls wait for their permit, within their deadline.
+ * Otherwise calls without a permit fail right away with a
+ * RateLimitExceededException telling when to retry.
+ */
+public class RateLimitingTransport implements IHTTPTransport {
+
+    /**
+     * Transport putting the requests on the wire.
+     */
+    private final IHTTPTransport delegate;
+
+    private final RateLimiter limiter;
+
+    /**
+     * Whether calls wait for a permit rather than fail.
+     */
+    private final boolean blocking;
+
+    /**
+     * Rate limiting transport constructor, waiting for permits.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Rate limiter handing out the permits.
+     */
+    public RateLimitingTransport(IHTTPTransport delegate, RateLimiter limiter) {
+        this(delegate, limiter, true);
+    }
+
+    /**
+     * Rate limiting transport constructor.
+     *
+     * @param delegate Transport putting the requests on the wire.
+     * @param limiter  Rate limiter handing out the permits.
+     * @param blocking Whether calls wait for a permit rather than fail.
+     */
+    public RateLimitingTransport(IHTTPTransport delegate, RateLimiter limiter, boolean blocking) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.blocking = blocking;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        URL url = new URL(spec.getUrl());
+        if (this.blocking)
+            this.limiter.acquire(url, spec.getDeadline());
+        else if (!this.limiter.tryAcquire(url))
+            throw new RateLimitExceededException("No permit available for " + url.getHost(),
+                    this.limiter.getWaitMillis(url));
+
+        IHTTPResponse response = this.delegate.execute(spec);
+        this.limiter.onResponse(url, response);
+        return response;
+    }
+
+    /**
+     * Shuts the underlying transport down.
+     */
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    /**
+     * @return Rate limiter handing out the permits.
+     */
+    public RateLimiter getRateLimiter() {
+        return this.limiter;
+    }
+
+}
@@ -0,0 +1,137 @@
+package main.java.com.network.impl;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Next hop of a redirect, shared by the transports which follow redirects
+ * themselves so that they all apply the same rules:
+ * a 303, or a 301 or 302 answering a POST, is followed with a GET without body;
+ * credentials are only sent again to the same origin;
+ * like HttpURLConnection, HTTPS is not downgraded to HTTP, and a body that
+ * cannot be sent again is not, so those redirects go to the caller.
+ */
+final class Redirect {
+
+    /**
+     * Headers describing the request body, left out when a redirect drops the body.
+     */
+    private static final String[] BODY_HEADERS = {"Content-Type", "Content-Encoding", "Content-Length",
+            "Transfer-Encoding"};
+
+    /**
+     * Headers carrying credentials, only sent again to the same origin.
+     */
+    private static final String[] CREDENTIAL_HEADERS = {"Authorization", "Proxy-Authorization", "Cookie"};
+
+    private final URL url;
+
+    private final String method;
+
+    private final Map<String, String> headers;
+
+    private final boolean bodyDropped;
+
+    private Redirect(URL url, String method, Map<String, String> headers, boolean bodyDropped) {
+        this.url = url;
+        this.method = method;
+        this.headers = headers;
+        this.bodyDropped = bodyDropped;
+    }
+
+    /**
+     * @param url        URL of the request that was redirected.
+     * @param method     HTTP method of the request.
+     * @param headers    Headers of the request.
+     * @param hasBody    Whether the request has a body.
+     * @param replayable Whether the body, if any, can be sent again.
+     * @param status     Status code of the response.
+     * @param location   Value of the Location header, may be null.
+     * @return Request to be sent next, null if the response goes to the caller.
+     * @throws MalformedURLException If the location is not a valid URL.
+     */
+    static Redirect follow(URL url, String method, Map<String, String> headers, boolean hasBody,
+                           boolean replayable, int status, String location) throws MalformedURLException {
+        if (!isRedirect(status) || location == null)
+            return null;
+        URL target = new URL(url, location);
+        boolean toGet = status == 303 || (status == 301 || status == 302) && "POST".equals(method);
+        boolean downgrade = "https".equalsIgnoreCase(url.getProtocol())
+                && !"https".equalsIgnoreCase(target.getProtocol());
+        if (downgrade || (hasBody && !toGet && !replayable))
+            return null;
+
+        if (toGet) {
+            if (!"HEAD".equals(method))
+                method = "GET";
+            headers = without(headers, BODY_HEADERS);
+        }
+        if (!isSameOrigin(url, target))
+            headers = without(headers, CREDENTIAL_HEADERS);
+        return new Redirect(target, method, headers, toGet);
+    }
+
+    /**
+     * @return URL to be requested next.
+     */
+    URL getUrl() {
+        return this.url;
+    }
+
+    /**
+     * @return HTTP method of the next request.
+     */
+    String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * @return Headers of the next request.
+     */
+    Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @return Whether the next request is sent without the body.
+     */
+    boolean isBodyDropped() {
+        return this.bodyDropped;
+    }
+
+    static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    /**
+     * @return Whether both URLs have the same protocol, host and port.
+     */
+    static boolean isSameOrigin(URL url, URL other) {
+        return url.getProtocol().equalsIgnoreCase(other.getProtocol()) && url.getHost().equalsIgnoreCase(other.getHost())
+                && (url.getPort() == -1 ? url.getDefaultPort() : url.getPort())
+                == (other.getPort() == -1 ? other.getDefaultPort() : other.getPort());
+    }
+
+    /**
+     * @param headers Map of request headers.
+     * @param names   Names of the headers to be left out, matched case insensitively.
+     * @return Copy of the headers without the given ones.
+     */
+    private static Map<String, String> without(Map<String, String> headers, String[] names) {
+        Map<String, String> result = new LinkedHashMap<String, String>(headers);
+        Iterator<String> iter = result.keySet().iterator();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            for (int i = 0; i < names.length; i++)
+                if (names[i].equalsIgnoreCase(key)) {
+                    iter.remove();
+                    break;
+                }
+        }
+        return result;
+    }
+
+}
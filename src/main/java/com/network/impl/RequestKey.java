@@ -0,0 +1,45 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.HTTPRequestSpec;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Builds the keys under which requests are considered identical.
+ */
+final class RequestKey {
+
+    private RequestKey() {
+    }
+
+    /**
+     * Two requests have the same key when they have the same method, URL,
+     * parameters included, redirect policy and headers, cookies included.
+     * Header names are compared case insensitively and regardless of order.
+     *
+     * @param spec Description of a request without a body.
+     * @return Key identifying identical requests.
+     */
+    static String of(HTTPRequestSpec spec) {
+        StringBuilder key = new StringBuilder(spec.getMethod()).append(' ').append(spec.getUrl());
+        if (!spec.isFollowRedirects())
+            key.append(" nofollow");
+
+        Map<String, String> headers = new TreeMap<String, String>();
+        Iterator<Entry<String, String>> iter = spec.getHeaders().entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            headers.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        iter = headers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            key.append('\n').append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return key.toString();
+    }
+
+}
@@ -0,0 +1,266 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory store of cached responses, bounded by the size of their bodies
+ * and headers. The least recently used entries are evicted first.
+ * An optional disk tier keeps the entries across restarts. Entries found
+ * on disk are promoted to memory with their bodies still mapped, so they
+ * only count for their headers.
+ */
+public class ResponseCache implements Closeable {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Maximum size of the entries, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Disk tier, null if the cache is memory only.
+     */
+    private final DiskResponseCache disk;
+
+    /**
+     * Entries by request key, in access order.
+     */
+    private final LinkedHashMap<String, CachedResponse> entries =
+            new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+
+    /**
+     * Current size of the entries, in bytes. Guarded by the entries.
+     */
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Response cache constructor with the default size.
+     */
+    public ResponseCache() {
+        this(NetworkReferences.DEFAULT_RESPONSE_CACHE_SIZE);
+    }
+
+    /**
+     * Response cache constructor.
+     *
+     * @param maxBytes Maximum size of the cached bodies and headers, in bytes.
+     */
+    public ResponseCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Response cache constructor.
+     *
+     * @param maxBytes Maximum size of the cached bodies and headers kept in memory, in bytes.
+     * @param disk     Disk tier, null for a memory only cache.
+     */
+    public ResponseCache(long maxBytes, DiskResponseCache disk) {
+        this.maxBytes = maxBytes;
+        this.disk = disk;
+    }
+
+    /**
+     * @param key Request key.
+     * @return Cached entry, null if absent.
+     */
+    CachedResponse get(String key) {
+        synchronized (this.entries) {
+            CachedResponse entry = this.entries.get(key);
+            if (entry != null || this.disk == null)
+                return entry;
+        }
+        CachedResponse entry = this.disk.get(key);
+        if (entry != null) {
+            this.diskHits.incrementAndGet();
+            putInMemory(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used ones to make room.
+     * Entries larger than the whole cache are not stored.
+     *
+     * @param key   Request key.
+     * @param entry Entry to be stored.
+     */
+    void put(String key, CachedResponse entry) {
+        putInMemory(key, entry);
+        if (this.disk != null) {
+            try {
+                this.disk.put(key, entry);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write the disk cache.", e);
+            }
+        }
+    }
+
+    /**
+     * @param key   Request key.
+     * @param entry Entry to be stored.
+     */
+    private void putInMemory(String key, CachedResponse entry) {
+        long entrySize = entry.size();
+        synchronized (this.entries) {
+            removeFromMemory(key);
+            if (entrySize > this.maxBytes)
+                return;
+            this.entries.put(key, entry);
+            this.size += entrySize;
+
+            Iterator<CachedResponse> iter = this.entries.values().iterator();
+            while (this.size > this.maxBytes && iter.hasNext()) {
+                CachedResponse eldest = iter.next();
+                iter.remove();
+                this.size -= eldest.size();
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param key Request key whose entry is to be dropped.
+     */
+    void remove(String key) {
+        removeFromMemory(key);
+        if (this.disk != null) {
+            try {
+                this.disk.remove(key);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write the disk cache.", e);
+            }
+        }
+    }
+
+    private void removeFromMemory(String key) {
+        synchronized (this.entries) {
+            CachedResponse removed = this.entries.remove(key);
+            if (removed != null)
+                this.size -= removed.size();
+        }
+    }
+
+    /**
+     * Closes the disk tier, if any.
+     *
+     * @throws IOException If the disk tier could not be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.disk != null)
+            this.disk.close();
+    }
+
+    /**
+     * Drops every entry held in memory.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.size = 0;
+        }
+    }
+
+    void recordHit() {
+        this.hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        this.misses.incrementAndGet();
+    }
+
+    void recordRevalidation() {
+        this.revalidations.incrementAndGet();
+    }
+
+    /**
+     * @return Number of calls served from the cache without contacting the server.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Number of lookups missing memory but found on disk.
+     */
+    public long getDiskHitCount() {
+        return this.diskHits.get();
+    }
+
+    /**
+     * @return Disk tier, null if the cache is memory only.
+     */
+    public DiskResponseCache getDiskCache() {
+        return this.disk;
+    }
+
+    /**
+     * @return Number of calls for which the body had to be downloaded.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return Number of calls served from the cache after a 304 Not Modified.
+     */
+    public long getRevalidationCount() {
+        return this.revalidations.get();
+    }
+
+    /**
+     * @return Number of entries evicted to make room for new ones.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return Number of cached entries.
+     */
+    public int getEntryCount() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return Current size of the cached bodies and headers, in bytes.
+     */
+    public long getSize() {
+        synchronized (this.entries) {
+            return this.size;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Entries: " + getEntryCount()
+                + "\nSize: " + getSize() + " bytes"
+                + "\nHits: " + getHitCount()
+                + "\nDisk hits: " + getDiskHitCount()
+                + "\nMisses: " + getMissCount()
+                + "\nRevalidations: " + getRevalidationCount()
+                + "\nEvictions: " + getEvictionCount() + "\n";
+    }
+
+}
@@ -0,0 +1,50 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.IHTTPRequestBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request body read from an input stream while it is being sent.
+ * The stream is closed once written and the body cannot be replayed.
+ */
+public class StreamRequestBody implements IHTTPRequestBody {
+
+    private final InputStream in;
+
+    private final long length;
+
+    /**
+     * @param in     Stream to read the body from.
+     * @param length Number of bytes in the stream, -1 if unknown.
+     */
+    public StreamRequestBody(InputStream in, long length) {
+        this.in = in;
+        this.length = length;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = this.in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+        } finally {
+            this.in.close();
+        }
+    }
+
+    @Override
+    public boolean isReplayable() {
+        return false;
+    }
+
+}
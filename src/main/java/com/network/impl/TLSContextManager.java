@@ -0,0 +1,258 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Builds and caches one SSLContext per trust profile.
+ * Contexts are shared across threads and keep a client session cache,
+ * so reconnecting to a host resumes the previous TLS session.
+ * Trust settings are applied per connection, the JVM-wide
+ * HttpsURLConnection defaults are never modified.
+ */
+public class TLSContextManager {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Profile accepting any certificate and any host name.
+     * This is the behaviour the call actions have always had.
+     */
+    public static final String TRUST_ALL = "trust-all";
+
+    /**
+     * Profile using the JVM trust store, with host name verification.
+     */
+    public static final String SYSTEM_DEFAULT = "system-default";
+
+    /**
+     * Map of profile name to its trust settings.
+     */
+    private final ConcurrentMap<String, TrustProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Map of profile name to its lazily built context.
+     */
+    private final ConcurrentMap<String, SSLContext> contexts = new ConcurrentHashMap<>();
+
+    /**
+     * Map of host name to the profile to be used for it.
+     */
+    private final ConcurrentMap<String, String> hostProfiles = new ConcurrentHashMap<>();
+
+    /**
+     * Profile used for hosts without a specific profile.
+     */
+    private volatile String defaultProfile = TRUST_ALL;
+
+    /**
+     * TLS context manager constructor with the built-in profiles registered.
+     */
+    public TLSContextManager() {
+        registerProfile(TRUST_ALL, new TrustManager[]{new TrustAllManager()}, false);
+        registerProfile(SYSTEM_DEFAULT, (TrustManager[]) null, true);
+    }
+
+    /**
+     * @return TLS context manager shared by the default call actions.
+     */
+    public static TLSContextManager getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param name           Name of the profile.
+     * @param trustManagers  Trust managers to be used, null for the JVM defaults.
+     * @param verifyHostname Whether the certificate has to match the host name.
+     */
+    public void registerProfile(String name, TrustManager[] trustManagers, boolean verifyHostname) {
+        this.profiles.put(name, new TrustProfile(trustManagers, verifyHostname));
+        this.contexts.remove(name);
+    }
+
+    /**
+     * @param name           Name of the profile.
+     * @param trustStore     Key store holding the trusted certificates.
+     * @param verifyHostname Whether the certificate has to match the host name.
+     * @throws GeneralSecurityException If the trust store could not be used.
+     */
+    public void registerProfile(String name, KeyStore trustStore, boolean verifyHostname)
+            throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(trustStore);
+        registerProfile(name, factory.getTrustManagers(), verifyHostname);
+    }
+
+    /**
+     * @param host    Host name.
+     * @param profile Name of the profile to be used for the host.
+     */
+    public void setHostProfile(String host, String profile) {
+        checkProfile(profile);
+        this.hostProfiles.put(host.toLowerCase(), profile);
+    }
+
+    /**
+     * @param profile Name of the profile to be used for hosts without a specific profile.
+     */
+    public void setDefaultProfile(String profile) {
+        checkProfile(profile);
+        this.defaultProfile = profile;
+    }
+
+    /**
+     * @param host Host name.
+     * @return Name of the profile used for the host.
+     */
+    public String getProfile(String host) {
+        String profile = this.hostProfiles.get(host.toLowerCase());
+        return profile == null ? this.defaultProfile : profile;
+    }
+
+    /**
+     * @param profile Name of the profile.
+     * @return Shared SSL context of the profile, built on first use.
+     */
+    public SSLContext getContext(String profile) {
+        SSLContext context = this.contexts.get(profile);
+        if (context != null)
+            return context;
+
+        TrustProfile trust = checkProfile(profile);
+        try {
+            context = SSLContext.getInstance("TLS");
+            context.init(null, trust.trustManagers, null);
+        } catch (GeneralSecurityException e) {
+            LOGGER.error("Unable to build SSL context for profile: " + profile, e);
+            throw new IllegalStateException("Unable to build SSL context for profile: " + profile, e);
+        }
+        SSLSessionContext sessions = context.getClientSessionContext();
+        sessions.setSessionCacheSize(NetworkReferences.DEFAULT_TLS_SESSION_CACHE_SIZE);
+        sessions.setSessionTimeout(NetworkReferences.DEFAULT_TLS_SESSION_TIMEOUT);
+
+        SSLContext existing = this.contexts.putIfAbsent(profile, context);
+        return existing == null ? context : existing;
+    }
+
+    /**
+     * @param host Host name.
+     * @return Socket factory for the profile of the host.
+     */
+    public SSLSocketFactory getSocketFactory(String host) {
+        return getContext(getProfile(host)).getSocketFactory();
+    }
+
+    /**
+     * @param host Host name.
+     * @return Host name verifier for the profile of the host, null if the
+     * default verification should be applied.
+     */
+    public HostnameVerifier getHostnameVerifier(String host) {
+        if (checkProfile(getProfile(host)).verifyHostname)
+            return null;
+        return AllowAllHostnameVerifier.INSTANCE;
+    }
+
+    /**
+     * Layers TLS over an already connected socket and completes the handshake.
+     *
+     * @param socket Connected plain socket.
+     * @param host   Host name, used for SNI, session resumption and verification.
+     * @param port   Port of the host.
+     * @return Connected TLS socket.
+     * @throws IOException If the handshake failed.
+     */
+    public SSLSocket createSocket(Socket socket, String host, int port) throws IOException {
+        String profile = getProfile(host);
+        SSLSocket ssl = (SSLSocket) getContext(profile).getSocketFactory().createSocket(socket, host, port, true);
+        if (checkProfile(profile).verifyHostname) {
+            SSLParameters parameters = ssl.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            ssl.setSSLParameters(parameters);
+        }
+        ssl.startHandshake();
+        return ssl;
+    }
+
+    private TrustProfile checkProfile(String profile) {
+        TrustProfile trust = this.profiles.get(profile);
+        if (trust == null)
+            throw new IllegalArgumentException("Unknown TLS profile: " + profile);
+        return trust;
+    }
+
+    /**
+     * Trust settings of a profile.
+     */
+    private static final class TrustProfile {
+
+        private final TrustManager[] trustManagers;
+        private final boolean verifyHostname;
+
+        TrustProfile(TrustManager[] trustManagers, boolean verifyHostname) {
+            this.trustManagers = trustManagers;
+            this.verifyHostname = verifyHostname;
+        }
+
+    }
+
+    /**
+     * Trust manager accepting every certificate chain.
+     */
+    private static final class TrustAllManager implements X509TrustManager {
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] certs, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] certs, String authType) {
+        }
+
+    }
+
+    /**
+     * Host name verifier accepting every host name.
+     */
+    private static final class AllowAllHostnameVerifier implements HostnameVerifier {
+
+        private static final HostnameVerifier INSTANCE = new AllowAllHostnameVerifier();
+
+        @Override
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+
+    }
+
+    /**
+     * Holder class for the shared TLS context manager.
+     */
+    private final static class Holder {
+        private static final TLSContextManager INSTANCE = new TLSContextManager();
+    }
+
+}
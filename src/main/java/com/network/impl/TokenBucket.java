@@ -0,0 +1,118 @@
+package main.java.com.network.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled at a constant rate up to a burst capacity.
+ * Permits are reserved, so a caller that has to wait is told for how long
+ * and the following callers queue up behind it instead of racing for tokens.
+ */
+public class TokenBucket {
+
+    /**
+     * Tokens added per nanosecond.
+     */
+    private final double ratePerNano;
+
+    /**
+     * Maximum number of tokens.
+     */
+    private final double capacity;
+
+    /**
+     * Tokens available as of the last refill, negative when permits are reserved ahead.
+     */
+    private double tokens;
+
+    /**
+     * Time of the last refill, in System.nanoTime units. In the future while paused.
+     */
+    private long lastRefill;
+
+    /**
+     * Token bucket constructor. The bucket starts full.
+     *
+     * @param permitsPerSecond Sustained rate of permits.
+     * @param burst            Maximum number of permits handed out at once.
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("Rate and burst have to be positive: " + permitsPerSecond + ", " + burst);
+        this.ratePerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Reserves a permit if it is available within the maximum wait.
+     *
+     * @param maxWaitNanos Maximum time the caller is willing to wait, in nanoseconds.
+     * @return Time the caller has to wait before using the permit, in nanoseconds,
+     * or -1 if no permit was reserved.
+     */
+    public synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        long wait = waitNanos(now);
+        if (wait > maxWaitNanos)
+            return -1;
+        this.tokens -= 1;
+        return wait;
+    }
+
+    /**
+     * @return Whether a permit was available right away and taken.
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * @return Time until a permit would be available, in nanoseconds.
+     */
+    public synchronized long getWaitNanos() {
+        return waitNanos(System.nanoTime());
+    }
+
+    /**
+     * Stops handing out permits for a while, as asked by the server.
+     * The bucket refills from empty once the pause is over.
+     *
+     * @param pauseNanos Length of the pause, in nanoseconds.
+     */
+    public synchronized void pause(long pauseNanos) {
+        long now = System.nanoTime();
+        refill(now);
+        long until = now + pauseNanos;
+        if (until - this.lastRefill > 0)
+            this.lastRefill = until;
+        this.tokens = Math.min(this.tokens, 0);
+    }
+
+    /**
+     * @param now Current time, in System.nanoTime units.
+     * @return Time until the next permit is available, in nanoseconds.
+     */
+    private long waitNanos(long now) {
+        refill(now);
+        long wait = Math.max(0, this.lastRefill - now);
+        if (this.tokens < 1)
+            wait += (long) Math.ceil((1 - this.tokens) / this.ratePerNano);
+        return wait;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - this.lastRefill;
+        if (elapsed <= 0)
+            return;
+        this.tokens = Math.min(this.capacity, this.tokens + elapsed * this.ratePerNano);
+        this.lastRefill = now;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%.1f permits/s, burst %d, %.2f tokens", this.ratePerNano * 1e9,
+                (int) this.capacity, this.tokens);
+    }
+
+}
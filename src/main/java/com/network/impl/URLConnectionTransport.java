@@ -0,0 +1,164 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
+import main.java.com.network.HTTPTimeoutException;
+import main.java.com.network.IHTTPRequestBody;
+import main.java.com.network.IHTTPResponse;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.references.NetworkReferences;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Transport based on the Java URL API.
+ * Every request opens a new HttpURLConnection and connection reuse
+ * is left to the JVM.
+ */
+public class URLConnectionTransport implements IHTTPTransport {
+
+    /**
+     * Source of the TLS settings for HTTPS connections.
+     */
+    private final TLSContextManager tls;
+
+    /**
+     * Default connect timeout in milliseconds, 0 for none.
+     */
+    private volatile int connectTimeout = NetworkReferences.DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Default read timeout in milliseconds, 0 for none.
+     */
+    private volatile int readTimeout = NetworkReferences.DEFAULT_READ_TIMEOUT;
+
+    /**
+     * URL connection transport constructor using the shared TLS context manager.
+     */
+    public URLConnectionTransport() {
+        this(TLSContextManager.getInstance());
+    }
+
+    /**
+     * URL connection transport constructor.
+     *
+     * @param tls Source of the TLS settings for HTTPS connections.
+     */
+    public URLConnectionTransport(TLSContextManager tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * @param connectTimeout Default connect timeout in milliseconds, 0 for none.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param readTimeout Default read timeout in milliseconds, 0 for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param spec Description of the request to be made.
+     * @return HTTP response object.
+     * @throws IOException If the request could not be completed.
+     */
+    @Override
+    public IHTTPResponse execute(HTTPRequestSpec spec) throws IOException {
+        Deadline deadline = spec.getDeadline();
+        if (deadline != null && deadline.isExpired())
+            throw new HTTPTimeoutException("Deadline expired before sending " + spec);
+
+        URL url = new URL(spec.getUrl());
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(this.tls.getSocketFactory(url.getHost()));
+            HostnameVerifier verifier = this.tls.getHostnameVerifier(url.getHost());
+            if (verifier != null)
+                https.setHostnameVerifier(verifier);
+        }
+
+        connection.setRequestMethod(spec.getMethod());
+        connection.setInstanceFollowRedirects(spec.isFollowRedirects());
+        connection.setUseCaches(false);
+
+        int connectTimeout = spec.getConnectTimeout() >= 0 ? spec.getConnectTimeout() : this.connectTimeout;
+        int readTimeout = spec.getReadTimeout() >= 0 ? spec.getReadTimeout() : this.readTimeout;
+        connection.setConnectTimeout(deadline == null ? connectTimeout : deadline.capTimeout(connectTimeout));
+        connection.setReadTimeout(deadline == null ? readTimeout : deadline.capTimeout(readTimeout));
+
+        connection.setRequestProperty("Accept-Encoding", NetworkReferences.ACCEPT_ENCODING);
+        Iterator<Entry<String, String>> iter = spec.getHeaders().entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, String> entry = iter.next();
+            connection.setRequestProperty(entry.getKey(), entry.getValue());
+        }
+
+        Watchdog watchdog = Watchdog.watch(deadline, new Closeable() {
+            @Override
+            public void close() {
+                connection.disconnect();
+            }
+        });
+        try {
+            IHTTPRequestBody body = spec.getBody();
+            if (body != null) {
+                connection.setDoOutput(true);
+                if (body.getContentLength() >= 0)
+                    connection.setFixedLengthStreamingMode(body.getContentLength());
+                else
+                    connection.setChunkedStreamingMode(8192);
+                OutputStream out = connection.getOutputStream();
+                try {
+                    body.writeTo(out);
+                    out.flush();
+                } finally {
+                    out.close();
+                }
+            } else
+                connection.connect();
+
+            return HTTPFactory.getHTTPResponse(connection, spec.isStreamResponse());
+        } catch (IOException | RuntimeException | Error e) {
+            if (Watchdog.cancel(watchdog) || isTimeout(e))
+                throw new HTTPTimeoutException("Timed out waiting for the response of " + spec, e);
+            throw e;
+        } finally {
+            Watchdog.cancel(watchdog);
+        }
+    }
+
+    /**
+     * @param e Exception raised by the call, possibly wrapped by the response.
+     * @return Whether it was caused by a socket timeout.
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof SocketTimeoutException)
+                return true;
+        return false;
+    }
+
+    /**
+     * Nothing to release, connections are managed by the JVM.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+}
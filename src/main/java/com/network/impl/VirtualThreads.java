@@ -0,0 +1,111 @@
+package main.java.com.network.impl;
+
+import main.java.com.references.NetworkReferences;
+import main.java.com.utilities.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Access to the virtual threads of JDK 21 and later, looked up reflectively
+ * so the project still builds and runs on older JDKs.
+ * A blocking call on a virtual thread only holds a small heap allocated
+ * stack while it waits, so tens of thousands of calls can be in flight
+ * without as many platform threads.
+ * Asynchronous calls use them by default where the JDK has them; setting the
+ * {@value NetworkReferences#VIRTUAL_THREADS_PROPERTY} system property to false
+ * goes back to a fixed pool of platform threads.
+ * ThreadModelBenchmark, built by the modern-jdk profile, compares both under load.
+ */
+public final class VirtualThreads {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor, null if the JDK has no virtual threads.
+     */
+    private static final Method NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether the running JDK has virtual threads.
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * @return Whether virtual threads are supported and not turned off by setting the
+     * {@value NetworkReferences#VIRTUAL_THREADS_PROPERTY} system property to false.
+     */
+    public static boolean isEnabled() {
+        return isSupported()
+                && Boolean.parseBoolean(System.getProperty(NetworkReferences.VIRTUAL_THREADS_PROPERTY, "true"));
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task. On a JDK without
+     * virtual threads, falls back on a cached pool of daemon platform threads.
+     *
+     * @param name Prefix of the names of the fallback platform threads.
+     * @return Executor running every task on a thread of its own.
+     */
+    public static ExecutorService newPerTaskExecutor(final String name) {
+        if (NEW_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Unable to create a virtual thread executor, using platform threads.", e);
+            }
+        } else {
+            LOGGER.warn("Virtual threads need JDK 21 or later, using platform threads.");
+        }
+        return Executors.newCachedThreadPool(newDaemonThreadFactory(name));
+    }
+
+    /**
+     * Creates the executor of asynchronous calls: a virtual thread per call when
+     * they are enabled, otherwise a fixed pool of daemon platform threads, in
+     * which calls beyond the pool size wait in its queue.
+     *
+     * @param name            Prefix of the names of the platform threads.
+     * @param platformThreads Number of platform threads used without virtual threads.
+     * @return Executor of asynchronous calls.
+     */
+    public static ExecutorService newCallExecutor(String name, int platformThreads) {
+        if (isEnabled())
+            return newPerTaskExecutor(name);
+        return Executors.newFixedThreadPool(platformThreads, newDaemonThreadFactory(name));
+    }
+
+    /**
+     * @param name Prefix of the thread names, followed by a counter.
+     * @return Factory of daemon platform threads, so that pending calls do not keep the JVM alive.
+     */
+    public static ThreadFactory newDaemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
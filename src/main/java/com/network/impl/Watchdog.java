@@ -0,0 +1,118 @@
+package main.java.com.network.impl;
+
+import main.java.com.network.Deadline;
+import main.java.com.utilities.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closes the resource of a call once its deadline passes.
+ * Blocking socket writes cannot time out on their own, so closing the
+ * socket from another thread is what unblocks the caller.
+ * Once cancelled, a watchdog can no longer fire, so the resource can be
+ * handed to another caller right after cancel returns.
+ */
+final class Watchdog {
+
+    private static Logger LOGGER = Logger.getRootLogger();
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static final int ARMED = 0;
+    private static final int FIRED = 1;
+    private static final int CANCELLED = 2;
+
+    private final Deadline deadline;
+
+    private final Closeable resource;
+
+    private final ScheduledFuture<?> task;
+
+    /**
+     * Closes the resource when the deadline is cancelled.
+     */
+    private final Runnable onCancel;
+
+    private final AtomicInteger state = new AtomicInteger(ARMED);
+
+    private Watchdog(Deadline deadline, Closeable resource) {
+        this.deadline = deadline;
+        this.resource = resource;
+        this.onCancel = new Runnable() {
+            @Override
+            public void run() {
+                fire();
+            }
+        };
+        this.task = TIMER.schedule(this.onCancel, Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        deadline.addCancelListener(this.onCancel);
+    }
+
+    /**
+     * Closes the resource, once.
+     */
+    private void fire() {
+        if (!this.state.compareAndSet(ARMED, FIRED))
+            return;
+        try {
+            this.resource.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing resource on deadline.", e);
+        }
+    }
+
+    /**
+     * @param deadline Deadline of the call, null for none.
+     * @param resource Resource to be closed when the deadline passes or is cancelled.
+     * @return Watchdog to be cancelled once the call completes, null if there is no deadline.
+     */
+    static Watchdog watch(Deadline deadline, Closeable resource) {
+        return deadline == null ? null : new Watchdog(deadline, resource);
+    }
+
+    /**
+     * Disarms the watchdog. It may be called any number of times.
+     *
+     * @param watchdog Watchdog to be cancelled, may be null.
+     * @return Whether the watchdog had already fired.
+     */
+    static boolean cancel(Watchdog watchdog) {
+        if (watchdog == null)
+            return false;
+        watchdog.state.compareAndSet(ARMED, CANCELLED);
+        watchdog.task.cancel(false);
+        watchdog.deadline.removeCancelListener(watchdog.onCancel);
+        return watchdog.state.get() == FIRED;
+    }
+
+    /**
+     * Runs a task on the watchdog timer, for checks that do not fit a single deadline.
+     *
+     * @param task  Task to be run, which must not block.
+     * @param delay Delay in milliseconds.
+     * @return Handle of the scheduled task.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return TIMER.schedule(task, Math.max(1, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "http-deadline-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+}
@@ -0,0 +1,43 @@
+package main.java.com.references;
+
+/**
+ * Default values used by the network layer.
+ */
+public class NetworkReferences {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60000;
+    public static final long DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+    public static final long DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30000;
+    public static final int MAX_REDIRECTS = 20;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+    public static final String USER_AGENT = "RestActions";
+    public static final int DEFAULT_ASYNC_THREADS = 32;
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 1000;
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT = 86400;
+    public static final long DOWNLOAD_TRANSFER_SIZE = 1 << 20;
+    public static final int MAX_INITIAL_BODY_BUFFER = 64 << 10;
+    public static final int MAX_AGGREGATED_CONTENT_LENGTH = 64 << 20;
+    public static final int MAX_HEADER_LINE_LENGTH = 64 << 10;
+    public static final int MAX_RESPONSE_HEADERS = 256;
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    public static final long DEFAULT_REQUEST_COMPRESSION_THRESHOLD = -1;
+    public static final long DEFAULT_RESPONSE_CACHE_SIZE = 32 << 20;
+    public static final long MAX_HEURISTIC_FRESHNESS = 86400000;
+    public static final int DEFAULT_DISK_CACHE_SEGMENT_SIZE = 64 << 20;
+    public static final long DEFAULT_RETRY_AFTER = 1000;
+    public static final int MAX_CONCURRENCY_LIMIT = 200;
+    public static final long DEFAULT_CONCURRENCY_QUEUE_TIMEOUT = 50;
+    public static final double DEFAULT_HEDGE_BUDGET = 0.05;
+    public static final int DEFAULT_CIRCUIT_BREAKER_WINDOW = 20;
+    public static final int DEFAULT_CIRCUIT_BREAKER_MIN_CALLS = 10;
+    public static final double DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE = 0.5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 5000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_PROBES = 3;
+    public static final int DEFAULT_EJECTION_FAILURES = 5;
+    public static final long DEFAULT_EJECTION_TIME = 30000;
+    public static final long MAX_EJECTION_TIME = 300000;
+    public static final long DEFAULT_DNS_TTL = 60000;
+    public static final long DEFAULT_DNS_NEGATIVE_TTL = 10000;
+    public static final String VIRTUAL_THREADS_PROPERTY = "restactions.virtualThreads";
+}
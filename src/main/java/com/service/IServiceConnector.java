@@ -1,5 +1,9 @@
 package main.java.com.service;
 
+import main.java.com.network.Deadline;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface for making calls to Prediction Console and retrieving
  * REST responses.
@@ -33,4 +37,74 @@ public interface IServiceConnector {
      */
     String makeDeleteCall(String path);
 
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete.
+     * @return String raw response.
+     */
+    String makeGetCall(String path, String parameters, Deadline deadline);
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete.
+     * @return String raw response.
+     */
+    String makePostCall(String path, String parameters, Deadline deadline);
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete.
+     * @return String raw response.
+     */
+    String makePutCall(String path, String parameters, Deadline deadline);
+
+    /**
+     * @param path     Relative path to make the request.
+     * @param deadline Deadline by which the whole call has to complete.
+     * @return String raw response.
+     */
+    String makeDeleteCall(String path, Deadline deadline);
+
+    /**
+     * Asynchronous variant of makeGetCall. Cancelling the future aborts the call.
+     *
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    CompletableFuture<String> makeGetCallAsync(String path, String parameters, Deadline deadline);
+
+    /**
+     * Asynchronous variant of makePostCall. Cancelling the future aborts the call.
+     *
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    CompletableFuture<String> makePostCallAsync(String path, String parameters, Deadline deadline);
+
+    /**
+     * Asynchronous variant of makePutCall. Cancelling the future aborts the call.
+     *
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    CompletableFuture<String> makePutCallAsync(String path, String parameters, Deadline deadline);
+
+    /**
+     * Asynchronous variant of makeDeleteCall. Cancelling the future aborts the call.
+     *
+     * @param path     Relative path to make the request.
+     * @param deadline Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    CompletableFuture<String> makeDeleteCallAsync(String path, Deadline deadline);
+
 }
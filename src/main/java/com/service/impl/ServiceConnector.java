@@ -1,15 +1,28 @@
 package main.java.com.service.impl;
 
+import main.java.com.network.Deadline;
 import main.java.com.network.HTTPFactory;
+import main.java.com.network.HTTPRequestSpec;
 import main.java.com.network.IHTTPCallActions;
 import main.java.com.network.IHTTPResponse;
-import main.java.com.references.AutomationReferences;
+import main.java.com.network.IHTTPTransport;
+import main.java.com.network.impl.AsyncCall;
+import main.java.com.network.impl.CircuitBreaker;
+import main.java.com.network.impl.LoadBalancer;
+import main.java.com.network.impl.VirtualThreads;
 import main.java.com.references.ConfigReferences;
+import main.java.com.references.NetworkReferences;
 import main.java.com.service.IServiceConnector;
 import main.java.com.utilities.Logger;
 import main.java.com.utilities.PropertyFileUtility;
 import org.testng.Assert;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * This class can be used to query Prediction Console in terms
  * of REST calls.
@@ -31,15 +44,21 @@ public class ServiceConnector implements IServiceConnector {
     private String cwpLoginUrl;
 
     /**
-     * URL of PC home page.
+     * Balancer over the replicas of PC, whose base URLs are the comma separated PC home page URLs.
      */
-    private String pcHomeUrl;
+    private LoadBalancer balancer;
 
     /**
      * HTTP call actions utility instance.
      */
     private IHTTPCallActions http;
 
+    /**
+     * Executor of the asynchronous calls, starting a virtual thread per call when they are enabled,
+     * as they are by default on JDK 21 and later.
+     */
+    private final ExecutorService executor;
+
     /**
      * Prediction console connector constructor.
      */
@@ -51,12 +70,25 @@ public class ServiceConnector implements IServiceConnector {
             throw new IllegalStateException("CWP login URL is not defined in "
                     + ConfigReferences.PREDICTION_CONSOLE_CONFIG_FILE);
 
-        this.pcHomeUrl = config.getStringValue(ConfigReferences.PROPERTY_PC_URL);
-        if (this.pcHomeUrl == null)
+        String pcHomeUrl = config.getStringValue(ConfigReferences.PROPERTY_PC_URL);
+        if (pcHomeUrl == null)
             throw new IllegalStateException("PC home page URL is not defined in "
                     + ConfigReferences.PREDICTION_CONSOLE_CONFIG_FILE);
+        List<String> pcUrls = new ArrayList<String>();
+        for (String url : pcHomeUrl.split(","))
+            if (!url.trim().isEmpty())
+                pcUrls.add(url.trim());
+        this.balancer = new LoadBalancer(pcUrls, LoadBalancer.Strategy.POWER_OF_TWO_CHOICES);
 
-        this.http = HTTPFactory.getHTTPCallActionsInstance();
+        //Replicas running as local sidecars are reached over their Unix domain socket.
+        boolean unix = false;
+        for (String url : pcUrls)
+            unix |= url.regionMatches(true, 0, "unix:", 0, 5);
+        IHTTPTransport transport = unix ? HTTPFactory.getUnixSocketTransport() : HTTPFactory.getPooledTransport();
+        //Fail fast rather than pile up calls while the console is down.
+        this.http = HTTPFactory.getHTTPCallActionsInstance(HTTPFactory.getCircuitBreakerTransport(
+                transport, new CircuitBreaker()));
+        this.executor = VirtualThreads.newCallExecutor("pc-call-", NetworkReferences.DEFAULT_ASYNC_THREADS);
         //FIXME: login function
         //login();
     }
@@ -75,11 +107,7 @@ public class ServiceConnector implements IServiceConnector {
      */
     @Override
     public String makeGetCall(String path, String parameters) {
-        String cookieValue = "amlbCookie=" + this.amlbCookie + "; " +
-                "iPlanetDirectoryPro=" + this.iPlanetDirectoryProCookie + "; " +
-                "JSESSIONID=" + this.adminconsoleJSessionIDCookie;
-        IHTTPResponse get = this.http.makeGetCall(this.pcHomeUrl + path, parameters, cookieValue);
-        return get.getRawResponse();
+        return makeGetCall(path, parameters, null);
     }
 
     /**
@@ -89,11 +117,7 @@ public class ServiceConnector implements IServiceConnector {
      */
     @Override
     public String makePostCall(String path, String parameters) {
-        String cookieValue = "amlbCookie=" + this.amlbCookie + "; " +
-                "iPlanetDirectoryPro=" + this.iPlanetDirectoryProCookie + "; " +
-                "JSESSIONID=" + this.adminconsoleJSessionIDCookie;
-        IHTTPResponse post = this.http.makePostCall(this.pcHomeUrl + path, parameters, cookieValue);
-        return post.getRawResponse();
+        return makePostCall(path, parameters, null);
     }
 
     /**
@@ -103,11 +127,7 @@ public class ServiceConnector implements IServiceConnector {
      */
     @Override
     public String makePutCall(String path, String parameters) {
-        String cookieValue = "amlbCookie=" + this.amlbCookie + "; " +
-                "iPlanetDirectoryPro=" + this.iPlanetDirectoryProCookie + "; " +
-                "JSESSIONID=" + this.adminconsoleJSessionIDCookie;
-        IHTTPResponse put = this.http.makePutCall(this.pcHomeUrl + path, parameters, cookieValue);
-        return put.getRawResponse();
+        return makePutCall(path, parameters, null);
     }
 
     /**
@@ -116,11 +136,183 @@ public class ServiceConnector implements IServiceConnector {
      */
     @Override
     public String makeDeleteCall(String path) {
-        String cookieValue = "amlbCookie=" + this.amlbCookie + "; " +
+        return makeDeleteCall(path, null);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return String raw response.
+     */
+    @Override
+    public String makeGetCall(String path, String parameters, Deadline deadline) {
+        return makeCall(getSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return String raw response.
+     */
+    @Override
+    public String makePostCall(String path, String parameters, Deadline deadline) {
+        return makeCall(postSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return String raw response.
+     */
+    @Override
+    public String makePutCall(String path, String parameters, Deadline deadline) {
+        return makeCall(putSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path     Relative path to make the request.
+     * @param deadline Deadline by which the whole call has to complete, null for none.
+     * @return String raw response.
+     */
+    @Override
+    public String makeDeleteCall(String path, Deadline deadline) {
+        return makeCall(deleteSpec(path), deadline);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    @Override
+    public CompletableFuture<String> makeGetCallAsync(String path, String parameters, Deadline deadline) {
+        return submit(getSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    @Override
+    public CompletableFuture<String> makePostCallAsync(String path, String parameters, Deadline deadline) {
+        return submit(postSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path       Relative path to make the request.
+     * @param parameters Request parameters if any, else pass null.
+     * @param deadline   Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    @Override
+    public CompletableFuture<String> makePutCallAsync(String path, String parameters, Deadline deadline) {
+        return submit(putSpec(path, parameters), deadline);
+    }
+
+    /**
+     * @param path     Relative path to make the request.
+     * @param deadline Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    @Override
+    public CompletableFuture<String> makeDeleteCallAsync(String path, Deadline deadline) {
+        return submit(deleteSpec(path), deadline);
+    }
+
+    /**
+     * Runs the call on the executor. Cancelling the future cancels the deadline
+     * of the call, which aborts its socket, as for IHTTPCallActions.
+     *
+     * @param spec     Description of the request, with the path relative to PC home page.
+     * @param deadline Deadline by which the whole call has to complete, null for none.
+     * @return Future raw response.
+     */
+    private CompletableFuture<String> submit(final HTTPRequestSpec spec, Deadline deadline) {
+        final AsyncCall<String> call = new AsyncCall<String>(deadline);
+        try {
+            call.setTask(this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (call.isDone())
+                        return;
+                    try {
+                        call.complete(makeCall(spec, call.getDeadline()));
+                    } catch (Throwable e) {
+                        call.completeExceptionally(e);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            call.completeExceptionally(e);
+        }
+        return call;
+    }
+
+    private static HTTPRequestSpec getSpec(String path, String parameters) {
+        String url = path;
+        if (parameters != null)
+            url = url + "?" + parameters;
+        return new HTTPRequestSpec("GET", url);
+    }
+
+    private static HTTPRequestSpec postSpec(String path, String parameters) {
+        HTTPRequestSpec spec = new HTTPRequestSpec("POST", path);
+        spec.setFollowRedirects(false);
+        spec.setHeader("charset", "utf-8");
+        spec.setBody(HTTPFactory.getRequestBody(parameters));
+        return spec;
+    }
+
+    private static HTTPRequestSpec putSpec(String path, String parameters) {
+        HTTPRequestSpec spec = new HTTPRequestSpec("PUT", path);
+        spec.setHeader("Content-Type", "application/json");
+        spec.setBody(HTTPFactory.getRequestBody(parameters));
+        return spec;
+    }
+
+    private static HTTPRequestSpec deleteSpec(String path) {
+        HTTPRequestSpec spec = new HTTPRequestSpec("DELETE", path);
+        spec.setHeader("Content-Type", "application/json");
+        return spec;
+    }
+
+    /**
+     * Sends the call to the replica holding the session, or to the one picked by the balancer.
+     * Failures and 5xx responses count against the replica.
+     *
+     * @param spec     Description of the request, with the path relative to PC home page
+     *                 and without the session cookie.
+     * @param deadline Deadline by which the whole call has to complete, null for none.
+     * @return String raw response.
+     */
+    private String makeCall(HTTPRequestSpec spec, Deadline deadline) {
+        LoadBalancer.Endpoint endpoint = this.balancer.acquire(this.adminconsoleJSessionIDCookie);
+        boolean success = false;
+        try {
+            HTTPRequestSpec call = spec.copy(endpoint.getBaseUrl() + spec.getUrl());
+            call.setCookie(getCookieValue());
+            call.setDeadline(deadline);
+            IHTTPResponse response = this.http.makeCall(call);
+            success = response.getStatusCode() < 500;
+            return response.getRawResponse();
+        } finally {
+            this.balancer.release(endpoint, success);
+        }
+    }
+
+    /**
+     * @return Session cookies of the logged in user.
+     */
+    private String getCookieValue() {
+        return "amlbCookie=" + this.amlbCookie + "; " +
                 "iPlanetDirectoryPro=" + this.iPlanetDirectoryProCookie + "; " +
                 "JSESSIONID=" + this.adminconsoleJSessionIDCookie;
-        IHTTPResponse delete = this.http.makeDeleteCall(this.pcHomeUrl + path, cookieValue);
-        return delete.getRawResponse();
     }
 
     /**
@@ -131,12 +323,12 @@ public class ServiceConnector implements IServiceConnector {
         IHTTPResponse cwpGet = this.http.makeGetCall(this.cwpLoginUrl);
 
         Assert.assertEquals(cwpGet.getStatusCode(), 200);
-        String[] cookies1 = cwpGet.getResponseHeaderByKey("Set-Cookie").split('[' + AutomationReferences.COOKIE_SEPARATOR + ']');
-        int size = cookies1.length;
+        List<String> cookies1 = cwpGet.getResponseHeaderValues("Set-Cookie");
+        int size = cookies1.size();
         Assert.assertEquals(size, 3);
 
         for (int i = 0; i < size; i++) {
-            String curr = cookies1[i];
+            String curr = cookies1.get(i);
             if (curr.indexOf("AMAuthCookie") != -1)
                 this.AMAuthCookie = curr.split("=")[1].split(";")[0];
             else if (curr.indexOf("amlbcookie") != -1)
@@ -155,12 +347,12 @@ public class ServiceConnector implements IServiceConnector {
         IHTTPResponse cwpPost = this.http.makePostCall(this.cwpLoginUrl, parameters, cookieValue);
 
         Assert.assertEquals(cwpPost.getStatusCode(), 302);
-        String[] cookies2 = cwpPost.getResponseHeaderByKey("Set-Cookie").split('[' + AutomationReferences.COOKIE_SEPARATOR + ']');
-        size = cookies2.length;
+        List<String> cookies2 = cwpPost.getResponseHeaderValues("Set-Cookie");
+        size = cookies2.size();
         Assert.assertEquals(size, 2);
 
         for (int i = 0; i < size; i++) {
-            String curr = cookies2[i];
+            String curr = cookies2.get(i);
             if (curr.indexOf("iPlanetDirectoryPro") != -1)
                 this.iPlanetDirectoryProCookie = curr.split("=")[1].split(";")[0];
             else if (curr.indexOf("AMAuthCookie") != -1)
@@ -170,18 +362,26 @@ public class ServiceConnector implements IServiceConnector {
         //GET PC HOME
         cookieValue = "amlbCookie=" + this.amlbCookie + "; " +
                 "iPlanetDirectoryPro=" + this.iPlanetDirectoryProCookie;
-        IHTTPResponse pcGet = this.http.makeGetCall(this.pcHomeUrl, null, cookieValue);
+        LoadBalancer.Endpoint endpoint = this.balancer.acquire(null);
+        IHTTPResponse pcGet = null;
+        try {
+            pcGet = this.http.makeGetCall(endpoint.getBaseUrl(), null, cookieValue);
+        } finally {
+            this.balancer.release(endpoint, pcGet != null && pcGet.getStatusCode() < 500);
+        }
 
         Assert.assertEquals(pcGet.getStatusCode(), 200);
-        String[] cookies3 = pcGet.getResponseHeaderByKey("Set-Cookie").split('[' + AutomationReferences.COOKIE_SEPARATOR + ']');
-        size = cookies3.length;
+        List<String> cookies3 = pcGet.getResponseHeaderValues("Set-Cookie");
+        size = cookies3.size();
         Assert.assertEquals(size, 1);
 
         for (int i = 0; i < size; i++) {
-            String curr = cookies3[i];
+            String curr = cookies3.get(i);
             if (curr.indexOf("JSESSIONID") != -1)
                 this.adminconsoleJSessionIDCookie = curr.split("=")[1].split(";")[0];
         }
+        //The session only exists on the replica which issued it.
+        this.balancer.bind(this.adminconsoleJSessionIDCookie, endpoint);
 
         LOGGER.info("Login successful.");
     }
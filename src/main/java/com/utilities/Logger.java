@@ -48,6 +48,13 @@ public class Logger {
         return this.logger.getLevel().toString();
     }
 
+    /**
+     * @return Whether DEBUG level messages are logged.
+     */
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
     /**
      * Reports at ERROR level.
      * @param message String message to append in log file.
@@ -0,0 +1,82 @@
+package main.java.com.network.impl;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Edge cases of the single pass URL parser.
+ */
+public class ParsedURLTest {
+
+    @Test
+    public void repeatedKeysKeepEveryValueInOrder() {
+        ParsedURL url = ParsedURL.parse("http://host/path?a=1&b=2&a=3");
+        Assert.assertEquals(url.getParameterCount(), 3);
+        Assert.assertEquals(url.getParameter("a"), "1");
+        Assert.assertEquals(url.getParameters("a"), Arrays.asList("1", "3"));
+        Assert.assertEquals(url.getParameters("b"), Collections.singletonList("2"));
+        Assert.assertEquals(url.getParameters("c"), Collections.emptyList());
+        Assert.assertEquals(url.toMap().get("a"), "3");
+    }
+
+    @Test
+    public void flagWithoutValueDiffersFromEmptyValue() {
+        ParsedURL url = ParsedURL.parse("http://host/?flag&empty=&&x=1=2");
+        Assert.assertEquals(url.getParameterCount(), 3);
+        Assert.assertEquals(url.getName(0), "flag");
+        Assert.assertFalse(url.hasValue(0));
+        Assert.assertEquals(url.getValue(0), "");
+        Assert.assertEquals(url.getName(1), "empty");
+        Assert.assertTrue(url.hasValue(1));
+        Assert.assertEquals(url.getValue(1), "");
+        Assert.assertEquals(url.getParameter("x"), "1=2");
+    }
+
+    @Test
+    public void plusIsSpaceOnlyInTheQuery() {
+        ParsedURL url = ParsedURL.parse("http://host/a+b%20c?q=x+y&n+m=1");
+        Assert.assertEquals(url.getBase(), "http://host/a+b c");
+        Assert.assertEquals(url.getParameter("q"), "x y");
+        Assert.assertEquals(url.getParameter("n m"), "1");
+    }
+
+    @Test
+    public void malformedEscapesAreKeptAsIs() {
+        ParsedURL url = ParsedURL.parse("http://host/%zz?a=%&b=%4&c=%g1&d=100%25&e=%41%");
+        Assert.assertEquals(url.getBase(), "http://host/%zz");
+        Assert.assertEquals(url.getParameter("a"), "%");
+        Assert.assertEquals(url.getParameter("b"), "%4");
+        Assert.assertEquals(url.getParameter("c"), "%g1");
+        Assert.assertEquals(url.getParameter("d"), "100%");
+        Assert.assertEquals(url.getParameter("e"), "A%");
+    }
+
+    @Test
+    public void multiByteRunsDecodeAsUtf8() {
+        ParsedURL url = ParsedURL.parse("http://host/caf%C3%A9?price=%E2%82%AC5&%F0%9F%98%80=smile&mixed=a%C3%A9b%E2%82%ACc");
+        Assert.assertEquals(url.getBase(), "http://host/caf\u00e9");
+        Assert.assertEquals(url.getParameter("price"), "\u20ac5");
+        Assert.assertEquals(url.getParameter("\ud83d\ude00"), "smile");
+        Assert.assertEquals(url.getParameter("mixed"), "a\u00e9b\u20acc");
+    }
+
+    @Test
+    public void fragmentBeforeQueryMeansNoQuery() {
+        ParsedURL url = ParsedURL.parse("http://host/path#frag?a=1");
+        Assert.assertEquals(url.getBase(), "http://host/path");
+        Assert.assertEquals(url.getParameterCount(), 0);
+        Assert.assertNull(url.getParameter("a"));
+
+        url = ParsedURL.parse("http://host/path?a=1#frag&b=2");
+        Assert.assertEquals(url.getBase(), "http://host/path");
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("a", "1");
+        Assert.assertEquals(url.toMap(), expected);
+    }
+
+}
@@ -0,0 +1,80 @@
+package main.java.com.network.impl;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Redirect rules shared by the transports.
+ */
+public class RedirectTest {
+
+    private static Map<String, String> headers() {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Cookie", "sid=1");
+        headers.put("authorization", "Bearer x");
+        headers.put("Content-Type", "text/plain");
+        headers.put("Accept", "*/*");
+        return headers;
+    }
+
+    @Test
+    public void crossOriginDropsCredentials() throws MalformedURLException {
+        Redirect redirect = Redirect.follow(new URL("https://a.example/x"), "GET", headers(), false, false,
+                302, "https://b.example/y");
+        Assert.assertEquals(redirect.getUrl(), new URL("https://b.example/y"));
+        Assert.assertFalse(redirect.getHeaders().containsKey("Cookie"));
+        Assert.assertFalse(redirect.getHeaders().containsKey("authorization"));
+        Assert.assertEquals(redirect.getHeaders().get("Accept"), "*/*");
+    }
+
+    @Test
+    public void sameOriginKeepsCredentials() throws MalformedURLException {
+        Redirect redirect = Redirect.follow(new URL("https://a.example:443/x"), "GET", headers(), false, false,
+                301, "/y");
+        Assert.assertEquals(redirect.getUrl(), new URL("https://a.example:443/y"));
+        Assert.assertEquals(redirect.getHeaders().get("Cookie"), "sid=1");
+    }
+
+    @Test
+    public void seeOtherAndPostRedirectsBecomeGet() throws MalformedURLException {
+        URL url = new URL("http://a.example/form");
+        Redirect redirect = Redirect.follow(url, "PUT", headers(), true, false, 303, "/done");
+        Assert.assertEquals(redirect.getMethod(), "GET");
+        Assert.assertTrue(redirect.isBodyDropped());
+        Assert.assertFalse(redirect.getHeaders().containsKey("Content-Type"));
+
+        redirect = Redirect.follow(url, "POST", headers(), true, false, 302, "/done");
+        Assert.assertEquals(redirect.getMethod(), "GET");
+        Assert.assertTrue(redirect.isBodyDropped());
+
+        redirect = Redirect.follow(url, "HEAD", headers(), false, false, 303, "/done");
+        Assert.assertEquals(redirect.getMethod(), "HEAD");
+    }
+
+    @Test
+    public void temporaryRedirectKeepsMethodAndBody() throws MalformedURLException {
+        Redirect redirect = Redirect.follow(new URL("http://a.example/form"), "POST", headers(), true, true,
+                307, "/again");
+        Assert.assertEquals(redirect.getMethod(), "POST");
+        Assert.assertFalse(redirect.isBodyDropped());
+        Assert.assertEquals(redirect.getHeaders().get("Content-Type"), "text/plain");
+    }
+
+    @Test
+    public void unsafeRedirectsGoToTheCaller() throws MalformedURLException {
+        Assert.assertNull(Redirect.follow(new URL("https://a.example/x"), "GET", headers(), false, false,
+                302, "http://a.example/x"));
+        Assert.assertNull(Redirect.follow(new URL("http://a.example/x"), "POST", headers(), true, false,
+                308, "/y"));
+        Assert.assertNull(Redirect.follow(new URL("http://a.example/x"), "GET", headers(), false, false,
+                302, null));
+        Assert.assertNull(Redirect.follow(new URL("http://a.example/x"), "GET", headers(), false, false,
+                304, "/y"));
+    }
+
+}